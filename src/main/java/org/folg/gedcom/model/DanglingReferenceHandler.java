@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+/**
+ * Told of the refs that name a person or family that isn't in the gedcom; see Gedcom.updateReferences
+ */
+@FunctionalInterface
+public interface DanglingReferenceHandler {
+   /**
+    * Called for each ref of a person or family whose record doesn't exist
+    * @param record the person or family holding the ref
+    * @param ref the SpouseFamilyRef or ParentFamilyRef of a person, or the SpouseRef or ChildRef of a family
+    */
+   public void danglingReference(ExtensionContainer record, ExtensionContainer ref);
+}
@@ -16,6 +16,8 @@
 
 package org.folg.gedcom.model;
 
+import org.gedml.TagTable;
+
 import java.util.*;
 
 /**
@@ -60,6 +62,15 @@ public class EventFact extends SourceCitationContainer {
       "RESI",
       "SEPA", "_SEPR", "_SEPARATED"
    ));
+   static {
+      // share the tag names of parsed events and facts
+      for (String tag : PERSONAL_EVENT_FACT_TAGS) {
+         TagTable.register(tag);
+      }
+      for (String tag : FAMILY_EVENT_FACT_TAGS) {
+         TagTable.register(tag);
+      }
+   }
 
    public static final Map<String,String> DISPLAY_TYPE;
    static {
@@ -0,0 +1,626 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An immutable snapshot of a Gedcom, made by Gedcom.freeze, that any number of threads can read without locking.
+ * The snapshot holds its own copies of the records, and every list in them is unmodifiable, even one that was
+ * null, so records can't be added to or removed from it, or lines from its records.  All its fields are final and
+ * its indexes are built before it is returned, so it is safely published however it is passed to other threads.
+ * Its methods that would change it throw UnsupportedOperationException.
+ *
+ * What isn't guaranteed: the setters of its records, and putExtension on a record without extensions, still
+ * change the record in place, and readers on other threads may see such a change half made.  Treat the records
+ * as read-only, and make changes with a Builder.
+ *
+ * To change a snapshot, edit it with a Builder from toBuilder: it shares the snapshot's records and copies a record
+ * only when it is edited, and build returns a new snapshot that shares every record that wasn't edited.
+ * Readers of the old snapshot see it unchanged.
+ */
+public final class FrozenGedcom extends Gedcom {
+   private final transient Header head;
+   private final transient Submission subn;
+   private final transient Map<String, Object> extensions;
+   private final transient Records<Person> people;
+   private final transient Records<Family> families;
+   private final transient Records<Media> media;
+   private final transient Records<Note> notes;
+   private final transient Records<Source> sources;
+   private final transient Records<Repository> repositories;
+   private final transient Records<Submitter> submitters;
+
+   /**
+    * The records of one kind and their index
+    */
+   private static final class Records<T> {
+      final List<T> list;
+      final XrefIndex<T> index;
+
+      Records(List<T> list, Function<T, String> getId) {
+         this.list = Collections.unmodifiableList(list);
+         this.index = XrefIndex.of(list, getId);
+      }
+   }
+
+   private FrozenGedcom(Header head, Submission subn, Map<String, Object> extensions, List<Person> people,
+                        List<Family> families, List<Media> media, List<Note> notes, List<Source> sources,
+                        List<Repository> repositories, List<Submitter> submitters) {
+      this.head = head;
+      this.subn = subn;
+      this.extensions = extensions;
+      this.people = new Records<Person>(people, Person::getId);
+      this.families = new Records<Family>(families, Family::getId);
+      this.media = new Records<Media>(media, Media::getId);
+      this.notes = new Records<Note>(notes, Note::getId);
+      this.sources = new Records<Source>(sources, Source::getId);
+      this.repositories = new Records<Repository>(repositories, Repository::getId);
+      this.submitters = new Records<Submitter>(submitters, Submitter::getId);
+      // set the inherited fields too, so the snapshot serializes like any other Gedcom
+      super.setHeader(head);
+      super.setSubmission(subn);
+      super.setExtensions(extensions);
+      super.setPeople(orNull(this.people.list));
+      super.setFamilies(orNull(this.families.list));
+      super.setMedia(orNull(this.media.list));
+      super.setNotes(orNull(this.notes.list));
+      super.setSources(orNull(this.sources.list));
+      super.setRepositories(orNull(this.repositories.list));
+      super.setSubmitters(orNull(this.submitters.list));
+   }
+
+   private static <T> List<T> orNull(List<T> list) {
+      return list.isEmpty() ? null : list;
+   }
+
+   /**
+    * Return a frozen copy of gedcom
+    */
+   static FrozenGedcom of(Gedcom gedcom) {
+      ModelCopier copier = ModelCopier.FROZEN;
+      return new FrozenGedcom(copier.copy(gedcom.getHeader()), copier.copy(gedcom.getSubmissionRecord()),
+              copier.copy(gedcom.getExtensions()), copyAll(gedcom.getPeople()), copyAll(gedcom.getFamilies()),
+              copyAll(gedcom.getMedia()), copyAll(gedcom.getNotes()), copyAll(gedcom.getSources()),
+              copyAll(gedcom.getRepositories()), copyAll(gedcom.getSubmitters()));
+   }
+
+   private static <T> List<T> copyAll(List<T> records) {
+      List<T> copies = new ArrayList<T>(records.size());
+      for (T record : records) {
+         copies.add(ModelCopier.FROZEN.copy(record));
+      }
+      return copies;
+   }
+
+   /**
+    * Return this snapshot, which is already frozen
+    */
+   @Override
+   public FrozenGedcom freeze() {
+      return this;
+   }
+
+   /**
+    * Return a builder that starts from this snapshot
+    */
+   public Builder toBuilder() {
+      return new Builder(this);
+   }
+
+   @Override
+   public Header getHeader() {
+      return head;
+   }
+
+   @Override
+   public Submission getSubmission() {
+      if (subn != null) {
+         return subn;
+      }
+      return head != null ? head.getSubmission() : null;
+   }
+
+   @Override
+   Submission getSubmissionRecord() {
+      return subn;
+   }
+
+   @Override
+   public Map<String, Object> getExtensions() {
+      return extensions;
+   }
+
+   @Override
+   public Object getExtension(String key) {
+      return extensions.get(key);
+   }
+
+   @Override
+   public List<Person> getPeople() {
+      return people.list;
+   }
+
+   @Override
+   public Person getPerson(String id) {
+      return people.index.get(id);
+   }
+
+   @Override
+   public List<Family> getFamilies() {
+      return families.list;
+   }
+
+   @Override
+   public Family getFamily(String id) {
+      return families.index.get(id);
+   }
+
+   @Override
+   public List<Media> getMedia() {
+      return media.list;
+   }
+
+   @Override
+   public Media getMedia(String id) {
+      return media.index.get(id);
+   }
+
+   @Override
+   public List<Note> getNotes() {
+      return notes.list;
+   }
+
+   @Override
+   public Note getNote(String id) {
+      return notes.index.get(id);
+   }
+
+   @Override
+   public List<Source> getSources() {
+      return sources.list;
+   }
+
+   @Override
+   public Source getSource(String id) {
+      return sources.index.get(id);
+   }
+
+   @Override
+   public List<Repository> getRepositories() {
+      return repositories.list;
+   }
+
+   @Override
+   public Repository getRepository(String id) {
+      return repositories.index.get(id);
+   }
+
+   @Override
+   public List<Submitter> getSubmitters() {
+      return submitters.list;
+   }
+
+   @Override
+   public Submitter getSubmitter(String id) {
+      return submitters.index.get(id);
+   }
+
+   @Override
+   public XrefTable getXrefTable() {
+      return null;
+   }
+
+   @Override
+   public void createIndexes() {
+      // the indexes were built when the snapshot was made
+   }
+
+   @Override
+   public void ensureCapacity(int personCount, int familyCount) {
+      // nothing will be added
+   }
+
+   @Override
+   public void updateReferences() {
+      throw readOnly();
+   }
+
+   @Override
+   public void updateReferences(DanglingReferenceHandler handler, int parallelism) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setHeader(Header head) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSubmission(Submission subn) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setExtensions(Map<String, Object> exts) {
+      throw readOnly();
+   }
+
+   @Override
+   public void putExtension(String id, Object extension) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setXrefTable(XrefTable xrefTable) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setPeople(List<Person> people) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addPerson(Person person) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removePerson(Person person) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setFamilies(List<Family> families) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addFamily(Family family) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeFamily(Family family) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setMedia(List<Media> media) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addMedia(Media m) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeMedia(Media m) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setNotes(List<Note> notes) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addNote(Note note) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeNote(Note note) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSources(List<Source> sources) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addSource(Source source) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeSource(Source source) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRepositories(List<Repository> repositories) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addRepository(Repository repository) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeRepository(Repository repository) {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSubmitters(List<Submitter> submitters) {
+      throw readOnly();
+   }
+
+   @Override
+   public void addSubmitter(Submitter submitter) {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeSubmitter(Submitter submitter) {
+      throw readOnly();
+   }
+
+   private static UnsupportedOperationException readOnly() {
+      return new UnsupportedOperationException("FrozenGedcom is read-only; edit it with toBuilder()");
+   }
+
+   /**
+    * Edits a snapshot copy-on-write.  The edit methods return the builder's own copy of a record, copying it from
+    * the snapshot the first time it is edited; change the copy, not the snapshot's record.  Records passed to the
+    * add methods belong to the builder from then on.  Each build freezes the builder's records into a new snapshot.
+    * Not thread-safe.
+    */
+   public static final class Builder {
+      private Header head;
+      private Submission subn;
+      private Map<String, Object> extensions;
+      private final Edits<Person> people;
+      private final Edits<Family> families;
+      private final Edits<Media> media;
+      private final Edits<Note> notes;
+      private final Edits<Source> sources;
+      private final Edits<Repository> repositories;
+      private final Edits<Submitter> submitters;
+      private boolean headEdited = false;
+      private boolean subnEdited = false;
+
+      private Builder(FrozenGedcom snapshot) {
+         head = snapshot.head;
+         subn = snapshot.subn;
+         extensions = snapshot.extensions;
+         people = new Edits<Person>(snapshot.people.list, Person::getId);
+         families = new Edits<Family>(snapshot.families.list, Family::getId);
+         media = new Edits<Media>(snapshot.media.list, Media::getId);
+         notes = new Edits<Note>(snapshot.notes.list, Note::getId);
+         sources = new Edits<Source>(snapshot.sources.list, Source::getId);
+         repositories = new Edits<Repository>(snapshot.repositories.list, Repository::getId);
+         submitters = new Edits<Submitter>(snapshot.submitters.list, Submitter::getId);
+      }
+
+      public Header editHeader() {
+         if (!headEdited) {
+            head = ModelCopier.EDITABLE.copy(head);
+            headEdited = true;
+         }
+         return head;
+      }
+
+      public void setHeader(Header head) {
+         this.head = head;
+         headEdited = true;
+      }
+
+      /**
+       * Return the builder's copy of the top-level submission record, or null if there is none
+       */
+      public Submission editSubmission() {
+         if (!subnEdited) {
+            subn = ModelCopier.EDITABLE.copy(subn);
+            subnEdited = true;
+         }
+         return subn;
+      }
+
+      public void setSubmission(Submission subn) {
+         this.subn = subn;
+         subnEdited = true;
+      }
+
+      public void setExtensions(Map<String, Object> extensions) {
+         this.extensions = (extensions != null ? extensions : Collections.<String, Object>emptyMap());
+      }
+
+      /**
+       * Return the builder's copy of the person with id, or null if there is no such person
+       */
+      public Person editPerson(String id) {
+         return people.edit(id);
+      }
+
+      public void addPerson(Person person) {
+         people.add(person);
+      }
+
+      /**
+       * Remove the person with id; return false if there is no such person
+       */
+      public boolean removePerson(String id) {
+         return people.remove(id);
+      }
+
+      public Family editFamily(String id) {
+         return families.edit(id);
+      }
+
+      public void addFamily(Family family) {
+         families.add(family);
+      }
+
+      public boolean removeFamily(String id) {
+         return families.remove(id);
+      }
+
+      public Media editMedia(String id) {
+         return media.edit(id);
+      }
+
+      public void addMedia(Media m) {
+         media.add(m);
+      }
+
+      public boolean removeMedia(String id) {
+         return media.remove(id);
+      }
+
+      public Note editNote(String id) {
+         return notes.edit(id);
+      }
+
+      public void addNote(Note note) {
+         notes.add(note);
+      }
+
+      public boolean removeNote(String id) {
+         return notes.remove(id);
+      }
+
+      public Source editSource(String id) {
+         return sources.edit(id);
+      }
+
+      public void addSource(Source source) {
+         sources.add(source);
+      }
+
+      public boolean removeSource(String id) {
+         return sources.remove(id);
+      }
+
+      public Repository editRepository(String id) {
+         return repositories.edit(id);
+      }
+
+      public void addRepository(Repository repository) {
+         repositories.add(repository);
+      }
+
+      public boolean removeRepository(String id) {
+         return repositories.remove(id);
+      }
+
+      public Submitter editSubmitter(String id) {
+         return submitters.edit(id);
+      }
+
+      public void addSubmitter(Submitter submitter) {
+         submitters.add(submitter);
+      }
+
+      public boolean removeSubmitter(String id) {
+         return submitters.remove(id);
+      }
+
+      /**
+       * Return a new snapshot of the records as edited so far
+       */
+      public FrozenGedcom build() {
+         ModelCopier copier = ModelCopier.FROZEN;
+         return new FrozenGedcom(headEdited ? copier.copy(head) : head, subnEdited ? copier.copy(subn) : subn,
+                 copier.copy(extensions), people.freeze(), families.freeze(), media.freeze(), notes.freeze(),
+                 sources.freeze(), repositories.freeze(), submitters.freeze());
+      }
+   }
+
+   /**
+    * The records of one kind in a builder, shared with the snapshot until they are edited
+    */
+   private static final class Edits<T> {
+      private final List<T> list;
+      private final Function<T, String> getId;
+      // records the builder has copied or been given, which are frozen again on each build
+      private final Set<T> owned = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+      // position of the last record with each id; null after a removal until it is next needed
+      private Map<String, Integer> positions = null;
+
+      Edits(List<T> snapshot, Function<T, String> getId) {
+         this.list = new ArrayList<T>(snapshot);
+         this.getId = getId;
+      }
+
+      private Map<String, Integer> positions() {
+         if (positions == null) {
+            positions = new HashMap<String, Integer>(list.size() * 2);
+            for (int i = 0; i < list.size(); i++) {
+               positions.put(getId.apply(list.get(i)), i);
+            }
+         }
+         return positions;
+      }
+
+      T edit(String id) {
+         Integer position = positions().get(id);
+         if (position == null) {
+            return null;
+         }
+         T record = list.get(position);
+         if (!owned.contains(record)) {
+            record = ModelCopier.EDITABLE.copy(record);
+            list.set(position, record);
+            owned.add(record);
+         }
+         return record;
+      }
+
+      void add(T record) {
+         if (positions != null) {
+            positions.put(getId.apply(record), list.size());
+         }
+         list.add(record);
+         owned.add(record);
+      }
+
+      boolean remove(String id) {
+         Integer position = positions().get(id);
+         if (position == null) {
+            return false;
+         }
+         owned.remove(list.remove((int) position));
+         positions = null;
+         return true;
+      }
+
+      List<T> freeze() {
+         List<T> frozen = new ArrayList<T>(list);
+         if (!owned.isEmpty()) {
+            for (int i = 0; i < frozen.size(); i++) {
+               if (owned.contains(frozen.get(i))) {
+                  frozen.set(i, ModelCopier.FROZEN.copy(frozen.get(i)));
+               }
+            }
+         }
+         return frozen;
+      }
+   }
+}
@@ -33,13 +33,16 @@ public class Gedcom extends ExtensionContainer {
     private List<Source> sources = null;
     private List<Repository> repositories = null;
 
-    private transient Map<String, Person> personIndex;
-    private transient Map<String, Family> familyIndex;
-    private transient Map<String, Media> mediaIndex;
-    private transient Map<String, Note> noteIndex;
-    private transient Map<String, Source> sourceIndex;
-    private transient Map<String, Repository> repositoryIndex;
-    private transient Map<String, Submitter> submitterIndex;
+    private transient XrefIndex<Person> personIndex;
+    private transient XrefIndex<Family> familyIndex;
+    private transient XrefIndex<Media> mediaIndex;
+    private transient XrefIndex<Note> noteIndex;
+    private transient XrefIndex<Source> sourceIndex;
+    private transient XrefIndex<Repository> repositoryIndex;
+    private transient XrefIndex<Submitter> submitterIndex;
+    private transient XrefTable xrefTable;
+    // the record with each xref handle, built from the lists when first needed
+    private transient Object[] recordsByHandle;
 
     public Header getHeader() {
         return head;
@@ -54,11 +57,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Person getPerson(String id) {
-        return personIndex.get(id);
+        return personIndex().get(id);
     }
 
     public void setPeople(List<Person> people) {
         this.people = people;
+        personIndex = null;
+        recordsByHandle = null;
     }
 
     public void addPerson(Person person) {
@@ -66,8 +71,14 @@ public class Gedcom extends ExtensionContainer {
             people = new ArrayList<Person>();
         }
         people.add(person);
-        if (personIndex != null) {
-            personIndex.put(person.getId(), person);
+        personIndex().put(person.getId(), person);
+        indexHandle(person.getId(), person);
+    }
+
+    public void removePerson(Person person) {
+        if (removeLast(people, person)) {
+            personIndex().remove(person.getId(), person);
+            unindexHandle(person.getId(), person);
         }
     }
 
@@ -76,11 +87,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Family getFamily(String id) {
-        return familyIndex.get(id);
+        return familyIndex().get(id);
     }
 
     public void setFamilies(List<Family> families) {
         this.families = families;
+        familyIndex = null;
+        recordsByHandle = null;
     }
 
     public void addFamily(Family family) {
@@ -88,8 +101,14 @@ public class Gedcom extends ExtensionContainer {
             families = new ArrayList<Family>();
         }
         families.add(family);
-        if (familyIndex != null) {
-            familyIndex.put(family.getId(), family);
+        familyIndex().put(family.getId(), family);
+        indexHandle(family.getId(), family);
+    }
+
+    public void removeFamily(Family family) {
+        if (removeLast(families, family)) {
+            familyIndex().remove(family.getId(), family);
+            unindexHandle(family.getId(), family);
         }
     }
 
@@ -98,11 +117,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Media getMedia(String id) {
-        return mediaIndex.get(id);
+        return mediaIndex().get(id);
     }
 
     public void setMedia(List<Media> media) {
         this.media = media;
+        mediaIndex = null;
+        recordsByHandle = null;
     }
 
     public void addMedia(Media m) {
@@ -110,8 +131,14 @@ public class Gedcom extends ExtensionContainer {
             media = new ArrayList<Media>();
         }
         media.add(m);
-        if (mediaIndex != null) {
-            mediaIndex.put(m.getId(), m);
+        mediaIndex().put(m.getId(), m);
+        indexHandle(m.getId(), m);
+    }
+
+    public void removeMedia(Media m) {
+        if (removeLast(media, m)) {
+            mediaIndex().remove(m.getId(), m);
+            unindexHandle(m.getId(), m);
         }
     }
 
@@ -120,11 +147,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Note getNote(String id) {
-        return noteIndex.get(id);
+        return noteIndex().get(id);
     }
 
     public void setNotes(List<Note> notes) {
         this.notes = notes;
+        noteIndex = null;
+        recordsByHandle = null;
     }
 
     public void addNote(Note note) {
@@ -132,8 +161,14 @@ public class Gedcom extends ExtensionContainer {
             notes = new ArrayList<Note>();
         }
         notes.add(note);
-        if (noteIndex != null) {
-            noteIndex.put(note.getId(), note);
+        noteIndex().put(note.getId(), note);
+        indexHandle(note.getId(), note);
+    }
+
+    public void removeNote(Note note) {
+        if (removeLast(notes, note)) {
+            noteIndex().remove(note.getId(), note);
+            unindexHandle(note.getId(), note);
         }
     }
 
@@ -142,11 +177,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Source getSource(String id) {
-        return sourceIndex.get(id);
+        return sourceIndex().get(id);
     }
 
     public void setSources(List<Source> sources) {
         this.sources = sources;
+        sourceIndex = null;
+        recordsByHandle = null;
     }
 
     public void addSource(Source source) {
@@ -154,8 +191,14 @@ public class Gedcom extends ExtensionContainer {
             sources = new ArrayList<Source>();
         }
         sources.add(source);
-        if (sourceIndex != null) {
-            sourceIndex.put(source.getId(), source);
+        sourceIndex().put(source.getId(), source);
+        indexHandle(source.getId(), source);
+    }
+
+    public void removeSource(Source source) {
+        if (removeLast(sources, source)) {
+            sourceIndex().remove(source.getId(), source);
+            unindexHandle(source.getId(), source);
         }
     }
 
@@ -164,11 +207,13 @@ public class Gedcom extends ExtensionContainer {
     }
 
     public Repository getRepository(String id) {
-        return repositoryIndex.get(id);
+        return repositoryIndex().get(id);
     }
 
     public void setRepositories(List<Repository> repositories) {
         this.repositories = repositories;
+        repositoryIndex = null;
+        recordsByHandle = null;
     }
 
     public void addRepository(Repository repository) {
@@ -176,13 +221,19 @@ public class Gedcom extends ExtensionContainer {
             repositories = new ArrayList<Repository>();
         }
         repositories.add(repository);
-        if (repositoryIndex != null) {
-            repositoryIndex.put(repository.getId(), repository);
+        repositoryIndex().put(repository.getId(), repository);
+        indexHandle(repository.getId(), repository);
+    }
+
+    public void removeRepository(Repository repository) {
+        if (removeLast(repositories, repository)) {
+            repositoryIndex().remove(repository.getId(), repository);
+            unindexHandle(repository.getId(), repository);
         }
     }
 
     public Submitter getSubmitter(String id) {
-        return submitterIndex.get(id);
+        return submitterIndex().get(id);
     }
 
     public List<Submitter> getSubmitters() {
@@ -191,6 +242,8 @@ public class Gedcom extends ExtensionContainer {
 
     public void setSubmitters(List<Submitter> submitters) {
         this.subms = submitters;
+        submitterIndex = null;
+        recordsByHandle = null;
     }
 
     public void addSubmitter(Submitter submitter) {
@@ -199,8 +252,15 @@ public class Gedcom extends ExtensionContainer {
         }
         subms.add(submitter);
 
-        if (submitterIndex != null) {
-            submitterIndex.put(submitter.getId(), submitter);
+        submitterIndex().put(submitter.getId(), submitter);
+
+        indexHandle(submitter.getId(), submitter);
+    }
+
+    public void removeSubmitter(Submitter submitter) {
+        if (removeLast(subms, submitter)) {
+            submitterIndex().remove(submitter.getId(), submitter);
+            unindexHandle(submitter.getId(), submitter);
         }
     }
 
@@ -222,113 +282,233 @@ public class Gedcom extends ExtensionContainer {
         this.subn = subn;
     }
 
+    /**
+     * Return the top-level submission record, without looking in the header
+     */
+    Submission getSubmissionRecord() {
+        return subn;
+    }
+
+    /**
+     * Add the refs that are missing from one side of a link between a person and a family: a family is given
+     * a HUSB or WIFE ref, depending on the person's sex, for each person whose FAMS ref names it and a CHIL ref
+     * for each person whose FAMC ref names it, and a person is given a FAMS or FAMC ref for each family that names
+     * them.  Refs that name a person or family that doesn't exist are skipped.
+     */
     public void updateReferences() {
-        for (Person person : getPeople()) {
-            for (SpouseFamilyRef spouseRef : person.getSpouseFamilyRefs()) {
-                Family family = getFamily(spouseRef.getRef());
-                boolean spouseRefInHusbands = family.getHusbandRefs().stream().anyMatch(ref -> ref.getRef().equals(person.getId()));
-                boolean spouseRefInWives = family.getWifeRefs().stream().anyMatch(ref -> ref.getRef().equals(person.getId()));
-                if (!spouseRefInHusbands && !spouseRefInWives) {
-                    Optional<EventFact> fact = person.getEventsFacts().stream().filter(event -> event.getTag().equals("SEX")).findFirst();
-                    SpouseRef ref = new SpouseRef();
-                    ref.setRef(person.getId());
-
-                    if (fact.isPresent() && fact.get().getValue().equals("F")) {
-                        family.addWife(ref);
-                    } else {
-                        family.addHusband(ref);
-                    }
-                }
-            }
+        updateReferences(null, 1);
+    }
 
-            for (ParentFamilyRef parentRef : person.getParentFamilyRefs()) {
-                Family family = getFamily(parentRef.getRef());
-                boolean containsReference = family.getChildRefs().stream().anyMatch(ref -> ref.getRef().equals(person.getId()));
-                if (!containsReference) {
-                    ChildRef ref = new ChildRef();
-                    ref.setRef(person.getId());
-                    family.addChild(ref);
-                }
-            }
+    /**
+     * Add the missing refs as updateReferences() does, checking the people and families on up to parallelism
+     * threads.  Each ref that names a person or family that doesn't exist is passed to handler, if it isn't null,
+     * on the calling thread.  The refs added and the calls to handler are the same, and in the same order,
+     * whatever the parallelism.
+     */
+    public void updateReferences(DanglingReferenceHandler handler, int parallelism) {
+        // build the indexes now, so the threads only read them
+        personIndex();
+        familyIndex();
+        new ReferenceUpdater(this, handler).update(parallelism);
+    }
+
+    /**
+     * Rebuild the indexes used by getPerson, getFamily and the other lookups.  Records added with addPerson and
+     * the other add methods are indexed as they are added, so this is only needed after changing the lists directly.
+     */
+    public void createIndexes() {
+        personIndex = XrefIndex.of(getPeople(), Person::getId);
+        familyIndex = XrefIndex.of(getFamilies(), Family::getId);
+        mediaIndex = XrefIndex.of(getMedia(), Media::getId);
+        noteIndex = XrefIndex.of(getNotes(), Note::getId);
+        sourceIndex = XrefIndex.of(getSources(), Source::getId);
+        repositoryIndex = XrefIndex.of(getRepositories(), Repository::getId);
+        submitterIndex = XrefIndex.of(getSubmitters(), Submitter::getId);
+    }
+
+    /**
+     * Make room for about this many people and families, so the lists and indexes needn't grow while a large
+     * file is parsed
+     */
+    public void ensureCapacity(int personCount, int familyCount) {
+        if (people == null) {
+            people = new ArrayList<Person>(personCount);
+        } else if (people instanceof ArrayList) {
+            ((ArrayList<Person>) people).ensureCapacity(personCount);
         }
+        personIndex().ensureCapacity(personCount);
+        if (families == null) {
+            families = new ArrayList<Family>(familyCount);
+        } else if (families instanceof ArrayList) {
+            ((ArrayList<Family>) families).ensureCapacity(familyCount);
+        }
+        familyIndex().ensureCapacity(familyCount);
+    }
 
-        for (Family family : getFamilies()) {
-            for (SpouseRef ref : family.getHusbandRefs()) {
-                Person person = getPerson(ref.getRef());
-                boolean containsRef = person.getSpouseFamilyRefs().stream()
-                        .anyMatch(spouseFamilyRef -> spouseFamilyRef.getRef().equals(family.getId()));
-                if (!containsRef) {
-                    SpouseFamilyRef spouseFamilyRef = new SpouseFamilyRef();
-                    spouseFamilyRef.setRef(family.getId());
-                    person.addSpouseFamilyRef(spouseFamilyRef);
-                }
-            }
-           for (SpouseRef ref : family.getWifeRefs()) {
-              Person person = getPerson(ref.getRef());
-              boolean containsRef = person.getSpouseFamilyRefs().stream()
-                      .anyMatch(spouseFamilyRef -> spouseFamilyRef.getRef().equals(family.getId()));
-              if (!containsRef) {
-                 SpouseFamilyRef spouseFamilyRef = new SpouseFamilyRef();
-                 spouseFamilyRef.setRef(family.getId());
-                 person.addSpouseFamilyRef(spouseFamilyRef);
-              }
-           }
-
-           for (ChildRef ref : family.getChildRefs()) {
-              Person person = getPerson(ref.getRef());
-              boolean containsRef = person.getParentFamilyRefs().stream()
-                      .anyMatch(parentFamilyRef -> parentFamilyRef.getRef().equals(family.getId()));
-              if (!containsRef) {
-                 ParentFamilyRef spouseFamilyRef = new ParentFamilyRef();
-                 spouseFamilyRef.setRef(family.getId());
-                 person.addParentFamilyRef(spouseFamilyRef);
-              }
-           }
+    private XrefIndex<Person> personIndex() {
+        if (personIndex == null) {
+            personIndex = XrefIndex.of(getPeople(), Person::getId);
         }
+        return personIndex;
     }
 
-    public void createIndexes() {
-        personIndex = new HashMap<String, Person>();
-        for (Person person : getPeople()) {
-            personIndex.put(person.getId(), person);
+    private XrefIndex<Family> familyIndex() {
+        if (familyIndex == null) {
+            familyIndex = XrefIndex.of(getFamilies(), Family::getId);
+        }
+        return familyIndex;
+    }
+
+    private XrefIndex<Media> mediaIndex() {
+        if (mediaIndex == null) {
+            mediaIndex = XrefIndex.of(getMedia(), Media::getId);
+        }
+        return mediaIndex;
+    }
+
+    private XrefIndex<Note> noteIndex() {
+        if (noteIndex == null) {
+            noteIndex = XrefIndex.of(getNotes(), Note::getId);
         }
-        familyIndex = new HashMap<String, Family>();
-        for (Family family : getFamilies()) {
-            familyIndex.put(family.getId(), family);
+        return noteIndex;
+    }
+
+    private XrefIndex<Source> sourceIndex() {
+        if (sourceIndex == null) {
+            sourceIndex = XrefIndex.of(getSources(), Source::getId);
         }
-        mediaIndex = new HashMap<String, Media>();
-        for (Media m : getMedia()) {
-            mediaIndex.put(m.getId(), m);
+        return sourceIndex;
+    }
+
+    private XrefIndex<Repository> repositoryIndex() {
+        if (repositoryIndex == null) {
+            repositoryIndex = XrefIndex.of(getRepositories(), Repository::getId);
+        }
+        return repositoryIndex;
+    }
+
+    private XrefIndex<Submitter> submitterIndex() {
+        if (submitterIndex == null) {
+            submitterIndex = XrefIndex.of(getSubmitters(), Submitter::getId);
         }
-        noteIndex = new HashMap<String, Note>();
-        for (Note note : getNotes()) {
-            noteIndex.put(note.getId(), note);
+        return submitterIndex;
+    }
+
+    public XrefTable getXrefTable() {
+        return xrefTable;
+    }
+
+    /**
+     * Use xrefTable to number xrefs, so refs can be dereferenced by their xref's handle rather than by record type.
+     * ModelParser sets this when compact xrefs are enabled; see XrefTable.
+     */
+    public void setXrefTable(XrefTable xrefTable) {
+        this.xrefTable = xrefTable;
+        recordsByHandle = null;
+        if (xrefTable != null) {
+            recordsByHandle();
+        }
+    }
+
+    /**
+     * Return the record of type with xref ref, found by the xref's handle in the xref table, or null if there isn't an
+     * xref table or the record with that handle isn't of type; refs fall back to looking their xref up by string when
+     * this returns null.  Refs don't keep handles themselves, which would make every ref larger.
+     */
+    <T> T resolve(String ref, Class<T> type) {
+        int handle = (xrefTable != null ? xrefTable.find(ref) : -1);
+        if (handle < 0) {
+            return null;
+        }
+        Object[] records = recordsByHandle();
+        Object record = handle < records.length ? records[handle] : null;
+        return type.isInstance(record) ? type.cast(record) : null;
+    }
+
+    private Object[] recordsByHandle() {
+        if (recordsByHandle == null) {
+            recordsByHandle = new Object[xrefTable.size()];
+            for (Person person : getPeople()) {
+                indexHandle(person.getId(), person);
+            }
+            for (Family family : getFamilies()) {
+                indexHandle(family.getId(), family);
+            }
+            for (Media m : getMedia()) {
+                indexHandle(m.getId(), m);
+            }
+            for (Note note : getNotes()) {
+                indexHandle(note.getId(), note);
+            }
+            for (Source source : getSources()) {
+                indexHandle(source.getId(), source);
+            }
+            for (Repository repository : getRepositories()) {
+                indexHandle(repository.getId(), repository);
+            }
+            for (Submitter submitter : getSubmitters()) {
+                indexHandle(submitter.getId(), submitter);
+            }
         }
-        sourceIndex = new HashMap<String, Source>();
-        for (Source source : getSources()) {
-            sourceIndex.put(source.getId(), source);
+        return recordsByHandle;
+    }
+
+    private void indexHandle(String id, Object record) {
+        if (recordsByHandle != null) {
+            int handle = xrefTable.intern(id);
+            if (handle >= 0) {
+                if (handle >= recordsByHandle.length) {
+                    recordsByHandle = Arrays.copyOf(recordsByHandle, Math.max(handle + 1, recordsByHandle.length * 2));
+                }
+                recordsByHandle[handle] = record;
+            }
         }
-        repositoryIndex = new HashMap<String, Repository>();
-        for (Repository repository : getRepositories()) {
-            repositoryIndex.put(repository.getId(), repository);
+    }
+
+    private void unindexHandle(String id, Object record) {
+        if (recordsByHandle != null) {
+            int handle = xrefTable.find(id);
+            if (handle >= 0 && handle < recordsByHandle.length && recordsByHandle[handle] == record) {
+                recordsByHandle[handle] = null;
+            }
         }
+    }
 
-        submitterIndex = new HashMap<String, Submitter>();
-        for (Submitter submitter : getSubmitters()) {
-            submitterIndex.put(submitter.getId(), submitter);
+    /**
+     * Remove record from list, looking from the end since records are usually removed soon after they are added
+     */
+    private static boolean removeLast(List<?> list, Object record) {
+        if (list != null) {
+            for (int i = list.size() - 1; i >= 0; i--) {
+                if (list.get(i) == record) {
+                    list.remove(i);
+                    return true;
+                }
+            }
         }
+        return false;
+    }
+
+    /**
+     * Return an immutable snapshot of this gedcom that many threads can read at once; see FrozenGedcom.
+     * The snapshot copies the records, so later changes to this gedcom don't change it.
+     */
+    public FrozenGedcom freeze() {
+        return FrozenGedcom.of(this);
     }
 
     public void accept(Visitor visitor) {
         if (visitor.visit(this)) {
-            if (head != null) {
-                head.accept(visitor);
+            if (getHeader() != null) {
+                getHeader().accept(visitor);
             }
             for (Submitter submitter : getSubmitters()) {
                 submitter.accept(visitor);
             }
-            if (subn != null) {
-                subn.accept(visitor);
+            // a submission under the header is visited with the header
+            Submission submission = getSubmissionRecord();
+            if (submission != null) {
+                submission.accept(visitor);
             }
             for (Person person : getPeople()) {
                 person.accept(visitor);
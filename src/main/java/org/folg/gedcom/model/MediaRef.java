@@ -31,13 +31,21 @@ public class MediaRef extends ExtensionContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    /**
     * Convenience function to dereference media
     * @param gedcom Gedcom
     * @return referenced media
     */
    public Media getMedia(Gedcom gedcom) {
-      return gedcom.getMedia(ref);
+      Media media = gedcom.resolve(ref, Media.class);
+      return media != null ? media : gedcom.getMedia(ref);
    }
 
    public void accept(Visitor visitor) {
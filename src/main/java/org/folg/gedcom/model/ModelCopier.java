@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deep copies of model objects, made by copying their fields.  Objects of the model's classes are copied field by
+ * field, lists and maps are copied element by element, and anything else (strings, numbers, objects of other
+ * classes) is shared.  A frozen copy wraps every list and map it copies in an unmodifiable view, and sets list
+ * fields that are null to Collections.emptyList(), so elements can't be added to or removed from it, not even by
+ * methods like addName that create the list when it's null.  An editable copy turns those empty lists back into
+ * nulls.
+ */
+final class ModelCopier {
+   static final ModelCopier EDITABLE = new ModelCopier(false);
+   static final ModelCopier FROZEN = new ModelCopier(true);
+
+   private static final String MODEL_PACKAGE = ModelCopier.class.getPackage().getName();
+
+   private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+      @Override
+      protected Field[] computeValue(Class<?> type) {
+         List<Field> fields = new ArrayList<Field>();
+         for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+               if (!Modifier.isStatic(field.getModifiers())) {
+                  field.setAccessible(true);
+                  fields.add(field);
+               }
+            }
+         }
+         return fields.toArray(new Field[fields.size()]);
+      }
+   };
+
+   private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+      @Override
+      protected Constructor<?> computeValue(Class<?> type) {
+         try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+         } catch (NoSuchMethodException e) {
+            return null;
+         }
+      }
+   };
+
+   private final boolean frozen;
+
+   private ModelCopier(boolean frozen) {
+      this.frozen = frozen;
+   }
+
+   @SuppressWarnings("unchecked")
+   <T> T copy(T object) {
+      if (object == null) {
+         return null;
+      }
+      if (object == Collections.emptyList()) {
+         return frozen ? object : null;
+      }
+      if (object instanceof List) {
+         List<?> list = (List<?>) object;
+         List<Object> copy = new ArrayList<Object>(list.size());
+         for (Object element : list) {
+            copy.add(copy(element));
+         }
+         return (T) (frozen ? Collections.unmodifiableList(copy) : copy);
+      }
+      if (object instanceof Map) {
+         Map<?, ?> map = (Map<?, ?>) object;
+         Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+         for (Map.Entry<?, ?> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copy(entry.getValue()));
+         }
+         return (T) (frozen ? Collections.unmodifiableMap(copy) : copy);
+      }
+      Class<?> type = object.getClass();
+      Constructor<?> constructor = CONSTRUCTORS.get(type);
+      if (!type.getName().startsWith(MODEL_PACKAGE + ".") || constructor == null) {
+         return object;
+      }
+      try {
+         Object copy = constructor.newInstance();
+         for (Field field : FIELDS.get(type)) {
+            Object value = field.get(object);
+            if (value == null && frozen && field.getType() == List.class) {
+               value = Collections.emptyList();
+            }
+            field.set(copy, copy(value));
+         }
+         return (T) copy;
+      } catch (ReflectiveOperationException e) {
+         throw new IllegalStateException("Can't copy " + type.getName(), e);
+      }
+   }
+}
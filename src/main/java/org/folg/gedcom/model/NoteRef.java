@@ -37,13 +37,21 @@ public class NoteRef extends ExtensionContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    /**
     * Convenience function to dereference note
     * @param gedcom Gedcom
     * @return referenced note
     */
    public Note getNote(Gedcom gedcom) {
-      return gedcom.getNote(ref);
+      Note note = gedcom.resolve(ref, Note.class);
+      return note != null ? note : gedcom.getNote(ref);
    }
 
    public List<SourceCitation> getSourceCitations() {
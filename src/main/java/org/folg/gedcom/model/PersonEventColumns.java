@@ -0,0 +1,434 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * The people of a gedcom and their events and facts, stored column by column in primitive arrays for reports that
+ * scan every event.  People are numbered from 0 in the order they were added, and events from 0 in the order of
+ * their people; the events of person p are firstEvent(p) to firstEvent(p + 1) - 1.
+ * Ids, names, tags, dates and places are dictionary-encoded: each column holds the code of the value in an
+ * XrefTable, or NONE if there is no value, so values can be compared and counted by code.
+ *
+ * Each event's date is also kept as a range of years: the first and last years that the date mentions, with
+ * NO_YEAR for an open end (BEF 1850 is NO_YEAR to 1850, AFT 1850 is 1850 to NO_YEAR) or if it names no year.
+ *
+ * Build one from a Gedcom with of, or from a parse without keeping the model by adding each person that a
+ * RecordListener is passed to a Builder.  Once built the columns don't change, so they can be read on any number
+ * of threads; events() can be made parallel to run aggregate queries on all cores.
+ */
+public final class PersonEventColumns {
+   public static final int NONE = -1;
+   public static final int NO_YEAR = Integer.MIN_VALUE;
+
+   private final int personCount;
+   private final int eventCount;
+   private final XrefTable ids;
+   private final XrefTable names;
+   private final XrefTable tags;
+   private final XrefTable dates;
+   private final XrefTable places;
+   // person columns
+   private final int[] personIds;
+   private final byte[] sexes;
+   private final int[] personNames;
+   private final int[] firstEvents;
+   // event columns
+   private final int[] eventPeople;
+   private final int[] eventTags;
+   private final int[] eventDates;
+   private final int[] fromYears;
+   private final int[] toYears;
+   private final int[] eventPlaces;
+
+   private PersonEventColumns(Builder b) {
+      personCount = b.personCount;
+      eventCount = b.eventCount;
+      ids = b.ids;
+      names = b.names;
+      tags = b.tags;
+      dates = b.dates;
+      places = b.places;
+      personIds = Arrays.copyOf(b.personIds, personCount);
+      sexes = Arrays.copyOf(b.sexes, personCount);
+      personNames = Arrays.copyOf(b.personNames, personCount);
+      firstEvents = Arrays.copyOf(b.firstEvents, personCount + 1);
+      firstEvents[personCount] = eventCount;
+      eventPeople = Arrays.copyOf(b.eventPeople, eventCount);
+      eventTags = Arrays.copyOf(b.eventTags, eventCount);
+      eventDates = Arrays.copyOf(b.eventDates, eventCount);
+      fromYears = Arrays.copyOf(b.fromYears, eventCount);
+      toYears = Arrays.copyOf(b.toYears, eventCount);
+      eventPlaces = Arrays.copyOf(b.eventPlaces, eventCount);
+   }
+
+   /**
+    * Return the columns of the people of gedcom
+    */
+   public static PersonEventColumns of(Gedcom gedcom) {
+      Builder builder = new Builder(gedcom.getPeople().size());
+      for (Person person : gedcom.getPeople()) {
+         builder.add(person);
+      }
+      return builder.build();
+   }
+
+   /**
+    * Collects people into columns.  A builder builds once.  Not thread-safe.
+    */
+   public static final class Builder {
+      private int personCount = 0;
+      private int eventCount = 0;
+      private final XrefTable ids;
+      private final XrefTable names;
+      private final XrefTable tags = new XrefTable(256);
+      private final XrefTable dates;
+      private final XrefTable places;
+      private int[] personIds;
+      private byte[] sexes;
+      private int[] personNames;
+      private int[] firstEvents;
+      private int[] eventPeople;
+      private int[] eventTags;
+      private int[] eventDates;
+      private int[] fromYears;
+      private int[] toYears;
+      private int[] eventPlaces;
+      private final int[] years = new int[2];
+      private boolean built = false;
+
+      public Builder() {
+         this(1024);
+      }
+
+      /**
+       * @param expectedPeople the number of people expected, to size the columns
+       */
+      public Builder(int expectedPeople) {
+         int people = Math.max(expectedPeople, 16);
+         ids = new XrefTable(people);
+         names = new XrefTable(people);
+         dates = new XrefTable(people);
+         places = new XrefTable(Math.max(people / 8, 16));
+         personIds = new int[people];
+         sexes = new byte[people];
+         personNames = new int[people];
+         firstEvents = new int[people + 1];
+         growEvents(people * 4);
+      }
+
+      /**
+       * Add person and its events and facts; return the person's number
+       */
+      public int add(Person person) {
+         if (built) {
+            throw new IllegalStateException("Columns already built");
+         }
+         if (personCount + 1 == firstEvents.length) {
+            int capacity = personCount * 2;
+            personIds = Arrays.copyOf(personIds, capacity);
+            sexes = Arrays.copyOf(sexes, capacity);
+            personNames = Arrays.copyOf(personNames, capacity);
+            firstEvents = Arrays.copyOf(firstEvents, capacity + 1);
+         }
+         int p = personCount++;
+         personIds[p] = ids.intern(person.getId());
+         List<Name> personNameList = person.getNames();
+         personNames[p] = personNameList.isEmpty() ? NONE : names.intern(personNameList.get(0).getDisplayValue());
+         firstEvents[p] = eventCount;
+         byte sex = 0;
+         for (EventFact eventFact : person.getEventsFacts()) {
+            if (eventCount == eventTags.length) {
+               growEvents(eventCount * 2);
+            }
+            int e = eventCount++;
+            String tag = eventFact.getTag();
+            eventPeople[e] = p;
+            eventTags[e] = tags.intern(tag);
+            eventDates[e] = dates.intern(eventFact.getDate());
+            eventPlaces[e] = places.intern(eventFact.getPlace());
+            yearRange(eventFact.getDate(), years);
+            fromYears[e] = years[0];
+            toYears[e] = years[1];
+            if (sex == 0 && "SEX".equals(tag) && eventFact.getValue() != null && eventFact.getValue().length() > 0) {
+               sex = (byte) Character.toUpperCase(eventFact.getValue().charAt(0));
+            }
+         }
+         sexes[p] = sex;
+         return p;
+      }
+
+      public PersonEventColumns build() {
+         if (built) {
+            throw new IllegalStateException("Columns already built");
+         }
+         built = true;
+         return new PersonEventColumns(this);
+      }
+
+      private void growEvents(int capacity) {
+         capacity = Math.max(capacity, 64);
+         eventPeople = grow(eventPeople, capacity);
+         eventTags = grow(eventTags, capacity);
+         eventDates = grow(eventDates, capacity);
+         fromYears = grow(fromYears, capacity);
+         toYears = grow(toYears, capacity);
+         eventPlaces = grow(eventPlaces, capacity);
+      }
+
+      private static int[] grow(int[] column, int capacity) {
+         return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+      }
+   }
+
+   /**
+    * Set range[0] and range[1] to the first and last years that date mentions; see the class comment
+    */
+   static void yearRange(String date, int[] range) {
+      int first = NO_YEAR;
+      int last = NO_YEAR;
+      boolean before = false;
+      boolean after = false;
+      boolean from = false;
+      boolean to = false;
+      int length = (date == null ? 0 : date.length());
+      int i = 0;
+      while (i < length) {
+         char c = date.charAt(i);
+         if (c >= '0' && c <= '9') {
+            int start = i;
+            int number = 0;
+            while (i < length && (c = date.charAt(i)) >= '0' && c <= '9') {
+               number = number * 10 + (c - '0');
+               i++;
+            }
+            // days have one or two digits; years have three or four
+            if (i - start >= 3 && i - start <= 4) {
+               if (first == NO_YEAR) {
+                  first = number;
+               }
+               last = number;
+            }
+            // skip the second half of a dual year such as 1750/51
+            if (i < length && date.charAt(i) == '/') {
+               i++;
+               while (i < length && (c = date.charAt(i)) >= '0' && c <= '9') {
+                  i++;
+               }
+            }
+         }
+         else if (Character.isLetter(c)) {
+            int start = i;
+            while (i < length && Character.isLetter(date.charAt(i))) {
+               i++;
+            }
+            if (first == NO_YEAR) {
+               before |= keyword(date, start, i, "BEF");
+               after |= keyword(date, start, i, "AFT");
+               from |= keyword(date, start, i, "FROM");
+               to |= keyword(date, start, i, "TO");
+            }
+            else if (from && keyword(date, start, i, "TO")) {
+               from = false;
+            }
+         }
+         else {
+            i++;
+         }
+      }
+      if (first == NO_YEAR) {
+         range[0] = range[1] = NO_YEAR;
+      }
+      else if (before || to) {
+         range[0] = NO_YEAR;
+         range[1] = last;
+      }
+      else if (after || from) {
+         range[0] = first;
+         range[1] = NO_YEAR;
+      }
+      else {
+         range[0] = first;
+         range[1] = last;
+      }
+   }
+
+   private static boolean keyword(String date, int start, int end, String keyword) {
+      return end - start == keyword.length() && date.regionMatches(true, start, keyword, 0, keyword.length());
+   }
+
+   public int getPersonCount() {
+      return personCount;
+   }
+
+   public int getEventCount() {
+      return eventCount;
+   }
+
+   /**
+    * Return the numbers of all events, to filter and aggregate; call parallel() on the stream to use all cores
+    */
+   public IntStream events() {
+      return IntStream.range(0, eventCount);
+   }
+
+   /**
+    * Return the number of events that match, counting on all cores
+    */
+   public long countEvents(IntPredicate match) {
+      return events().parallel().filter(match).count();
+   }
+
+   /**
+    * Return the number of events at each place code that match, counting on all cores
+    */
+   public int[] countByPlace(IntPredicate match) {
+      int size = places.size();
+      return events().parallel().collect(() -> new int[size], (counts, e) -> {
+         int place = eventPlaces[e];
+         if (place != NONE && match.test(e)) {
+            counts[place]++;
+         }
+      }, PersonEventColumns::addCounts);
+   }
+
+   /**
+    * Return the number of events with each tag code that match, counting on all cores; events without a tag
+    * aren't counted
+    */
+   public int[] countByTag(IntPredicate match) {
+      int size = tags.size();
+      return events().parallel().collect(() -> new int[size], (counts, e) -> {
+         int tag = eventTags[e];
+         if (tag != NONE && match.test(e)) {
+            counts[tag]++;
+         }
+      }, PersonEventColumns::addCounts);
+   }
+
+   private static void addCounts(int[] counts, int[] more) {
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] += more[i];
+      }
+   }
+
+   // person columns
+
+   public String getId(int person) {
+      return string(ids, personIds[person]);
+   }
+
+   /**
+    * Return the sex of person as M, F or U as given in the file, or 0 if it isn't given
+    */
+   public char getSex(int person) {
+      return (char) sexes[person];
+   }
+
+   public int getNameCode(int person) {
+      return personNames[person];
+   }
+
+   /**
+    * Return the display value of the first name of person, or null if the person has no name
+    */
+   public String getName(int person) {
+      return string(names, personNames[person]);
+   }
+
+   public int firstEvent(int person) {
+      return firstEvents[person];
+   }
+
+   // event columns
+
+   public int getPerson(int event) {
+      return eventPeople[event];
+   }
+
+   public int getTagCode(int event) {
+      return eventTags[event];
+   }
+
+   public String getTag(int event) {
+      return string(tags, eventTags[event]);
+   }
+
+   public int getDateCode(int event) {
+      return eventDates[event];
+   }
+
+   public String getDate(int event) {
+      return string(dates, eventDates[event]);
+   }
+
+   public int getFromYear(int event) {
+      return fromYears[event];
+   }
+
+   public int getToYear(int event) {
+      return toYears[event];
+   }
+
+   public int getPlaceCode(int event) {
+      return eventPlaces[event];
+   }
+
+   public String getPlace(int event) {
+      return string(places, eventPlaces[event]);
+   }
+
+   // dictionaries
+
+   /**
+    * Return the code of tag, or NONE if no event has it
+    */
+   public int tagCode(String tag) {
+      return tags.find(tag);
+   }
+
+   /**
+    * Return the code of place, or NONE if no event has it
+    */
+   public int placeCode(String place) {
+      return places.find(place);
+   }
+
+   public String tag(int code) {
+      return string(tags, code);
+   }
+
+   public String place(int code) {
+      return string(places, code);
+   }
+
+   public int getTagCount() {
+      return tags.size();
+   }
+
+   public int getPlaceCount() {
+      return places.size();
+   }
+
+   private static String string(XrefTable dictionary, int code) {
+      return code != NONE ? dictionary.get(code) : null;
+   }
+}
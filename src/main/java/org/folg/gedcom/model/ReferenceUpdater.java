@@ -0,0 +1,315 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Adds the refs that updateReferences finds missing.  The links between people and families are first put into
+ * hash sets of (record, id) edges, so checking whether a link is already there takes constant time rather than a
+ * scan of the record's refs.  The people and the families are then checked in slices, on several threads if asked,
+ * for missing links, and the links found missing are added in order on the calling thread, so the result and the
+ * order of the calls to the handler are the same however many threads are used.
+ */
+final class ReferenceUpdater {
+   // don't split fewer records than this across threads
+   static final int MIN_SLICE_SIZE = 10000;
+
+   private static final String SEX = "SEX";
+
+   /**
+    * A link from a record, compared by the identity of the record and the value of the id
+    */
+   private static final class Edge {
+      final Object record;
+      final String id;
+
+      Edge(Object record, String id) {
+         this.record = record;
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Edge)) {
+            return false;
+         }
+         Edge edge = (Edge) o;
+         return record == edge.record && Objects.equals(id, edge.id);
+      }
+
+      @Override
+      public int hashCode() {
+         return System.identityHashCode(record) * 31 + Objects.hashCode(id);
+      }
+   }
+
+   private enum Kind { DANGLING, SPOUSE, CHILD, SPOUSE_FAMILY, PARENT_FAMILY }
+
+   /**
+    * A ref to add, or a dangling ref to report
+    */
+   private static final class Change {
+      final Kind kind;
+      final ExtensionContainer record;
+      final ExtensionContainer target;
+      final boolean female;
+
+      Change(Kind kind, ExtensionContainer record, ExtensionContainer target, boolean female) {
+         this.kind = kind;
+         this.record = record;
+         this.target = target;
+         this.female = female;
+      }
+   }
+
+   private final Gedcom gedcom;
+   private final DanglingReferenceHandler handler;
+   private final List<Person> people;
+   private final List<Family> families;
+   // people named by each family's HUSB and WIFE refs, and by its CHIL refs
+   private final Set<Edge> spouses = new HashSet<Edge>();
+   private final Set<Edge> children = new HashSet<Edge>();
+   // families named by each person's FAMS refs, and by their FAMC refs
+   private final Set<Edge> spouseFamilies = new HashSet<Edge>();
+   private final Set<Edge> parentFamilies = new HashSet<Edge>();
+
+   ReferenceUpdater(Gedcom gedcom, DanglingReferenceHandler handler) {
+      this.gedcom = gedcom;
+      this.handler = handler;
+      this.people = gedcom.getPeople();
+      this.families = gedcom.getFamilies();
+   }
+
+   void update(int parallelism) {
+      for (Family family : families) {
+         for (SpouseRef ref : family.getHusbandRefs()) {
+            spouses.add(new Edge(family, ref.getRef()));
+         }
+         for (SpouseRef ref : family.getWifeRefs()) {
+            spouses.add(new Edge(family, ref.getRef()));
+         }
+         for (ChildRef ref : family.getChildRefs()) {
+            children.add(new Edge(family, ref.getRef()));
+         }
+      }
+      for (Person person : people) {
+         for (SpouseFamilyRef ref : person.getSpouseFamilyRefs()) {
+            spouseFamilies.add(new Edge(person, ref.getRef()));
+         }
+         for (ParentFamilyRef ref : person.getParentFamilyRefs()) {
+            parentFamilies.add(new Edge(person, ref.getRef()));
+         }
+      }
+
+      // refs added to families for people are never missing from the people, and the reverse, so both sides can
+      // be checked against the links as they were before any were added
+      List<List<Change>> personChanges;
+      List<List<Change>> familyChanges;
+      int threads = Math.min(parallelism, Math.max(people.size(), families.size()) / MIN_SLICE_SIZE);
+      if (threads > 1) {
+         ExecutorService executor = Executors.newFixedThreadPool(threads);
+         try {
+            List<Future<List<Change>>> personFutures = submit(executor, threads, people.size(), this::checkPeople);
+            List<Future<List<Change>>> familyFutures = submit(executor, threads, families.size(), this::checkFamilies);
+            personChanges = get(personFutures);
+            familyChanges = get(familyFutures);
+         } finally {
+            executor.shutdown();
+         }
+      }
+      else {
+         personChanges = new ArrayList<List<Change>>();
+         personChanges.add(checkPeople(0, people.size()));
+         familyChanges = new ArrayList<List<Change>>();
+         familyChanges.add(checkFamilies(0, families.size()));
+      }
+
+      for (List<Change> changes : personChanges) {
+         apply(changes);
+      }
+      for (List<Change> changes : familyChanges) {
+         apply(changes);
+      }
+   }
+
+   private interface Slice {
+      List<Change> check(int start, int end);
+   }
+
+   private static List<Future<List<Change>>> submit(ExecutorService executor, int threads, int size, Slice slice) {
+      List<Future<List<Change>>> futures = new ArrayList<Future<List<Change>>>(threads);
+      for (int i = 0; i < threads; i++) {
+         final int start = (int) ((long) size * i / threads);
+         final int end = (int) ((long) size * (i + 1) / threads);
+         futures.add(executor.submit(() -> slice.check(start, end)));
+      }
+      return futures;
+   }
+
+   private static List<List<Change>> get(List<Future<List<Change>>> futures) {
+      List<List<Change>> results = new ArrayList<List<Change>>(futures.size());
+      try {
+         for (Future<List<Change>> future : futures) {
+            results.add(future.get());
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while updating references", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IllegalStateException(e.getCause());
+      }
+      return results;
+   }
+
+   private List<Change> checkPeople(int start, int end) {
+      List<Change> changes = new ArrayList<Change>();
+      for (int i = start; i < end; i++) {
+         Person person = people.get(i);
+         for (SpouseFamilyRef ref : person.getSpouseFamilyRefs()) {
+            Family family = gedcom.getFamily(ref.getRef());
+            if (family == null) {
+               changes.add(new Change(Kind.DANGLING, person, ref, false));
+            }
+            else if (!spouses.contains(new Edge(family, person.getId()))) {
+               changes.add(new Change(Kind.SPOUSE, family, person, isFemale(person)));
+            }
+         }
+         for (ParentFamilyRef ref : person.getParentFamilyRefs()) {
+            Family family = gedcom.getFamily(ref.getRef());
+            if (family == null) {
+               changes.add(new Change(Kind.DANGLING, person, ref, false));
+            }
+            else if (!children.contains(new Edge(family, person.getId()))) {
+               changes.add(new Change(Kind.CHILD, family, person, false));
+            }
+         }
+      }
+      return changes;
+   }
+
+   private List<Change> checkFamilies(int start, int end) {
+      List<Change> changes = new ArrayList<Change>();
+      for (int i = start; i < end; i++) {
+         Family family = families.get(i);
+         checkSpouses(family, family.getHusbandRefs(), changes);
+         checkSpouses(family, family.getWifeRefs(), changes);
+         for (ChildRef ref : family.getChildRefs()) {
+            Person person = gedcom.getPerson(ref.getRef());
+            if (person == null) {
+               changes.add(new Change(Kind.DANGLING, family, ref, false));
+            }
+            else if (!parentFamilies.contains(new Edge(person, family.getId()))) {
+               changes.add(new Change(Kind.PARENT_FAMILY, person, family, false));
+            }
+         }
+      }
+      return changes;
+   }
+
+   private void checkSpouses(Family family, List<SpouseRef> refs, List<Change> changes) {
+      for (SpouseRef ref : refs) {
+         Person person = gedcom.getPerson(ref.getRef());
+         if (person == null) {
+            changes.add(new Change(Kind.DANGLING, family, ref, false));
+         }
+         else if (!spouseFamilies.contains(new Edge(person, family.getId()))) {
+            changes.add(new Change(Kind.SPOUSE_FAMILY, person, family, false));
+         }
+      }
+   }
+
+   private static boolean isFemale(Person person) {
+      for (EventFact eventFact : person.getEventsFacts()) {
+         if (SEX.equals(eventFact.getTag())) {
+            return "F".equals(eventFact.getValue());
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Add the refs in changes, skipping any that an earlier change has added, and report the dangling refs
+    */
+   private void apply(List<Change> changes) {
+      for (Change change : changes) {
+         switch (change.kind) {
+            case DANGLING:
+               if (handler != null) {
+                  handler.danglingReference(change.record, change.target);
+               }
+               break;
+            case SPOUSE: {
+               Family family = (Family) change.record;
+               String id = ((Person) change.target).getId();
+               if (spouses.add(new Edge(family, id))) {
+                  SpouseRef ref = new SpouseRef();
+                  ref.setRef(id);
+                  if (change.female) {
+                     family.addWife(ref);
+                  }
+                  else {
+                     family.addHusband(ref);
+                  }
+               }
+               break;
+            }
+            case CHILD: {
+               Family family = (Family) change.record;
+               String id = ((Person) change.target).getId();
+               if (children.add(new Edge(family, id))) {
+                  ChildRef ref = new ChildRef();
+                  ref.setRef(id);
+                  family.addChild(ref);
+               }
+               break;
+            }
+            case SPOUSE_FAMILY: {
+               Person person = (Person) change.record;
+               String id = ((Family) change.target).getId();
+               if (spouseFamilies.add(new Edge(person, id))) {
+                  SpouseFamilyRef ref = new SpouseFamilyRef();
+                  ref.setRef(id);
+                  person.addSpouseFamilyRef(ref);
+               }
+               break;
+            }
+            case PARENT_FAMILY: {
+               Person person = (Person) change.record;
+               String id = ((Family) change.target).getId();
+               if (parentFamilies.add(new Edge(person, id))) {
+                  ParentFamilyRef ref = new ParentFamilyRef();
+                  ref.setRef(id);
+                  person.addParentFamilyRef(ref);
+               }
+               break;
+            }
+         }
+      }
+   }
+}
@@ -39,6 +39,13 @@ public class RepositoryRef extends NoteContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    public String getValue() {
       return value;
    }
@@ -48,7 +55,8 @@ public class RepositoryRef extends NoteContainer {
    }
 
    public Repository getRepository(Gedcom gedcom) {
-      return gedcom.getRepository(ref);
+      Repository repository = gedcom.resolve(ref, Repository.class);
+      return repository != null ? repository : gedcom.getRepository(ref);
    }
 
    public String getCallNumber() {
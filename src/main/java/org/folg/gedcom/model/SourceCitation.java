@@ -43,8 +43,16 @@ public class SourceCitation extends MediaContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    public Source getSource(Gedcom gedcom) {
-      return gedcom.getSource(ref);
+      Source source = gedcom.resolve(ref, Source.class);
+      return source != null ? source : gedcom.getSource(ref);
    }
 
    /**
@@ -31,13 +31,21 @@ public class SpouseFamilyRef extends ExtensionContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    /**
     * Convenience function to dereference family
     * @param gedcom Gedcom
     * @return referenced family
     */
    public Family getFamily(Gedcom gedcom) {
-      return gedcom.getFamily(ref);
+      Family family = gedcom.resolve(ref, Family.class);
+      return family != null ? family : gedcom.getFamily(ref);
    }
 
    public void accept(Visitor visitor) {
@@ -32,13 +32,21 @@ public class SpouseRef extends ExtensionContainer {
       this.ref = ref;
    }
 
+   /**
+    * Set ref to xrefs's copy of it, so the xref is stored once; xrefs may be null
+    */
+   public void setRef(String ref, XrefTable xrefs) {
+      this.ref = (xrefs != null && ref != null ? xrefs.get(xrefs.intern(ref)) : ref);
+   }
+
    /**
     * Convenience function to dereference person
     * @param gedcom Gedcom
     * @return referenced person
     */
    public Person getPerson(Gedcom gedcom) {
-      return gedcom.getPerson(ref);
+      Person person = gedcom.resolve(ref, Person.class);
+      return person != null ? person : gedcom.getPerson(ref);
    }
 
    public String getPreferred() {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Maps xref ids to records with open addressing: keys and records are kept in two parallel arrays and collisions
+ * are resolved by linear probing, so unlike HashMap there is no node object per entry.
+ * The table is kept at most half full and doubles when it fills.  As in HashMap, a later put replaces an earlier
+ * record with the same id, and the null id is allowed.
+ */
+final class XrefIndex<T> {
+   private static final int MIN_CAPACITY = 16;
+
+   private String[] keys;
+   private Object[] values;
+   private int size = 0;
+   private T nullValue = null;
+
+   XrefIndex(int expectedSize) {
+      int capacity = MIN_CAPACITY;
+      while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+         capacity <<= 1;
+      }
+      keys = new String[capacity];
+      values = new Object[capacity];
+   }
+
+   /**
+    * Index records by the ids that getId returns
+    */
+   static <T> XrefIndex<T> of(List<T> records, Function<T, String> getId) {
+      XrefIndex<T> index = new XrefIndex<T>(records.size());
+      for (T record : records) {
+         index.put(getId.apply(record), record);
+      }
+      return index;
+   }
+
+   int size() {
+      return size + (nullValue != null ? 1 : 0);
+   }
+
+   /**
+    * Make room for expectedSize records without growing again
+    */
+   void ensureCapacity(int expectedSize) {
+      if (expectedSize * 2 > keys.length) {
+         resize(expectedSize);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   T get(String key) {
+      if (key == null) {
+         return nullValue;
+      }
+      int mask = keys.length - 1;
+      for (int i = mix(key.hashCode()) & mask; keys[i] != null; i = (i + 1) & mask) {
+         if (keys[i].equals(key)) {
+            return (T) values[i];
+         }
+      }
+      return null;
+   }
+
+   void put(String key, T value) {
+      if (key == null) {
+         nullValue = value;
+         return;
+      }
+      int mask = keys.length - 1;
+      int i = mix(key.hashCode()) & mask;
+      for (; keys[i] != null; i = (i + 1) & mask) {
+         if (keys[i].equals(key)) {
+            values[i] = value;
+            return;
+         }
+      }
+      keys[i] = key;
+      values[i] = value;
+      if (++size * 2 > keys.length) {
+         resize(size);
+      }
+   }
+
+   /**
+    * Remove key if it maps to value, so removing one of two records with the same id leaves the other indexed
+    */
+   void remove(String key, T value) {
+      if (key == null) {
+         if (nullValue == value) {
+            nullValue = null;
+         }
+         return;
+      }
+      int mask = keys.length - 1;
+      int i = mix(key.hashCode()) & mask;
+      while (keys[i] != null && !keys[i].equals(key)) {
+         i = (i + 1) & mask;
+      }
+      if (keys[i] == null || values[i] != value) {
+         return;
+      }
+      // shift later entries of the probe run back into the gap, so lookups needn't skip over deleted slots
+      int gap = i;
+      for (int j = (gap + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+         int home = mix(keys[j].hashCode()) & mask;
+         if (((j - home) & mask) >= ((j - gap) & mask)) {
+            keys[gap] = keys[j];
+            values[gap] = values[j];
+            gap = j;
+         }
+      }
+      keys[gap] = null;
+      values[gap] = null;
+      size--;
+   }
+
+   private void resize(int expectedSize) {
+      String[] oldKeys = keys;
+      Object[] oldValues = values;
+      int capacity = keys.length;
+      while (capacity < expectedSize * 2 + 2 && capacity < (1 << 30)) {
+         capacity <<= 1;
+      }
+      keys = new String[capacity];
+      values = new Object[capacity];
+      int mask = capacity - 1;
+      for (int j = 0; j < oldKeys.length; j++) {
+         if (oldKeys[j] != null) {
+            int i = mix(oldKeys[j].hashCode()) & mask;
+            while (keys[i] != null) {
+               i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+         }
+      }
+   }
+
+   private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+}
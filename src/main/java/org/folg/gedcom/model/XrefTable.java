@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.model;
+
+import java.util.Arrays;
+
+/**
+ * Numbers the xrefs of a gedcom densely from 0 in the order they are first seen, and keeps one copy of each.
+ * When a Gedcom has an xref table, ModelParser gives records and refs the table's copy of their xrefs, so a file's
+ * xrefs are each stored once however often they are referred to, and a ref is dereferenced by finding its xref's
+ * handle and taking the record with that handle from an array.  Refs don't store the handle.
+ * PersonEventColumns uses xref tables as the dictionaries of its string columns.
+ * Not thread-safe.
+ */
+public final class XrefTable {
+   private String[] xrefs;
+   // handle + 1 of the xref in each slot, or 0 if the slot is empty
+   private int[] slots;
+   private int size = 0;
+
+   public XrefTable() {
+      this(1024);
+   }
+
+   public XrefTable(int expectedSize) {
+      int capacity = 16;
+      while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+         capacity <<= 1;
+      }
+      slots = new int[capacity];
+      xrefs = new String[Math.max(expectedSize, 16)];
+   }
+
+   /**
+    * Return the handle of xref, adding it if it isn't in the table; -1 if xref is null
+    */
+   public int intern(String xref) {
+      if (xref == null) {
+         return -1;
+      }
+      int mask = slots.length - 1;
+      int i = mix(xref.hashCode()) & mask;
+      for (; slots[i] != 0; i = (i + 1) & mask) {
+         if (xrefs[slots[i] - 1].equals(xref)) {
+            return slots[i] - 1;
+         }
+      }
+      if (size == xrefs.length) {
+         xrefs = Arrays.copyOf(xrefs, size * 2);
+      }
+      xrefs[size] = xref;
+      slots[i] = ++size;
+      if (size * 2 > slots.length) {
+         rehash();
+      }
+      return size - 1;
+   }
+
+   /**
+    * Return the handle of xref, or -1 if it isn't in the table
+    */
+   public int find(String xref) {
+      if (xref != null) {
+         int mask = slots.length - 1;
+         for (int i = mix(xref.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (xrefs[slots[i] - 1].equals(xref)) {
+               return slots[i] - 1;
+            }
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Return the table's copy of the xref with handle
+    */
+   public String get(int handle) {
+      if (handle < 0 || handle >= size) {
+         throw new IndexOutOfBoundsException("Handle " + handle + ", size " + size);
+      }
+      return xrefs[handle];
+   }
+
+   /**
+    * Return the number of xrefs in the table; handles run from 0 to size() - 1
+    */
+   public int size() {
+      return size;
+   }
+
+   private void rehash() {
+      slots = new int[slots.length * 2];
+      int mask = slots.length - 1;
+      for (int handle = 0; handle < size; handle++) {
+         int i = mix(xrefs[handle].hashCode()) & mask;
+         while (slots[i] != 0) {
+            i = (i + 1) & mask;
+         }
+         slots[i] = handle + 1;
+      }
+   }
+
+   private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+}
@@ -16,12 +16,62 @@
 
 package org.folg.gedcom.parser;
 
+import java.util.function.Supplier;
+
 /**
  * User: dallan
  * Date: 1/2/12
+ *
+ * Diagnostics below the handler's threshold are never built, so a handler that only wants errors doesn't pay for
+ * the warnings of files full of vendor extension tags.
  */
 public interface ErrorHandler {
+   public static enum Level {
+      WARNING, ERROR, FATAL
+   }
+
+   public static enum Code {
+      // a tag the model doesn't know was kept as an extension
+      EXTENSION_TAG,
+      // a tag the model doesn't know was dropped, because there was nowhere to keep it
+      DROPPED_TAG,
+      // a value was dropped, because the object it belongs to doesn't have a value
+      VALUE_NOT_STORED,
+      // the model is missing a method the parser expects
+      MISSING_METHOD,
+      // a line that doesn't appear to be standard GEDCOM was appended to the value of the previous line
+      NONSTANDARD_LINE,
+      // a line more than one level deeper than the line before it was skipped
+      LEVEL_SKIPPED,
+      // any other problem reported by the GEDCOM parser
+      PARSE_ERROR
+   }
+
    public void warning(String message, int lineNumber);
    public void error(String message, int lineNumber);
    public void fatalError(String message, int lineNumber);
+
+   /**
+    * Return the lowest level of diagnostic to report to this handler
+    */
+   public default Level getThreshold() {
+      return Level.WARNING;
+   }
+
+   /**
+    * Called for each diagnostic at or above the threshold.
+    * The message is built when message.get() is called; by default it is passed to warning, error or fatalError.
+    */
+   public default void diagnostic(Level level, Code code, int lineNumber, Supplier<String> message) {
+      switch (level) {
+         case WARNING:
+            warning(message.get(), lineNumber);
+            break;
+         case ERROR:
+            error(message.get(), lineNumber);
+            break;
+         default:
+            fatalError(message.get(), lineNumber);
+      }
+   }
 }
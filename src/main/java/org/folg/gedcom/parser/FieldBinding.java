@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The get, set and add methods of a String field of a model class, bound once per class.
+ * Each method is turned into a lambda with LambdaMetafactory the first time a class is seen, so FieldRef calls it
+ * directly rather than looking it up and invoking it by reflection for every line.
+ */
+final class FieldBinding {
+   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+   private static final FieldBinding NONE = new FieldBinding();
+
+   private static final ClassValue<Map<String, FieldBinding>> BINDINGS = new ClassValue<Map<String, FieldBinding>>() {
+      @Override
+      protected Map<String, FieldBinding> computeValue(Class<?> type) {
+         return bind(type);
+      }
+   };
+
+   Function<Object, String> getter;
+   BiConsumer<Object, String> setter;
+   BiConsumer<Object, String> adder;
+
+   /**
+    * Return the binding of the named field of type; the binding has no methods if type doesn't have the field
+    */
+   static FieldBinding get(Class<?> type, String name) {
+      FieldBinding binding = BINDINGS.get(type).get(name);
+      return binding != null ? binding : NONE;
+   }
+
+   private static Map<String, FieldBinding> bind(Class<?> type) {
+      Map<String, FieldBinding> bindings = new HashMap<String, FieldBinding>();
+      for (Method method : type.getMethods()) {
+         String methodName = method.getName();
+         if (methodName.length() <= 3 || Modifier.isStatic(method.getModifiers()) || method.isBridge()) {
+            continue;
+         }
+         String prefix = methodName.substring(0, 3);
+         Class<?>[] params = method.getParameterTypes();
+         boolean stringParam = params.length == 1 && params[0] == String.class;
+         if (prefix.equals("get") && params.length == 0 && method.getReturnType() == String.class) {
+            binding(bindings, methodName).getter = getter(method);
+         }
+         else if (prefix.equals("set") && stringParam) {
+            binding(bindings, methodName).setter = consumer(method);
+         }
+         else if (prefix.equals("add") && stringParam) {
+            binding(bindings, methodName).adder = consumer(method);
+         }
+      }
+      return Collections.unmodifiableMap(bindings);
+   }
+
+   private static FieldBinding binding(Map<String, FieldBinding> bindings, String methodName) {
+      String name = methodName.substring(3);
+      FieldBinding binding = bindings.get(name);
+      if (binding == null) {
+         binding = new FieldBinding();
+         bindings.put(name, binding);
+      }
+      return binding;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Function<Object, String> getter(Method method) {
+      MethodHandle handle = unreflect(method);
+      try {
+         CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                 MethodType.methodType(Object.class, Object.class), handle,
+                 MethodType.methodType(String.class, method.getDeclaringClass()));
+         return (Function<Object, String>) site.getTarget().invoke();
+      } catch (Throwable e) {
+         // the class isn't visible from here (a different class loader, say); call through the method handle
+         final MethodHandle generic = handle.asType(MethodType.methodType(String.class, Object.class));
+         return target -> {
+            try {
+               return (String) generic.invokeExact(target);
+            } catch (RuntimeException | Error e1) {
+               throw e1;
+            } catch (Throwable e1) {
+               throw new RuntimeException(e1);
+            }
+         };
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private static BiConsumer<Object, String> consumer(Method method) {
+      MethodHandle handle = unreflect(method);
+      try {
+         CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+                 MethodType.methodType(void.class, Object.class, Object.class), handle,
+                 MethodType.methodType(void.class, method.getDeclaringClass(), String.class));
+         return (BiConsumer<Object, String>) site.getTarget().invoke();
+      } catch (Throwable e) {
+         final MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, String.class));
+         return (target, value) -> {
+            try {
+               generic.invokeExact(target, value);
+            } catch (RuntimeException | Error e1) {
+               throw e1;
+            } catch (Throwable e1) {
+               throw new RuntimeException(e1);
+            }
+         };
+      }
+   }
+
+   private static MethodHandle unreflect(Method method) {
+      try {
+         return LOOKUP.unreflect(method);
+      } catch (IllegalAccessException e) {
+         throw new RuntimeException(e);
+      }
+   }
+}
@@ -16,9 +16,6 @@
 
 package org.folg.gedcom.parser;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 /**
  * User: Dallan
  * Date: 12/26/11
@@ -26,6 +23,7 @@ import java.lang.reflect.Method;
 public class FieldRef {
    private Object target;
    private String name;
+   private FieldBinding binding = null;
 
    public FieldRef(Object target, String name) {
       this.target = target;
@@ -44,48 +42,48 @@ public class FieldRef {
       return name;
    }
 
+   private FieldBinding binding() {
+      if (binding == null) {
+         binding = FieldBinding.get(target.getClass(), name);
+      }
+      return binding;
+   }
+
+   /**
+    * Return true if the field can be read and set, rather than only added to
+    */
+   boolean isReadWrite() {
+      FieldBinding b = binding();
+      return b.getter != null && b.setter != null;
+   }
+
    public void setValue(String value) throws NoSuchMethodException {
-      try {
-         Method method = target.getClass().getMethod("set"+name, String.class);
-         method.invoke(target, value);
-      } catch (InvocationTargetException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
+      FieldBinding b = binding();
+      if (b.setter == null) {
+         throw new NoSuchMethodException(getClassFieldName());
       }
+      b.setter.accept(target, value);
    }
 
    public String getValue() throws NoSuchMethodException {
-      try {
-         Method method = target.getClass().getMethod("get"+name);
-         return (String)method.invoke(target);
-      } catch (InvocationTargetException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-         e.printStackTrace();
-         throw new RuntimeException(e);
+      FieldBinding b = binding();
+      if (b.getter == null) {
+         throw new NoSuchMethodException(getClassFieldName());
       }
+      return b.getter.apply(target);
    }
 
    public void appendValue(String value) throws NoSuchMethodException {
-      try {
-         String currentValue = getValue();
-         setValue((currentValue == null ? "" : currentValue) + value);
-      } catch (NoSuchMethodException e) {
-         // try "add"
-         try {
-            Method method = target.getClass().getMethod("add"+name, String.class);
-            method.invoke(target, value);
-         } catch (InvocationTargetException e1) {
-            e1.printStackTrace();
-            throw new RuntimeException(e);
-         } catch (IllegalAccessException e1) {
-            e1.printStackTrace();
-            throw new RuntimeException(e);
-         }
+      FieldBinding b = binding();
+      if (b.getter != null && b.setter != null) {
+         String currentValue = b.getter.apply(target);
+         b.setter.accept(target, (currentValue == null ? "" : currentValue) + value);
+      }
+      else if (b.adder != null) {
+         b.adder.accept(target, value);
+      }
+      else {
+         throw new NoSuchMethodException(getClassFieldName());
       }
    }
 }
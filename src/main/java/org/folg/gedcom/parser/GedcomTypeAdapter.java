@@ -18,11 +18,15 @@ package org.folg.gedcom.parser;
 
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.folg.gedcom.model.Extensions;
 import org.folg.gedcom.model.Gedcom;
 import org.folg.gedcom.model.GedcomTag;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -31,6 +35,32 @@ import java.util.List;
  */
 public class GedcomTypeAdapter implements JsonSerializer<Gedcom>, JsonDeserializer<Gedcom> {
 
+   // a frozen gedcom's records hold Collections.emptyList() where other records hold null; write it the same way
+   private static final TypeAdapterFactory EMPTY_LISTS = new TypeAdapterFactory() {
+      public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+         if (!List.class.isAssignableFrom(type.getRawType())) {
+            return null;
+         }
+         final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+         return new TypeAdapter<T>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+               if (value == Collections.emptyList()) {
+                  out.nullValue();
+               }
+               else {
+                  delegate.write(out, value);
+               }
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+               return delegate.read(in);
+            }
+         };
+      }
+   };
+
    private Gson gson;
    private ExtensionsTypeAdapter extensionsTypeAdapter;
 
@@ -40,6 +70,7 @@ public class GedcomTypeAdapter implements JsonSerializer<Gedcom>, JsonDeserializ
       extensionsTypeAdapter.registerExtension(ModelParser.MORE_TAGS_EXTENSION_KEY, new TypeToken<List<GedcomTag>>(){}.getType());
       gson = new GsonBuilder()
               .registerTypeAdapter(Extensions.class, extensionsTypeAdapter)
+              .registerTypeAdapterFactory(EMPTY_LISTS)
               .create();
    }
 
@@ -52,7 +83,7 @@ public class GedcomTypeAdapter implements JsonSerializer<Gedcom>, JsonDeserializ
    }
 
    public JsonElement serialize(Gedcom src, Type typeOfSrc, JsonSerializationContext context) {
-      return gson.toJsonTree(src);
+      return gson.toJsonTree(src, Gedcom.class);
    }
 
    public Gedcom deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+import org.gedml.GedcomByteLexer;
+import org.gedml.TagTable;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A read-only Gedcom over a local file that parses each record only when it is asked for.
+ * Opening it makes one pass over the file, without decoding any values, to find where each top-level record starts
+ * and ends; getPerson, getFamily and the other lookups then parse just the record asked for and keep the most
+ * recently used records in a cache of bounded size.  The lists returned by getPeople, getFamilies and so on are
+ * views that load their elements the same way.
+ *
+ * The header and submission are parsed when the file is opened.  Records the model doesn't know are not indexed.
+ * As in a Gedcom, each kind of record has its own ids, and if an id is repeated the lookups return the last record
+ * with it, while the lists hold every record.
+ * Records evicted from the cache are parsed again the next time they are asked for, so changes made to them are lost.
+ */
+public class IndexedGedcom extends Gedcom {
+   public static final int DEFAULT_CACHE_SIZE = 10000;
+
+   private static final String HEAD = TagTable.register("HEAD");
+   private static final String SUBN = TagTable.register("SUBN");
+   private static final String INDI = TagTable.register("INDI");
+   private static final String FAM = TagTable.register("FAM");
+   private static final String OBJE = TagTable.register("OBJE");
+   private static final String NOTE = TagTable.register("NOTE");
+   private static final String SOUR = TagTable.register("SOUR");
+   private static final String REPO = TagTable.register("REPO");
+   private static final String SUBM = TagTable.register("SUBM");
+   private static final Map<String, Function<Gedcom, List<? extends ExtensionContainer>>> RECORDS =
+           new HashMap<String, Function<Gedcom, List<? extends ExtensionContainer>>>();
+   static {
+      RECORDS.put(INDI, Gedcom::getPeople);
+      RECORDS.put(FAM, Gedcom::getFamilies);
+      RECORDS.put(OBJE, Gedcom::getMedia);
+      RECORDS.put(NOTE, Gedcom::getNotes);
+      RECORDS.put(SOUR, Gedcom::getSources);
+      RECORDS.put(REPO, Gedcom::getRepositories);
+      RECORDS.put(SUBM, Gedcom::getSubmitters);
+   }
+
+   /**
+    * Where a record is in the file
+    */
+   private static final class Entry {
+      final String tag;
+      final long offset;
+      final int length;
+      final int lineNumber;
+
+      Entry(String tag, long offset, int length, int lineNumber) {
+         this.tag = tag;
+         this.offset = offset;
+         this.length = length;
+         this.lineNumber = lineNumber;
+      }
+   }
+
+   private final File file;
+   private final String charsetName;
+   // the records of each kind in the order they are in the file, and the last record with each id
+   private final Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+   private final Map<String, Map<String, Entry>> indexes = new HashMap<String, Map<String, Entry>>();
+   private final Map<Entry, ExtensionContainer> cache;
+   private final ModelParser parser = new ModelParser();
+   private ErrorHandler errorHandler = null;
+
+   public IndexedGedcom(File file) throws IOException, SAXParseException {
+      this(file, DEFAULT_CACHE_SIZE, null);
+   }
+
+   /**
+    * Index file, keeping up to cacheSize parsed records
+    *
+    * @param errorHandler receives the errors found when records are parsed; may be null
+    * @throws IOException if the file can't be read, or its character encoding can't be lexed as bytes
+    */
+   public IndexedGedcom(File file, final int cacheSize, ErrorHandler errorHandler) throws IOException, SAXParseException {
+      this.file = file;
+      this.errorHandler = errorHandler;
+      this.cache = new LinkedHashMap<Entry, ExtensionContainer>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Entry, ExtensionContainer> eldest) {
+            return size() > cacheSize;
+         }
+      };
+      for (String tag : RECORDS.keySet()) {
+         entries.put(tag, new ArrayList<Entry>());
+         indexes.put(tag, new HashMap<String, Entry>());
+      }
+
+      GedcomByteLexer lexer = GedcomByteLexer.open(file);
+      if (lexer == null) {
+         throw new IOException("Character encoding of " + file + " can't be indexed");
+      }
+      charsetName = lexer.getCharsetName();
+      Entry head = null;
+      Entry subn = null;
+      try {
+         String tag = null;
+         String id = null;
+         long start = -1;
+         int lineNumber = 0;
+         while (true) {
+            boolean more = lexer.nextLine();
+            if (more && (lexer.isEmpty() || !lexer.isStandard() || lexer.getLevel() != 0)) {
+               continue;
+            }
+            long offset = more ? lexer.getLineOffset() : lexer.getEnd();
+            if (tag != null) {
+               Entry entry = new Entry(tag, start, (int) (offset - start), lineNumber);
+               if (tag == HEAD && head == null) {
+                  head = entry;
+               }
+               else if (tag == SUBN && subn == null) {
+                  subn = entry;
+               }
+               else if (RECORDS.containsKey(tag)) {
+                  entries.get(tag).add(entry);
+                  if (id != null) {
+                     // as in Gedcom, a later record with the same id replaces an earlier one in the index
+                     indexes.get(tag).put(id, entry);
+                  }
+               }
+            }
+            if (!more) {
+               break;
+            }
+            tag = TagTable.toUpperCase(lexer.getTag());
+            id = lexer.getID();
+            start = offset;
+            lineNumber = lexer.getLineNumber();
+         }
+      } finally {
+         lexer.close();
+      }
+
+      if (head != null) {
+         super.setHeader(parse(head).getHeader());
+      }
+      if (subn != null) {
+         super.setSubmission(parse(subn).getSubmission());
+      }
+   }
+
+   /**
+    * Set the handler for errors found when records are parsed
+    */
+   public void setErrorHandler(ErrorHandler errorHandler) {
+      this.errorHandler = errorHandler;
+   }
+
+   /**
+    * Return the number of records that have been parsed and are cached
+    */
+   public synchronized int getCacheSize() {
+      return cache.size();
+   }
+
+   private Gedcom parse(Entry entry) throws IOException, SAXParseException {
+      parser.reset();
+      parser.setErrorHandler(errorHandler);
+      // the lexer closes the channel when the record has been parsed
+      GedcomByteLexer lexer = new GedcomByteLexer(FileChannel.open(file.toPath(), StandardOpenOption.READ),
+                                                  entry.offset, entry.offset + entry.length, charsetName);
+      lexer.setFirstLineNumber(entry.lineNumber);
+      return parser.parseGedcom(lexer);
+   }
+
+   private synchronized ExtensionContainer load(Entry entry) {
+      if (entry == null) {
+         return null;
+      }
+      String tag = entry.tag;
+      ExtensionContainer record = cache.get(entry);
+      if (record == null) {
+         try {
+            List<? extends ExtensionContainer> records = RECORDS.get(tag).apply(parse(entry));
+            record = (records.isEmpty() ? null : records.get(0));
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         } catch (SAXParseException e) {
+            throw new RuntimeException(e);
+         }
+         if (record != null) {
+            cache.put(entry, record);
+         }
+      }
+      return record;
+   }
+
+   private <T extends ExtensionContainer> List<T> records(final String tag, final Class<T> type) {
+      final List<Entry> tagEntries = entries.get(tag);
+      return new AbstractList<T>() {
+         @Override
+         public T get(int i) {
+            return type.cast(load(tagEntries.get(i)));
+         }
+
+         @Override
+         public int size() {
+            return tagEntries.size();
+         }
+      };
+   }
+
+   private <T extends ExtensionContainer> T record(String tag, String id, Class<T> type) {
+      return type.cast(id != null ? load(indexes.get(tag).get(id)) : null);
+   }
+
+   @Override
+   public List<Person> getPeople() {
+      return records(INDI, Person.class);
+   }
+
+   @Override
+   public Person getPerson(String id) {
+      return record(INDI, id, Person.class);
+   }
+
+   @Override
+   public List<Family> getFamilies() {
+      return records(FAM, Family.class);
+   }
+
+   @Override
+   public Family getFamily(String id) {
+      return record(FAM, id, Family.class);
+   }
+
+   @Override
+   public List<Media> getMedia() {
+      return records(OBJE, Media.class);
+   }
+
+   @Override
+   public Media getMedia(String id) {
+      return record(OBJE, id, Media.class);
+   }
+
+   @Override
+   public List<Note> getNotes() {
+      return records(NOTE, Note.class);
+   }
+
+   @Override
+   public Note getNote(String id) {
+      return record(NOTE, id, Note.class);
+   }
+
+   @Override
+   public List<Source> getSources() {
+      return records(SOUR, Source.class);
+   }
+
+   @Override
+   public Source getSource(String id) {
+      return record(SOUR, id, Source.class);
+   }
+
+   @Override
+   public List<Repository> getRepositories() {
+      return records(REPO, Repository.class);
+   }
+
+   @Override
+   public Repository getRepository(String id) {
+      return record(REPO, id, Repository.class);
+   }
+
+   @Override
+   public List<Submitter> getSubmitters() {
+      return records(SUBM, Submitter.class);
+   }
+
+   @Override
+   public Submitter getSubmitter(String id) {
+      return record(SUBM, id, Submitter.class);
+   }
+
+   /**
+    * Does nothing: records are found through the offset index
+    */
+   @Override
+   public void createIndexes() {
+   }
+
+   @Override
+   public void ensureCapacity(int personCount, int familyCount) {
+   }
+
+   @Override
+   public void setHeader(Header head) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setSubmission(Submission subn) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setPeople(List<Person> people) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addPerson(Person person) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removePerson(Person person) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setFamilies(List<Family> families) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addFamily(Family family) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeFamily(Family family) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setMedia(List<Media> media) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addMedia(Media m) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeMedia(Media m) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setNotes(List<Note> notes) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addNote(Note note) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeNote(Note note) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setSources(List<Source> sources) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addSource(Source source) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeSource(Source source) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setRepositories(List<Repository> repositories) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addRepository(Repository repository) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeRepository(Repository repository) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setSubmitters(List<Submitter> submitters) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void addSubmitter(Submitter submitter) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void removeSubmitter(Submitter submitter) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setExtensions(Map<String, Object> exts) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void putExtension(String id, Object extension) {
+      throw new UnsupportedOperationException();
+   }
+
+   /**
+    * Unsupported: the refs it added to cached records would be lost when they were evicted
+    */
+   @Override
+   public void updateReferences() {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void updateReferences(DanglingReferenceHandler handler, int parallelism) {
+      throw new UnsupportedOperationException();
+   }
+
+   /**
+    * Parse every record into an immutable snapshot held in memory.
+    * Each record is copied as it is parsed, so the snapshot doesn't depend on the cache.
+    */
+   @Override
+   public FrozenGedcom freeze() {
+      return super.freeze();
+   }
+}
@@ -77,7 +77,7 @@ public class JsonParser {
      * @return json-encoded string
      */
     public String toJson(Gedcom gedcom) {
-        return gson.toJson(gedcom);
+        return gson.toJson(gedcom, Gedcom.class);
     }
 
     /**
@@ -97,7 +97,7 @@ public class JsonParser {
      * @param writer json output writer
      */
     public void write(Gedcom gedcom, Writer writer) {
-        gson.toJson(gedcom, writer);
+        gson.toJson(gedcom, Gedcom.class, writer);
         close(writer);
     }
 
@@ -109,7 +109,7 @@ public class JsonParser {
      */
     public void write(Gedcom gedcom, OutputStream os) {
         OutputStreamWriter writer = new OutputStreamWriter(os, Charset.forName("UTF-8"));
-        gson.toJson(gedcom, writer);
+        gson.toJson(gedcom, Gedcom.class, writer);
         close(writer);
     }
 
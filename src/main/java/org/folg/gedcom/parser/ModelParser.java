@@ -17,14 +17,24 @@
 package org.folg.gedcom.parser;
 
 import org.folg.gedcom.model.*;
+import org.gedml.FrameStack;
+import org.gedml.GedcomDiagnosticHandler;
+import org.gedml.GedcomHandler;
+import org.gedml.GedcomLexer;
 import org.gedml.GedcomParser;
+import org.gedml.GedcomProjection;
+import org.gedml.LocalTagTable;
+import org.gedml.TagTable;
 import org.xml.sax.*;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,15 +42,34 @@ import org.slf4j.LoggerFactory;
  * User: Dallan
  * Date: 12/25/11
  */
-public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
+public class ModelParser implements ContentHandler, GedcomHandler, GedcomDiagnosticHandler, org.xml.sax.ErrorHandler {
    private static final Logger logger = LoggerFactory.getLogger("org.folg.gedcom.parser");
    public static final String MORE_TAGS_EXTENSION_KEY = "folg.more_tags";
+   // rough sizes used to estimate from the size of a file how many people and families it holds
+   private static final int BYTES_PER_PERSON = 1024;
+   private static final int BYTES_PER_FAMILY = 3072;
    private Locator locator;
 
-   private Stack<String> tagStack;
-   private Stack<Object> objectStack;
+   private FrameStack<String> tagStack = new FrameStack<String>();
+   private FrameStack<Object> objectStack = new FrameStack<Object>();
    private Gedcom gedcom;
    private ErrorHandler errorHandler = null;
+   private int parallelism = 1;
+   // value built up from CONC and CONT lines, written to its field once the lines end
+   private Object pendingTarget = null;
+   private FieldRef pendingFieldRef = null;
+   private StringBuilder pendingValue = new StringBuilder();
+   private boolean pipelined = false;
+   private RecordListener recordListener = null;
+   private GedcomProjection projection = null;
+   private long fileSize = 0;
+   private GedcomParser gedcomParser = null;
+   private boolean compactXrefs = false;
+   // the xref table of the gedcom being parsed when compactXrefs is set
+   private XrefTable xrefs = null;
+   private ValuePool valuePool = null;
+   // upper-case forms of the tags this parser has seen that aren't in TagTable's vocabulary
+   private final LocalTagTable tags = new LocalTagTable();
 
    private String joinTagStack() {
       StringBuilder buf = new StringBuilder();
@@ -61,14 +90,60 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    @Override
    public void startDocument() throws SAXException {
       gedcom = null;
-      tagStack = new Stack<String>();
-      objectStack = new Stack<Object>();
-      
+      tagStack.clear();
+      objectStack.clear();
+      pendingTarget = null;
+      pendingFieldRef = null;
+      pendingValue.setLength(0);
+   }
+
+   /**
+    * Return this parser to the state it was in when it was constructed, dropping the last Gedcom it parsed and
+    * clearing its error handler, record listener and other settings, but keeping the buffers it has allocated.
+    * A parser is not thread-safe; use one per thread at a time, or borrow them from a ParserPool.
+    */
+   public void reset() {
+      gedcom = null;
+      locator = null;
+      tagStack.clear();
+      objectStack.clear();
+      pendingTarget = null;
+      pendingFieldRef = null;
+      pendingValue.setLength(0);
+      errorHandler = null;
+      parallelism = 1;
+      pipelined = false;
+      recordListener = null;
+      projection = null;
+      fileSize = 0;
+      compactXrefs = false;
+      xrefs = null;
+      valuePool = null;
+      tags.clear();
+      if (gedcomParser != null) {
+         gedcomParser.reset();
+      }
    }
 
    @Override
    public void endDocument() throws SAXException {
-      // ignore
+      // the parser doesn't end tags still open at the end of a file without a trailer, so end them here
+      while (objectStack.size() > 1) {
+         endTag(objectStack.size() - 2, tagStack.peek());
+      }
+   }
+
+   @Override
+   public void startGedcom(Locator locator) throws SAXException {
+      setDocumentLocator(locator);
+      startDocument();
+      startTag(-1, "GED", null, null);
+   }
+
+   @Override
+   public void endGedcom() throws SAXException {
+      endTag(-1, "GED");
+      endDocument();
    }
 
    @Override
@@ -110,319 +185,175 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       SLGS
    }
 
-   public void startElement(String uri, String tagName, String qName, Attributes atts) throws SAXException {
-      String tagNameUpper = tagName.toUpperCase();
-      String id = atts.getValue("ID");
-      String ref = atts.getValue("REF");
-      Object tos = objectStack.size() > 0 ? objectStack.peek() : null;
-      Object obj = null;
-      
-      try { 
-         Tag tag = Tag.valueOf(tagNameUpper);
-         switch (tag) {
-            case ABBR:
-               obj = handleAbbr(tos);
-               break;
-            case ADDR:
-               obj = handleAddr(tos);
-               break;
-            case ADR1:
-               obj = handleAdr1(tos);
-               break;
-            case ADR2:
-               obj = handleAdr2(tos);
-               break;
-            case ADR3:
-               obj = handleAdr3(tos);
-               break;
-            case AGE:
-               obj = handleAge(tos);
-               break;
-           case _AKA:
-               obj = handleAka(tos, tagName);
-               break;
-            case ALIA:
-               obj = handleAlia(tos, ref);
-               break;
-            case ANCI:
-               obj = handleAnci(tos, ref);
-               break;
-            case ASSO:
-               obj = handleAsso(tos, ref);
-               break;
-            case AUTH:
-               obj = handleAuth(tos);
-               break;
-            case BLOB:
-               obj = handleBlob(tos);
-               break;
-            case CALN:
-               obj = handleCaln(tos);
-               break;
-            case CAUS:
-                obj = handleCaus(tos);
-                break;
-            case CHAN:
-               obj = handleChan(tos);
-               break;
-            case CHAR:
-               obj = handleChar(tos);
-               break;
-            case CHIL:
-               obj = handleChil(tos, ref);
-               break;
-            case CITY:
-               obj = handleCity(tos);
-               break;
-            case CONC:
-               obj = handleCont(tos, false);
-               break;
-            case CONT:
-               obj = handleCont(tos, true);
-               break;
-            case COPR:
-               obj = handleCopr(tos);
-               break;
-            case CORP:
-               obj = handleCorp(tos);
-               break;
-            case CTRY:
-               obj = handleCtry(tos);
-               break;
-            case DATA:
-               obj = handleData(tos);
-               break;
-            case DATE:
-               obj = handleDate(tos);
-               break;
-            case DESC:
-               obj = handleDesc(tos);
-               break;
-            case DESI:
-               obj = handleDesi(tos, ref);
-               break;
-            case DEST:
-               obj = handleDest(tos);
-               break;
-            case EMAIL:
-            case _EMAIL:
-            case _EML:
-               obj = handleEmail(tos, tagName);
-               break;
-            case FAM:
-               obj = handleFam(tos, id);
-               break;
-            case FAMC:
-               obj = handleFamc(tos, ref);
-               break;
-            case FAMS:
-               obj = handleFams(tos, ref);
-               break;
-            case FAX:
-               obj = handleFax(tos);
-               break;
-            case _FILE:
-            case FILE:
-               obj = handleFile(tos, tagName);
-               break;
-           case FONE:
-             obj = handleFone(tos, tagName);
-             break;
-           case FORM:
-               obj = handleForm(tos);
-               break;
-            case _FREL:
-               obj = handleFRel(tos);
-               break;
-            case GED:
-               obj = handleGed();
-               break;
-            case GEDC:
-               obj = handleGedc(tos);
-               break;
-            case GIVN:
-               obj = handleGivn(tos);
-               break;
-            case HEAD:
-               obj = handleHead(tos);
-               break;
-            case HUSB:
-               obj = handleHusb(tos, ref);
-               break;
-            case INDI:
-               obj = handleIndi(tos, id);
-               break;
-            case _ITALIC:
-               obj = handleItalic(tos);
-               break;
-            case LANG:
-               obj = handleLang(tos);
-               break;
-            case _MARRNM:
-            case _MARNM:
-            case _MAR:
-               obj = handleMarrnm(tos, tagName);
-               break;
-            case MEDI:
-               obj = handleMedi(tos);
-               break;
-            case _MREL:
-               obj = handleMRel(tos);
-               break;
-            case NAME:
-            case _NAME:
-               obj = handleName(tos);
-               break;
-            case NICK:
-               obj = handleNick(tos);
-               break;
-            case NPFX:
-               obj = handleNpfx(tos);
-               break;
-            case NSFX:
-               obj = handleNsfx(tos);
-               break;
-            case NOTE:
-               obj = handleNote(tos, id, ref);
-               break;
-            case OBJE:
-               obj = handleObje(tos, id, ref);
-               break;
-            case ORDI:
-               obj = handleOrdi(tos);
-               break;
-            case PAGE:
-               obj = handlePage(tos);
-               break;
-            case _PAREN:
-               obj = handleParen(tos);
-               break;
-            case PEDI:
-               obj = handlePedi(tos);
-               break;
-            case PHON:
-               obj = handlePhon(tos);
-               break;
-            case PLAC:
-               obj = handlePlac(tos);
-               break;
-            case POST:
-               obj = handlePost(tos);
-               break;
-            case _PREF:
-               obj = handlePref(tos);
-               break;
-            case _PRIM:
-            case _PRIMARY:
-               obj = handlePrim(tos);
-               break;
-            case PUBL:
-               obj = handlePubl(tos);
-               break;
-            case QUAY:
-               obj = handleQuay(tos);
-               break;
-            case REFN:
-               obj = handleRefn(tos);
-               break;
-            case RELA:
-               obj = handleRela(tos);
-               break;
-            case REPO:
-               obj = handleRepo(tos, id, ref);
-               break;
-            case RFN:
-               obj = handleRfn(tos);
-               break;
-            case RIN:
-               obj = handleRin(tos);
-               break;
-           case ROMN:
-             obj = handleRomn(tos, tagName);
-             break;
-           case _SCBK:
-               obj = handleScbk(tos);
-               break;
-            case SOUR:
-               obj = handleSour(tos, id, ref);
-               break;
-            case SPFX:
-               obj = handleSpfx(tos);
-               break;
-            case _SSHOW:
-               obj = handleSshow(tos);
-               break;
-            case STAE:
-               obj = handleStae(tos);
-               break;
-            case STAT:
-               obj = handleStat(tos);
-               break;
-            case SUBM:
-               obj = handleSubm(tos, id, ref);
-               break;
-            case SUBN:
-               obj = handleSubn(tos, id, ref);
-               break;
-            case SURN:
-               obj = handleSurn(tos);
-               break;
-            case TEMP:
-               obj = handleTemp(tos);
-               break;
-            case TEXT:
-               obj = handleText(tos);
-               break;
-            case TIME:
-               obj = handleTime(tos);
-               break;
-            case TITL:
-               obj = handleTitl(tos);
-               break;
-            case TRLR:
-               obj = handleTrlr(tos);
-               break;
-            case TYPE:
-            case _TYPE:
-               obj = handleType(tos, tagName);
-               break;
-            case VERS:
-               obj = handleVers(tos);
-               break;
-            case _UID:
-            case UID:
-               obj = handleUid(tos, tagName);
-               break;
-            case WIFE:
-               obj = handleWife(tos, ref);
-               break;
-            case WWW:
-            case _WWW:
-            case _WEB:
-            case _URL:
-               obj = handleWww(tos, tagName);
-               break;
-            // lds ordinance tags
-            case BAPL:
-            case CONL:
-            case WAC:
-            case ENDL:
-            case SLGC:
-               obj = handleLdsOrdinance(tos, true, tagNameUpper);
-               break;
-            case SLGS:
-               obj = handleLdsOrdinance(tos, false, tagNameUpper);
-               break;
-            
-            default:
-               throw new SAXParseException("handler not found for tag: "+tag.name(), locator);
-         }
-      } catch (IllegalArgumentException e) {
-         // handle events/facts below
-      }
-      if (obj == null) {
-         obj = handleEventFact(tos, tagName, tagNameUpper);
+   /**
+    * Creates the object for a tag under the object on top of the stack, or returns null if the tag doesn't belong there
+    */
+   private interface TagHandler {
+      Object handle(ModelParser parser, Object tos, String tagName, String tagNameUpper, String id, String ref)
+              throws SAXException;
+   }
+
+   private static final Map<String, TagHandler> TAG_HANDLERS = new HashMap<String, TagHandler>();
+   private static final TagHandler EVENT_FACT_HANDLER =
+           (p, tos, tagName, tagNameUpper, id, ref) -> p.handleEventFact(tos, tagName, tagNameUpper);
+   private static final TagHandler NO_HANDLER = (p, tos, tagName, tagNameUpper, id, ref) -> null;
+
+   // handler for each (type of the object on top of the stack, upper-case tag) pair, built the first time it is seen
+   private static final ClassValue<Map<String, TagHandler>> TRANSITIONS = new ClassValue<Map<String, TagHandler>>() {
+      @Override
+      protected Map<String, TagHandler> computeValue(Class<?> type) {
+         return new ConcurrentHashMap<String, TagHandler>();
+      }
+   };
+
+   private static void on(TagHandler handler, Tag... tags) {
+      for (Tag tag : tags) {
+         TAG_HANDLERS.put(TagTable.register(tag.name()), handler);
+      }
+   }
+
+   static {
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAbbr(tos), Tag.ABBR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAddr(tos), Tag.ADDR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAdr1(tos), Tag.ADR1);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAdr2(tos), Tag.ADR2);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAdr3(tos), Tag.ADR3);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAge(tos), Tag.AGE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAka(tos, tagName), Tag._AKA);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAlia(tos, ref), Tag.ALIA);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAnci(tos, ref), Tag.ANCI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAsso(tos, ref), Tag.ASSO);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleAuth(tos), Tag.AUTH);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleBlob(tos), Tag.BLOB);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCaln(tos), Tag.CALN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCaus(tos), Tag.CAUS);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleChan(tos), Tag.CHAN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleChar(tos), Tag.CHAR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleChil(tos, ref), Tag.CHIL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCity(tos), Tag.CITY);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCont(tos, false), Tag.CONC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCont(tos, true), Tag.CONT);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCopr(tos), Tag.COPR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCorp(tos), Tag.CORP);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleCtry(tos), Tag.CTRY);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleData(tos), Tag.DATA);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleDate(tos), Tag.DATE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleDesc(tos), Tag.DESC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleDesi(tos, ref), Tag.DESI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleDest(tos), Tag.DEST);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleEmail(tos, tagName), Tag.EMAIL, Tag._EMAIL, Tag._EML);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFam(tos, id), Tag.FAM);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFamc(tos, ref), Tag.FAMC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFams(tos, ref), Tag.FAMS);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFax(tos), Tag.FAX);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFile(tos, tagName), Tag._FILE, Tag.FILE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFone(tos, tagName), Tag.FONE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleForm(tos), Tag.FORM);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleFRel(tos), Tag._FREL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleGed(), Tag.GED);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleGedc(tos), Tag.GEDC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleGivn(tos), Tag.GIVN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleHead(tos), Tag.HEAD);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleHusb(tos, ref), Tag.HUSB);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleIndi(tos, id), Tag.INDI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleItalic(tos), Tag._ITALIC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleLang(tos), Tag.LANG);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleMarrnm(tos, tagName), Tag._MARRNM, Tag._MARNM, Tag._MAR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleMedi(tos), Tag.MEDI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleMRel(tos), Tag._MREL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleName(tos), Tag.NAME, Tag._NAME);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleNick(tos), Tag.NICK);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleNpfx(tos), Tag.NPFX);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleNsfx(tos), Tag.NSFX);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleNote(tos, id, ref), Tag.NOTE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleObje(tos, id, ref), Tag.OBJE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleOrdi(tos), Tag.ORDI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePage(tos), Tag.PAGE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleParen(tos), Tag._PAREN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePedi(tos), Tag.PEDI);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePhon(tos), Tag.PHON);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePlac(tos), Tag.PLAC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePost(tos), Tag.POST);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePref(tos), Tag._PREF);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePrim(tos), Tag._PRIM, Tag._PRIMARY);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handlePubl(tos), Tag.PUBL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleQuay(tos), Tag.QUAY);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRefn(tos), Tag.REFN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRela(tos), Tag.RELA);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRepo(tos, id, ref), Tag.REPO);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRfn(tos), Tag.RFN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRin(tos), Tag.RIN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleRomn(tos, tagName), Tag.ROMN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleScbk(tos), Tag._SCBK);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSour(tos, id, ref), Tag.SOUR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSpfx(tos), Tag.SPFX);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSshow(tos), Tag._SSHOW);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleStae(tos), Tag.STAE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleStat(tos), Tag.STAT);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSubm(tos, id, ref), Tag.SUBM);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSubn(tos, id, ref), Tag.SUBN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleSurn(tos), Tag.SURN);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleTemp(tos), Tag.TEMP);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleText(tos), Tag.TEXT);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleTime(tos), Tag.TIME);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleTitl(tos), Tag.TITL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleTrlr(tos), Tag.TRLR);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleType(tos, tagName), Tag.TYPE, Tag._TYPE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleVers(tos), Tag.VERS);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleUid(tos, tagName), Tag._UID, Tag.UID);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleWife(tos, ref), Tag.WIFE);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleWww(tos, tagName), Tag.WWW, Tag._WWW, Tag._WEB, Tag._URL);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleLdsOrdinance(tos, true, tagNameUpper), Tag.BAPL, Tag.CONL, Tag.WAC, Tag.ENDL, Tag.SLGC);
+      on((p, tos, tagName, tagNameUpper, id, ref) -> p.handleLdsOrdinance(tos, false, tagNameUpper), Tag.SLGS);
+   }
+
+   private static final String CONC = TagTable.register(Tag.CONC.name());
+   private static final String CONT = TagTable.register(Tag.CONT.name());
+
+   private static TagHandler transition(Class<?> type, String tagNameUpper) {
+      Map<String, TagHandler> transitions = TRANSITIONS.get(type);
+      TagHandler handler = transitions.get(tagNameUpper);
+      if (handler == null) {
+         handler = buildTransition(type, tagNameUpper);
+         // only remember tags in the vocabulary, so custom tags don't grow the cache
+         if (TagTable.code(tagNameUpper) != TagTable.NO_CODE) {
+            transitions.put(tagNameUpper, handler);
+         }
+      }
+      return handler;
+   }
+
+   private static TagHandler buildTransition(Class<?> type, String tagNameUpper) {
+      final TagHandler handler = TAG_HANDLERS.get(tagNameUpper);
+      boolean eventFact = (Person.class.isAssignableFrom(type) && EventFact.PERSONAL_EVENT_FACT_TAGS.contains(tagNameUpper)) ||
+                          (Family.class.isAssignableFrom(type) && EventFact.FAMILY_EVENT_FACT_TAGS.contains(tagNameUpper));
+      if (handler == null) {
+         return eventFact ? EVENT_FACT_HANDLER : NO_HANDLER;
+      }
+      else if (!eventFact) {
+         return handler;
+      }
+      // tags like TITL and CAUS are fields in some places and events or facts in others
+      return (p, tos, tagName, tagNameUpper2, id, ref) -> {
+         Object obj = handler.handle(p, tos, tagName, tagNameUpper2, id, ref);
+         return obj != null ? obj : p.handleEventFact(tos, tagName, tagNameUpper2);
+      };
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      startTag(tagStack.size() - 1, localName, atts.getValue("ID"), atts.getValue("REF"));
+   }
+
+   @Override
+   public void startTag(int level, String tagName, String id, String ref) throws SAXException {
+      String tagNameUpper = tags.toUpperCase(tagName);
+      if (pendingTarget != null && !tagNameUpper.equals(CONC) && !tagNameUpper.equals(CONT)) {
+         flushValue();
       }
+      Object tos = objectStack.peek();
+      Object obj = transition(tos == null ? Void.class : tos.getClass(), tagNameUpper)
+              .handle(this, tos, tagName, tagNameUpper, id, ref);
 
       if (obj == null) {
          // unexpected tag
@@ -439,7 +370,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
             addGedcomTag(ec, (GedcomTag)obj);
          }
          else {
-            error(new SAXParseException("Dropped tag: "+joinTagStack()+" "+tagName, locator));
+            report(ErrorHandler.Level.ERROR, ErrorHandler.Code.DROPPED_TAG, () -> "Dropped tag: "+joinTagStack()+" "+tagName);
          }
       }
 
@@ -455,7 +386,10 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
          ec.putExtension(MORE_TAGS_EXTENSION_KEY, moreTags);
       }
       moreTags.add(tag);
-      warning(new SAXParseException("Tag added as extension: "+joinTagStack()+" "+tag.getTag(), locator));
+      // files can have an extension tag on every other line, so don't even create the message supplier unless needed
+      if (isReported(ErrorHandler.Level.WARNING)) {
+         report(ErrorHandler.Level.WARNING, ErrorHandler.Code.EXTENSION_TAG, () -> "Tag added as extension: "+joinTagStack()+" "+tag.getTag());
+      }
    }
 
    private Object handleAbbr(Object tos) {
@@ -633,7 +567,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleChil(Object tos, String ref) {
       if (tos instanceof Family) {
          ChildRef childRef = new ChildRef();
-         childRef.setRef(ref);
+         childRef.setRef(ref, xrefs);
          ((Family)tos).addChild(childRef);
          return childRef;
       }
@@ -658,10 +592,9 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
       if (insertNewLine) {
          try {
-            fieldRef.appendValue("\n");
+            appendValue(fieldRef, "\n");
          } catch (NoSuchMethodException e) {
-            SAXParseException exception = new SAXParseException("value not stored for: "+joinTagStack(), locator);
-            error(exception);
+            report(ErrorHandler.Level.ERROR, ErrorHandler.Code.VALUE_NOT_STORED, () -> "value not stored for: "+joinTagStack());
          }
       }
       return fieldRef;
@@ -814,7 +747,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleFam(Object tos, String id) {
       if (tos instanceof Gedcom) {
          Family family = new Family();
-         family.setId(id);
+         family.setId(xref(id));
          ((Gedcom)tos).addFamily(family);
          return family;
       }
@@ -824,7 +757,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleFamc(Object tos, String ref) {
       if (tos instanceof Person) {
          ParentFamilyRef parentFamilyRef = new ParentFamilyRef();
-         parentFamilyRef.setRef(ref);
+         parentFamilyRef.setRef(ref, xrefs);
          ((Person)tos).addParentFamilyRef(parentFamilyRef);
          return parentFamilyRef;
       }
@@ -834,7 +767,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleFams(Object tos, String ref) {
       if (tos instanceof Person) {
          SpouseFamilyRef spouseFamilyRef = new SpouseFamilyRef();
-         spouseFamilyRef.setRef(ref);
+         spouseFamilyRef.setRef(ref, xrefs);
          ((Person)tos).addSpouseFamilyRef(spouseFamilyRef);
          return spouseFamilyRef;
       }
@@ -892,6 +825,15 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    
    private Object handleGed() {
       gedcom = new Gedcom();
+      xrefs = null;
+      if (compactXrefs) {
+         xrefs = new XrefTable(fileSize > 0 ? (int) Math.min(fileSize / BYTES_PER_PERSON * 2, Integer.MAX_VALUE / 4) : 1024);
+         gedcom.setXrefTable(xrefs);
+      }
+      if (fileSize > 0 && recordListener == null && projection == null) {
+         gedcom.ensureCapacity((int) Math.min(fileSize / BYTES_PER_PERSON, Integer.MAX_VALUE / 4),
+                               (int) Math.min(fileSize / BYTES_PER_FAMILY, Integer.MAX_VALUE / 4));
+      }
       return gedcom;
    }
 
@@ -923,7 +865,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleHusb(Object tos, String ref) {
       if (tos instanceof Family) {
          SpouseRef spouseRef = new SpouseRef();
-         spouseRef.setRef(ref);
+         spouseRef.setRef(ref, xrefs);
          ((Family)tos).addHusband(spouseRef);
          return spouseRef;
       }
@@ -938,7 +880,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleIndi(Object tos, String id) {
       if (tos instanceof Gedcom) {
          Person person = new Person();
-         person.setId(id);
+         person.setId(xref(id));
          ((Gedcom)tos).addPerson(person);
          return person;
       }
@@ -1047,7 +989,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
          }
          else {
             NoteRef noteRef = new NoteRef();
-            noteRef.setRef(ref);
+            noteRef.setRef(ref, xrefs);
             ((NoteContainer)tos).addNoteRef(noteRef);
             return noteRef;
          }
@@ -1055,7 +997,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       else if (tos instanceof Gedcom) {
          Note note = new Note();
          if (id != null) {
-            note.setId(id);
+            note.setId(xref(id));
          }
          if (ref != null) {
             // ref is invalid here, so store it as value - another geni-ism
@@ -1076,7 +1018,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
          }
          else {
             MediaRef mediaRef = new MediaRef();
-            mediaRef.setRef(ref);
+            mediaRef.setRef(ref, xrefs);
             ((MediaContainer)tos).addMediaRef(mediaRef);
             return mediaRef;
          }
@@ -1084,7 +1026,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       else if (tos instanceof Gedcom) {
          Media media = new Media();
          if (id != null) {
-            media.setId(id);
+            media.setId(xref(id));
          }
          ((Gedcom)tos).addMedia(media);
          return media;
@@ -1195,7 +1137,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       if (tos instanceof Source && ((Source)tos).getRepositoryRef() == null) {
          RepositoryRef repositoryRef = new RepositoryRef();
          if (ref != null) {
-            repositoryRef.setRef(ref);
+            repositoryRef.setRef(ref, xrefs);
          }
          ((Source)tos).setRepositoryRef(repositoryRef);
          return repositoryRef;
@@ -1203,7 +1145,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       else if (tos instanceof Gedcom) {
          Repository repository = new Repository();
          if (id != null) {
-            repository.setId(id);
+            repository.setId(xref(id));
          }
          ((Gedcom)tos).addRepository(repository);
          return repository;
@@ -1259,7 +1201,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
                 ((FieldRef)tos).getFieldName().equals("Value"))) {
          SourceCitation sourceCitation = new SourceCitation();
          if (ref != null) {
-            sourceCitation.setRef(ref);
+            sourceCitation.setRef(ref, xrefs);
          }
          if (tos instanceof SourceCitationContainer) {
             ((SourceCitationContainer)tos).addSourceCitation(sourceCitation);
@@ -1281,7 +1223,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       else if (tos instanceof Gedcom) {
          Source source = new Source();
          if (id != null) {
-            source.setId(id);
+            source.setId(xref(id));
          }
          ((Gedcom)tos).addSource(source);
          return source;
@@ -1325,7 +1267,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       else if (tos instanceof Gedcom) {
          Submitter submitter = new Submitter();
          if (id != null) {
-            submitter.setId(id);
+            submitter.setId(xref(id));
          }
          ((Gedcom)tos).addSubmitter(submitter);
          return submitter;
@@ -1458,7 +1400,7 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
    private Object handleWife(Object tos, String ref) {
       if (tos instanceof Family) {
          SpouseRef spouseRef = new SpouseRef();
-         spouseRef.setRef(ref);
+         spouseRef.setRef(ref, xrefs);
          ((Family)tos).addWife(spouseRef);
          return spouseRef;
       }
@@ -1498,38 +1440,203 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void endElement(String uri, String localName, String qName) throws SAXException {
-      objectStack.pop();
-      tagStack.pop();
+      endTag(tagStack.size() - 2, localName);
+   }
+
+   @Override
+   public void endTag(int level, String tag) throws SAXException {
+      Object obj = objectStack.pop();
+      String tagName = tagStack.pop();
+      if (pendingTarget != null) {
+         String tagNameUpper = tags.toUpperCase(tagName);
+         if (!tagNameUpper.equals(CONC) && !tagNameUpper.equals(CONT)) {
+            flushValue();
+         }
+      }
+      if (recordListener != null && objectStack.size() == 1 && obj != null) {
+         releaseRecord(obj);
+      }
+   }
+
+   /**
+    * Pass a top-level record that has just ended to the record listener, and remove it from the gedcom
+    */
+   private void releaseRecord(Object record) {
+      if (record instanceof Person) {
+         gedcom.removePerson((Person)record);
+         recordListener.person((Person)record);
+      }
+      else if (record instanceof Family) {
+         gedcom.removeFamily((Family)record);
+         recordListener.family((Family)record);
+      }
+      else if (record instanceof Source) {
+         gedcom.removeSource((Source)record);
+         recordListener.source((Source)record);
+      }
+      else if (record instanceof Note) {
+         gedcom.removeNote((Note)record);
+         recordListener.note((Note)record);
+      }
+      else if (record instanceof Media) {
+         gedcom.removeMedia((Media)record);
+         recordListener.media((Media)record);
+      }
+      else if (record instanceof Repository) {
+         gedcom.removeRepository((Repository)record);
+         recordListener.repository((Repository)record);
+      }
+      else if (record instanceof Submitter) {
+         gedcom.removeSubmitter((Submitter)record);
+         recordListener.submitter((Submitter)record);
+      }
+      else if (record instanceof Header) {
+         recordListener.header((Header)record);
+      }
+      else if (record instanceof Submission) {
+         recordListener.submission((Submission)record);
+      }
+      else if (record instanceof GedcomTag) {
+         @SuppressWarnings("unchecked")
+         List<GedcomTag> moreTags = (List<GedcomTag>)gedcom.getExtension(MORE_TAGS_EXTENSION_KEY);
+         if (moreTags != null) {
+            removeLast(moreTags, record);
+            if (moreTags.isEmpty()) {
+               gedcom.getExtensions().remove(MORE_TAGS_EXTENSION_KEY);
+            }
+         }
+         recordListener.extension((GedcomTag)record);
+      }
+   }
+
+   /**
+    * Return the xref table's copy of id when xrefs are compact
+    */
+   private String xref(String id) {
+      int handle = (xrefs != null ? xrefs.intern(id) : -1);
+      return handle >= 0 ? xrefs.get(handle) : id;
+   }
+
+   private static void removeLast(List<?> list, Object record) {
+      int last = list.size() - 1;
+      if (last >= 0 && list.get(last) == record) {
+         list.remove(last);
+      }
+   }
+
+   /**
+    * Append to the value of a field.  Consecutive appends to the same field are collected in pendingValue and
+    * written to the field by flushValue, so a long run of CONC and CONT lines costs linear rather than quadratic time.
+    */
+   private void appendValue(FieldRef fieldRef, CharSequence value) throws NoSuchMethodException {
+      if (pendingFieldRef != null && pendingTarget == fieldRef.getTarget() &&
+          pendingFieldRef.getFieldName().equals(fieldRef.getFieldName())) {
+         appendPending(value);
+         return;
+      }
+      flushValue();
+      if (!fieldRef.isReadWrite()) {
+         // fields like ReferenceNumber add a value per line rather than appending to one
+         fieldRef.appendValue(toString(fieldRef.getFieldName(), value));
+         return;
+      }
+      String currentValue = fieldRef.getValue();
+      if (currentValue != null) {
+         pendingValue.append(currentValue);
+      }
+      appendPending(value);
+      pendingTarget = fieldRef.getTarget();
+      pendingFieldRef = fieldRef;
+   }
+
+   private void appendValue(GedcomTag tag, CharSequence value) {
+      if (pendingTarget == tag && pendingFieldRef == null) {
+         appendPending(value);
+         return;
+      }
+      flushValue();
+      if (tag.getValue() != null) {
+         pendingValue.append(tag.getValue());
+      }
+      appendPending(value);
+      pendingTarget = tag;
+   }
+
+   private void appendPending(CharSequence value) {
+      if (value instanceof CharBuffer && ((CharBuffer)value).hasArray()) {
+         CharBuffer chars = (CharBuffer)value;
+         pendingValue.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+      }
+      else {
+         pendingValue.append(value);
+      }
+   }
+
+   /**
+    * Return value as a String, the pooled instance if there is a value pool
+    */
+   private String toString(String fieldName, CharSequence value) {
+      return valuePool != null ? valuePool.intern(fieldName, value) : value.toString();
+   }
+
+   private void flushValue() {
+      if (pendingTarget == null) {
+         return;
+      }
+      String value = toString(pendingFieldRef != null ? pendingFieldRef.getFieldName() : "Value", pendingValue);
+      if (pendingFieldRef != null) {
+         try {
+            pendingFieldRef.setValue(value);
+         } catch (NoSuchMethodException e) {
+            // can't happen: appendValue only collects values for fields that can be set
+            throw new RuntimeException(e);
+         }
+      }
+      else {
+         ((GedcomTag)pendingTarget).setValue(value);
+      }
+      pendingTarget = null;
+      pendingFieldRef = null;
+      if (pendingValue.capacity() > 65536) {
+         pendingValue = new StringBuilder();
+      }
+      else {
+         pendingValue.setLength(0);
+      }
    }
 
    @Override
    public void characters(char[] ch, int start, int length) throws SAXException {
-      String value = new String(ch, start, length);
-      Object tos = objectStack.size() > 0 ? objectStack.peek() : null;
+      value(CharBuffer.wrap(ch, start, length));
+   }
+
+   @Override
+   public void value(CharBuffer chars) throws SAXException {
+      Object tos = objectStack.peek();
       FieldRef fieldRef = null;
       try {
          if (tos instanceof GedcomTag) {
-            ((GedcomTag)tos).appendValue(value);
+            appendValue((GedcomTag)tos, chars);
          }
          else if (tos instanceof FieldRef) {
             fieldRef = (FieldRef)tos;
-            fieldRef.appendValue(value);
+            appendValue(fieldRef, chars);
          }
          else {
+            flushValue();
             fieldRef = new FieldRef(tos, "Value");
-            fieldRef.setValue(value);
+            fieldRef.setValue(toString("Value", chars));
          }
       }
       catch (NoSuchMethodException e) {
          if (fieldRef.getFieldName().equals("Value")) {
             // this object doesn't have a value field, so we're going to drop these characters on the floor
-            SAXParseException exception = new SAXParseException("value not stored for: "+joinTagStack(), locator);
-            error(exception);
+            report(ErrorHandler.Level.ERROR, ErrorHandler.Code.VALUE_NOT_STORED, () -> "value not stored for: "+joinTagStack());
          }
          else {
             // if we don't find the method, it's programmer error
             SAXParseException exception = new SAXParseException("get method not found for: "+fieldRef.getClassFieldName(), locator);
-            fatalError(exception);
+            report(ErrorHandler.Level.FATAL, ErrorHandler.Code.MISSING_METHOD, exception.getLineNumber(), exception::getMessage);
             throw exception;
          }
       }
@@ -1552,31 +1659,64 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void warning(SAXParseException exception) throws SAXException {
-      if (errorHandler != null) {
-         errorHandler.warning(exception.getMessage(), exception.getLineNumber());
-      }
-      else {
-         logger.trace(exception.getMessage() + " @ " + exception.getLineNumber());
-      }
+      report(ErrorHandler.Level.WARNING, ErrorHandler.Code.PARSE_ERROR, exception.getLineNumber(), exception::getMessage);
    }
 
    @Override
    public void error(SAXParseException exception) throws SAXException {
+      report(ErrorHandler.Level.ERROR, ErrorHandler.Code.PARSE_ERROR, exception.getLineNumber(), exception::getMessage);
+   }
+
+   @Override
+   public void fatalError(SAXParseException exception) throws SAXException {
+      report(ErrorHandler.Level.FATAL, ErrorHandler.Code.PARSE_ERROR, exception.getLineNumber(), exception::getMessage);
+   }
+
+   @Override
+   public void diagnostic(GedcomDiagnosticHandler.Code code, int lineNumber, Supplier<String> message) {
+      report(ErrorHandler.Level.ERROR, code == GedcomDiagnosticHandler.Code.NONSTANDARD_LINE ?
+              ErrorHandler.Code.NONSTANDARD_LINE : ErrorHandler.Code.LEVEL_SKIPPED, lineNumber, message);
+   }
+
+   /**
+    * Return true if diagnostics at this level are reported, to the error handler or else to the log
+    */
+   boolean isReported(ErrorHandler.Level level) {
       if (errorHandler != null) {
-         errorHandler.error(exception.getMessage(), exception.getLineNumber());
+         return level.compareTo(errorHandler.getThreshold()) >= 0;
       }
-      else {
-         logger.warn(exception.getMessage() + " @ " + exception.getLineNumber());
+      switch (level) {
+         case WARNING:
+            return logger.isTraceEnabled();
+         case ERROR:
+            return logger.isWarnEnabled();
+         default:
+            return logger.isErrorEnabled();
       }
    }
 
-   @Override
-   public void fatalError(SAXParseException exception) throws SAXException {
+   private void report(ErrorHandler.Level level, ErrorHandler.Code code, Supplier<String> message) {
+      report(level, code, locator != null ? locator.getLineNumber() : -1, message);
+   }
+
+   /**
+    * Report a diagnostic; the message is only built if it is reported
+    */
+   void report(ErrorHandler.Level level, ErrorHandler.Code code, int lineNumber, Supplier<String> message) {
+      if (!isReported(level)) {
+         return;
+      }
       if (errorHandler != null) {
-         errorHandler.fatalError(exception.getMessage(), exception.getLineNumber());
+         errorHandler.diagnostic(level, code, lineNumber, message);
+      }
+      else if (level == ErrorHandler.Level.WARNING) {
+         logger.trace(message.get() + " @ " + lineNumber);
+      }
+      else if (level == ErrorHandler.Level.ERROR) {
+         logger.warn(message.get() + " @ " + lineNumber);
       }
       else {
-         logger.error(exception.getMessage() + " @ " + exception.getLineNumber());
+         logger.error(message.get() + " @ " + lineNumber);
       }
    }
 
@@ -1584,9 +1724,83 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       this.errorHandler = errorHandler;
    }
 
+   /**
+    * Parse local files with up to this many threads.
+    * Large files are split into chunks of whole records that are parsed in parallel and then merged in order;
+    * the result and the errors reported are the same as when parsing on one thread.
+    */
+   public void setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+   }
+
+   /**
+    * Set whether to lex the file on a separate thread while the model is built; see GedcomParser.setPipelined
+    */
+   public void setPipelined(boolean pipelined) {
+      this.pipelined = pipelined;
+   }
+
+   /**
+    * Pass each top-level record to listener as soon as it has been parsed, rather than keeping it in the Gedcom
+    * that parseGedcom returns.  Files are then parsed on one thread, whatever the parallelism.
+    */
+   public void setRecordListener(RecordListener listener) {
+      this.recordListener = listener;
+   }
+
+   /**
+    * Build only the records and fields in spec, such as <code>INDI: NAME, BIRT/DATE, BIRT/PLAC; FAM: HUSB, WIFE, CHIL</code>;
+    * see GedcomProjection.  Other lines are skipped before any object is created for them.  Null builds everything.
+    *
+    * @throws IllegalArgumentException if spec is malformed
+    */
+   public void setProjection(String spec) {
+      this.projection = (spec != null ? new GedcomProjection(spec) : null);
+   }
+
+   void setProjection(GedcomProjection projection) {
+      this.projection = projection;
+   }
+
+   GedcomProjection getProjection() {
+      return projection;
+   }
+
+   /**
+    * Store each xref once in an xref table, and dereference refs by their xref's handle in it; see XrefTable.
+    * Files are then parsed on one thread, whatever the parallelism.
+    */
+   public void setCompactXrefs(boolean compactXrefs) {
+      this.compactXrefs = compactXrefs;
+   }
+
+   /**
+    * Share repeated values such as places, dates and surnames through pool as they are parsed; see ValuePool.
+    * The pool's statistics report how many values were shared.  Files are then parsed on one thread, whatever the
+    * parallelism.  Null, the default, creates a String for each value.
+    */
+   public void setValuePool(ValuePool pool) {
+      this.valuePool = pool;
+   }
+
+   public ValuePool getValuePool() {
+      return valuePool;
+   }
+
    public Gedcom parseGedcom(File gedcomFile) throws SAXParseException, IOException {
+      if (parallelism > 1 && recordListener == null && !compactXrefs && valuePool == null) {
+         Gedcom result = ParallelModelParser.parse(this, gedcomFile, parallelism, ParallelModelParser.MIN_CHUNK_SIZE);
+         if (result != null) {
+            return result;
+         }
+      }
       GedcomParser parser = gedcomParser();
-      parser.parse(gedcomFile.toURI().toString());
+      fileSize = gedcomFile.length();
+      try {
+         parser.parse(gedcomFile);
+      } finally {
+         fileSize = 0;
+      }
       return gedcom;
    }
 
@@ -1602,10 +1816,23 @@ public class ModelParser implements ContentHandler, org.xml.sax.ErrorHandler {
       return gedcom;
    }
 
+   Gedcom parseGedcom(GedcomLexer lexer) throws SAXParseException, IOException {
+      GedcomParser parser = gedcomParser();
+      parser.parse(lexer);
+      return gedcom;
+   }
+
    private GedcomParser gedcomParser() {
-      GedcomParser parser = new GedcomParser();
-      parser.setContentHandler(this);
+      if (gedcomParser == null) {
+         gedcomParser = new GedcomParser();
+      }
+      GedcomParser parser = gedcomParser;
+      parser.setGedcomHandler(this);
       parser.setErrorHandler(this);
+      parser.setDiagnosticHandler(this);
+      parser.setReportErrors(isReported(ErrorHandler.Level.ERROR));
+      parser.setPipelined(pipelined);
+      parser.setProjection(projection);
       return parser;
    }
 
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+import org.folg.gedcom.parser.ErrorHandler.Code;
+import org.folg.gedcom.parser.ErrorHandler.Level;
+import org.gedml.GedcomByteLexer;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Parses a local file on several threads.
+ * The file is split into chunks of whole records at level-0 lines; each chunk is parsed by its own ModelParser
+ * into its own Gedcom, and the records are then merged into one Gedcom in file order.
+ * Errors are collected per chunk and passed on in file order once all chunks have been parsed.
+ */
+class ParallelModelParser {
+   // don't split files into chunks smaller than this
+   static final long MIN_CHUNK_SIZE = 4L << 20;
+   // more chunks than threads, so a chunk of large records doesn't hold everything up
+   private static final int CHUNKS_PER_THREAD = 4;
+
+   private static class Message {
+      final Level level;
+      final Code code;
+      final String message;
+      final int lineNumber;
+
+      Message(Level level, Code code, String message, int lineNumber) {
+         this.level = level;
+         this.code = code;
+         this.message = message;
+         this.lineNumber = lineNumber;
+      }
+   }
+
+   /**
+    * Collects the diagnostics the owner would report
+    */
+   private static class MessageList implements ErrorHandler {
+      final List<Message> messages = new ArrayList<Message>();
+      final Level threshold;
+
+      MessageList(Level threshold) {
+         this.threshold = threshold;
+      }
+
+      public Level getThreshold() {
+         return threshold;
+      }
+
+      public void diagnostic(Level level, Code code, int lineNumber, Supplier<String> message) {
+         messages.add(new Message(level, code, message.get(), lineNumber));
+      }
+
+      public void warning(String message, int lineNumber) {
+         messages.add(new Message(Level.WARNING, Code.PARSE_ERROR, message, lineNumber));
+      }
+
+      public void error(String message, int lineNumber) {
+         messages.add(new Message(Level.ERROR, Code.PARSE_ERROR, message, lineNumber));
+      }
+
+      public void fatalError(String message, int lineNumber) {
+         messages.add(new Message(Level.FATAL, Code.PARSE_ERROR, message, lineNumber));
+      }
+   }
+
+   private static class Chunk {
+      long start, end;
+      int firstLineNumber;
+      Gedcom gedcom;
+      MessageList messages;
+      Exception exception;
+   }
+
+   /**
+    * Parse the file, reporting errors to owner
+    * @return null if the file can't be parsed in parallel; parse it on one thread instead
+    */
+   static Gedcom parse(final ModelParser owner, final File file, int parallelism, long minChunkSize)
+           throws IOException, SAXParseException {
+      GedcomByteLexer first = GedcomByteLexer.open(file);
+      if (first == null) {
+         return null;
+      }
+      first.close();
+      final String charsetName = first.getCharsetName();
+      long base = first.getStart();
+      long end = first.getEnd();
+      int count = (int) Math.min(parallelism * CHUNKS_PER_THREAD, (end - base) / minChunkSize);
+      if (count < 2) {
+         return null;
+      }
+
+      // chunks only collect the diagnostics the owner would report
+      Level threshold = Level.FATAL;
+      for (Level level : Level.values()) {
+         if (owner.isReported(level)) {
+            threshold = level;
+            break;
+         }
+      }
+
+      final List<Chunk> chunks = new ArrayList<Chunk>();
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         long start = base;
+         for (int i = 1; i <= count && start < end; i++) {
+            long chunkEnd = end;
+            if (i < count) {
+               chunkEnd = GedcomByteLexer.findRecordStart(channel, Math.max(start, base + (end - base) * i / count), end, charsetName);
+            }
+            if (chunkEnd > start) {
+               Chunk chunk = new Chunk();
+               chunk.start = start;
+               chunk.end = chunkEnd;
+               chunk.messages = new MessageList(threshold);
+               chunks.add(chunk);
+               start = chunkEnd;
+            }
+         }
+      }
+      if (chunks.size() < 2) {
+         return null;
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()));
+      try {
+         // count lines so each chunk can number its lines as a single-threaded parse would
+         List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+         for (final Chunk chunk : chunks) {
+            counts.add(executor.submit(new Callable<Integer>() {
+               public Integer call() throws IOException {
+                  try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                     return GedcomByteLexer.countLines(channel, chunk.start, chunk.end);
+                  }
+               }
+            }));
+         }
+         int lineNumber = 1;
+         for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).firstLineNumber = lineNumber;
+            lineNumber += get(counts.get(i));
+         }
+
+         List<Future<?>> parses = new ArrayList<Future<?>>();
+         for (final Chunk chunk : chunks) {
+            parses.add(executor.submit(new Runnable() {
+               public void run() {
+                  ModelParser parser = new ModelParser();
+                  parser.setErrorHandler(chunk.messages);
+                  parser.setProjection(owner.getProjection());
+                  try {
+                     GedcomByteLexer lexer = new GedcomByteLexer(FileChannel.open(file.toPath(), StandardOpenOption.READ),
+                                                                 chunk.start, chunk.end, charsetName);
+                     lexer.setFirstLineNumber(chunk.firstLineNumber);
+                     chunk.gedcom = parser.parseGedcom(lexer);
+                  } catch (IOException | SAXParseException | RuntimeException e) {
+                     chunk.exception = e;
+                  }
+               }
+            }));
+         }
+         for (Future<?> parse : parses) {
+            get(parse);
+         }
+      } finally {
+         executor.shutdown();
+      }
+
+      int personCount = 0;
+      int familyCount = 0;
+      for (Chunk chunk : chunks) {
+         if (chunk.gedcom != null) {
+            personCount += chunk.gedcom.getPeople().size();
+            familyCount += chunk.gedcom.getFamilies().size();
+         }
+      }
+      Gedcom gedcom = null;
+      for (Chunk chunk : chunks) {
+         if (chunk.exception != null) {
+            break;
+         }
+         if (gedcom == null) {
+            gedcom = chunk.gedcom;
+            gedcom.ensureCapacity(personCount, familyCount);
+         } else if (!merge(gedcom, chunk.gedcom)) {
+            // a second header or submission record is handled differently once the first one has been seen
+            return null;
+         }
+      }
+
+      for (Chunk chunk : chunks) {
+         replay(owner, chunk.messages);
+         if (chunk.exception instanceof IOException) {
+            throw (IOException) chunk.exception;
+         } else if (chunk.exception instanceof SAXParseException) {
+            throw (SAXParseException) chunk.exception;
+         } else if (chunk.exception != null) {
+            throw (RuntimeException) chunk.exception;
+         }
+      }
+      return gedcom;
+   }
+
+   private static <T> T get(Future<T> future) throws IOException {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+         }
+         throw new RuntimeException(e.getCause());
+      }
+   }
+
+   private static void replay(ModelParser owner, MessageList messages) {
+      for (final Message message : messages.messages) {
+         owner.report(message.level, message.code, message.lineNumber, () -> message.message);
+      }
+   }
+
+   /**
+    * Append the records of part to gedcom
+    * @return false if both have a header or submission record
+    */
+   @SuppressWarnings("unchecked")
+   private static boolean merge(Gedcom gedcom, Gedcom part) {
+      boolean partHasHeader = part.getHeader() != null || part.getSubmission() != null;
+      if (partHasHeader) {
+         if (gedcom.getHeader() != null || gedcom.getSubmission() != null) {
+            return false;
+         }
+         Header header = part.getHeader();
+         gedcom.setHeader(header);
+         if (header == null || part.getSubmission() != header.getSubmission()) {
+            gedcom.setSubmission(part.getSubmission());
+         }
+      }
+      for (Submitter submitter : part.getSubmitters()) {
+         gedcom.addSubmitter(submitter);
+      }
+      for (Person person : part.getPeople()) {
+         gedcom.addPerson(person);
+      }
+      for (Family family : part.getFamilies()) {
+         gedcom.addFamily(family);
+      }
+      for (Media media : part.getMedia()) {
+         gedcom.addMedia(media);
+      }
+      for (Note note : part.getNotes()) {
+         gedcom.addNote(note);
+      }
+      for (Source source : part.getSources()) {
+         gedcom.addSource(source);
+      }
+      for (Repository repository : part.getRepositories()) {
+         gedcom.addRepository(repository);
+      }
+      for (Map.Entry<String, Object> entry : part.getExtensions().entrySet()) {
+         Object extension = gedcom.getExtension(entry.getKey());
+         if (ModelParser.MORE_TAGS_EXTENSION_KEY.equals(entry.getKey()) && extension != null) {
+            ((List<GedcomTag>) extension).addAll((List<GedcomTag>) entry.getValue());
+         } else if (extension == null) {
+            gedcom.putExtension(entry.getKey(), entry.getValue());
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe pool of parsers, for servers that parse many small files on many threads.
+ * Parsers aren't thread-safe, so each thread borrows one, uses it, and returns it; returned parsers are reset
+ * and kept, along with the buffers they have grown, for the next borrower.  Up to maxIdle parsers are kept;
+ * borrow creates a new one when none is idle, so borrowers never wait.
+ *
+ * <pre>
+ * ModelParser parser = pool.borrow();
+ * try {
+ *    gedcom = parser.parseGedcom(in);
+ * } finally {
+ *    pool.release(parser);
+ * }
+ * </pre>
+ */
+public class ParserPool<P> {
+   private final Supplier<P> factory;
+   private final Consumer<P> reset;
+   private final BlockingQueue<P> idle;
+
+   public ParserPool(Supplier<P> factory, Consumer<P> reset, int maxIdle) {
+      this.factory = factory;
+      this.reset = reset;
+      this.idle = new ArrayBlockingQueue<P>(maxIdle);
+   }
+
+   public static ParserPool<ModelParser> modelParsers(int maxIdle) {
+      return new ParserPool<ModelParser>(ModelParser::new, ModelParser::reset, maxIdle);
+   }
+
+   public static ParserPool<TreeParser> treeParsers(int maxIdle) {
+      return new ParserPool<TreeParser>(TreeParser::new, TreeParser::reset, maxIdle);
+   }
+
+   /**
+    * Return an idle parser, or a new one if none is idle
+    */
+   public P borrow() {
+      P parser = idle.poll();
+      return parser != null ? parser : factory.get();
+   }
+
+   /**
+    * Reset parser and keep it for the next borrower; it must not be used again by the caller
+    */
+   public void release(P parser) {
+      reset.accept(parser);
+      idle.offer(parser);
+   }
+
+   /**
+    * Return the number of idle parsers
+    */
+   public int getIdleCount() {
+      return idle.size();
+   }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+
+/**
+ * Receives each top-level record from ModelParser as soon as its level-0 subtree ends.
+ * Records passed to the listener are not kept in the Gedcom that parseGedcom returns, so a file of any size can
+ * be processed in memory proportional to its largest record.
+ * The header and submission are passed to the listener but also kept, because how later lines are handled
+ * depends on them.
+ *
+ * Throw an unchecked exception to stop parsing.
+ */
+public interface RecordListener {
+   public default void header(Header header) {
+   }
+
+   public default void submission(Submission submission) {
+   }
+
+   public default void submitter(Submitter submitter) {
+   }
+
+   public default void person(Person person) {
+   }
+
+   public default void family(Family family) {
+   }
+
+   public default void source(Source source) {
+   }
+
+   public default void note(Note note) {
+   }
+
+   public default void media(Media media) {
+   }
+
+   public default void repository(Repository repository) {
+   }
+
+   /**
+    * Called with level-0 records the model doesn't know, such as _PLAC records
+    */
+   public default void extension(GedcomTag tag) {
+   }
+}
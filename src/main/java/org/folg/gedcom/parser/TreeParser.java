@@ -17,6 +17,8 @@
 package org.folg.gedcom.parser;
 
 import org.folg.gedcom.model.GedcomTag;
+import org.gedml.FrameStack;
+import org.gedml.GedcomHandler;
 import org.gedml.GedcomParser;
 import org.xml.sax.*;
 
@@ -24,8 +26,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.List;
-import java.util.Stack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,13 +36,17 @@ import org.slf4j.LoggerFactory;
  * User: Dallan
  * Date: 12/23/11
  */
-public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
+public class TreeParser implements ContentHandler, GedcomHandler, org.xml.sax.ErrorHandler {
    private static final Logger logger = LoggerFactory.getLogger("org.folg.gedcom.parser");
 
    private Locator locator;
    private GedcomTag tree;
-   private Stack<GedcomTag> nodeStack;
+   private FrameStack<GedcomTag> nodeStack = new FrameStack<GedcomTag>();
    private ErrorHandler errorHandler = null;
+   // value of the node on top of the stack when it has been given more than one line, written once the node ends
+   private GedcomTag pendingNode = null;
+   private StringBuilder pendingValue = new StringBuilder();
+   private GedcomParser gedcomParser = null;
 
    @Override
    public void setDocumentLocator(Locator locator) {
@@ -50,7 +56,26 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
    @Override
    public void startDocument() throws SAXException {
       tree = null;
-      nodeStack = new Stack<GedcomTag>();
+      nodeStack.clear();
+      pendingNode = null;
+      pendingValue.setLength(0);
+   }
+
+   /**
+    * Return this parser to the state it was in when it was constructed, dropping the last tree it parsed and
+    * clearing its error handler, but keeping the buffers it has allocated.
+    * A parser is not thread-safe; use one per thread at a time, or borrow them from a ParserPool.
+    */
+   public void reset() {
+      tree = null;
+      locator = null;
+      nodeStack.clear();
+      pendingNode = null;
+      pendingValue.setLength(0);
+      errorHandler = null;
+      if (gedcomParser != null) {
+         gedcomParser.reset();
+      }
    }
 
    @Override
@@ -58,6 +83,19 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
       // ignore
    }
 
+   @Override
+   public void startGedcom(Locator locator) throws SAXException {
+      setDocumentLocator(locator);
+      startDocument();
+      startTag(-1, "GED", null, null);
+   }
+
+   @Override
+   public void endGedcom() throws SAXException {
+      endTag(-1, "GED");
+      endDocument();
+   }
+
    @Override
    public void startPrefixMapping(String prefix, String uri) throws SAXException {
       // ignore
@@ -70,7 +108,13 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-      GedcomTag node = new GedcomTag(atts.getValue("ID"), localName, atts.getValue("REF"));
+      startTag(nodeStack.size() - 1, localName, atts.getValue("ID"), atts.getValue("REF"));
+   }
+
+   @Override
+   public void startTag(int level, String tag, String id, String ref) throws SAXException {
+      flushValue();
+      GedcomTag node = new GedcomTag(id, tag, ref);
       if (tree == null) {
          tree = node;
       }
@@ -82,14 +126,48 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    @Override
    public void endElement(String uri, String localName, String qName) throws SAXException {
-      nodeStack.pop();      
+      endTag(nodeStack.size() - 2, localName);
+   }
+
+   @Override
+   public void endTag(int level, String tag) throws SAXException {
+      flushValue();
+      nodeStack.pop();
    }
 
    @Override
    public void characters(char[] ch, int start, int length) throws SAXException {
-      String s = new String(ch, start, length);
+      value(CharBuffer.wrap(ch, start, length));
+   }
+
+   @Override
+   public void value(CharBuffer value) throws SAXException {
       GedcomTag tos = nodeStack.peek();
-      tos.appendValue(s);
+      if (tos.getValue() == null) {
+         tos.setValue(value.toString());
+      }
+      else {
+         // lines that don't appear to be standard are appended; collect them rather than copying the value each time
+         if (pendingNode != tos) {
+            flushValue();
+            pendingNode = tos;
+            pendingValue.append(tos.getValue());
+         }
+         pendingValue.append(value);
+      }
+   }
+
+   private void flushValue() {
+      if (pendingNode != null) {
+         pendingNode.setValue(pendingValue.toString());
+         pendingNode = null;
+         if (pendingValue.capacity() > 65536) {
+            pendingValue = new StringBuilder();
+         }
+         else {
+            pendingValue.setLength(0);
+         }
+      }
    }
 
    @Override
@@ -143,7 +221,7 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
 
    public List<GedcomTag> parseGedcom(File gedcomFile) throws SAXParseException, IOException {
       GedcomParser parser = gedcomParser();
-      parser.parse(gedcomFile.toURI().toString());
+      parser.parse(gedcomFile);
       return tree.getChildren();
    }
 
@@ -160,9 +238,14 @@ public class TreeParser implements ContentHandler, org.xml.sax.ErrorHandler {
    }
 
    private GedcomParser gedcomParser() {
-      GedcomParser parser = new GedcomParser();
-      parser.setContentHandler(this);
+      if (gedcomParser == null) {
+         gedcomParser = new GedcomParser();
+      }
+      GedcomParser parser = gedcomParser;
+      parser.setGedcomHandler(this);
       parser.setErrorHandler(this);
+      parser.setReportErrors(errorHandler != null ?
+              ErrorHandler.Level.ERROR.compareTo(errorHandler.getThreshold()) >= 0 : logger.isWarnEnabled());
       return parser;
    }
 
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2011 Foundation for On-Line Genealogy, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.folg.gedcom.parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A bounded pool of field values, so that the places, dates, surnames and other values that repeat throughout a
+ * file are each kept as a single String instance.  Give one to ModelParser.setValuePool.
+ *
+ * Each field, named as in the model (Place, Date, Type, Surname, Page, ...; Value for the values of names, events,
+ * notes and extension tags), has a Policy: values of NONE fields aren't pooled, values of SHORT fields are pooled
+ * if they are at most maxLength characters long, and values of ALL fields are always pooled.
+ * Once the pool holds maxSize values, new values are no longer added, but values already pooled are still shared.
+ * A lookup that finds its value in the pool is a hit and returns the pooled String without creating one.
+ *
+ * A pool may be kept across parses to share values between files.  Not thread-safe.
+ */
+public final class ValuePool {
+   public enum Policy { NONE, SHORT, ALL }
+
+   public static final int DEFAULT_MAX_SIZE = 1 << 20;
+   public static final int DEFAULT_MAX_LENGTH = 64;
+
+   private static final String[] ALL_FIELDS = {
+      "Place", "Date", "Type", "Surname", "SurnamePrefix", "Given", "Prefix", "Suffix", "Age", "Cause", "City",
+      "State", "Country", "PostalCode", "Quality", "Relation", "RelationshipType", "Status", "Temple", "Language",
+      "MediaType", "Form", "Format"
+   };
+   private static final String[] SHORT_FIELDS = {
+      "Value", "Page", "Title", "Author", "Name"
+   };
+
+   private static final class Field {
+      // null if the field has the default policy
+      Policy policy = null;
+      long hits = 0;
+      long misses = 0;
+   }
+
+   private final int maxSize;
+   private final int maxLength;
+   private final Map<String, Field> fields = new HashMap<String, Field>();
+   private Policy defaultPolicy = Policy.NONE;
+   // open-addressing hash of index + 1 into values; 0 means empty
+   private int[] slots = new int[1024];
+   private String[] values = new String[256];
+   private int[] hashes = new int[256];
+   private int size = 0;
+   private long hits = 0;
+   private long misses = 0;
+   private long savedChars = 0;
+
+   public ValuePool() {
+      this(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH);
+   }
+
+   /**
+    * @param maxSize the most values to hold
+    * @param maxLength the longest value of a SHORT field to pool
+    */
+   public ValuePool(int maxSize, int maxLength) {
+      if (maxSize < 0 || maxLength < 0) {
+         throw new IllegalArgumentException("maxSize " + maxSize + ", maxLength " + maxLength);
+      }
+      this.maxSize = maxSize;
+      this.maxLength = maxLength;
+      for (String field : ALL_FIELDS) {
+         setPolicy(field, Policy.ALL);
+      }
+      for (String field : SHORT_FIELDS) {
+         setPolicy(field, Policy.SHORT);
+      }
+   }
+
+   public void setPolicy(String field, Policy policy) {
+      field(field).policy = policy;
+   }
+
+   public Policy getPolicy(String field) {
+      Field f = fields.get(field);
+      return f != null && f.policy != null ? f.policy : defaultPolicy;
+   }
+
+   /**
+    * Set the policy of fields that haven't been given one; NONE unless set
+    */
+   public void setDefaultPolicy(Policy policy) {
+      this.defaultPolicy = policy;
+   }
+
+   /**
+    * Return the pooled instance of the value of field, adding it to the pool if the field's policy allows and
+    * the pool isn't full; return a new String if the value isn't pooled
+    */
+   public String intern(String field, CharSequence value) {
+      Field f = field(field);
+      Policy policy = f.policy != null ? f.policy : defaultPolicy;
+      int length = value.length();
+      if (policy == Policy.NONE || (policy == Policy.SHORT && length > maxLength)) {
+         return value.toString();
+      }
+      int hash = 0;
+      for (int i = 0; i < length; i++) {
+         hash = 31 * hash + value.charAt(i);
+      }
+      int mask = slots.length - 1;
+      int i = mix(hash) & mask;
+      for (; slots[i] != 0; i = (i + 1) & mask) {
+         int index = slots[i] - 1;
+         if (hashes[index] == hash && contentEquals(values[index], value)) {
+            f.hits++;
+            hits++;
+            savedChars += length;
+            return values[index];
+         }
+      }
+      f.misses++;
+      misses++;
+      String s = value.toString();
+      if (size < maxSize) {
+         add(i, s, hash);
+      }
+      return s;
+   }
+
+   /**
+    * Return the number of values in the pool
+    */
+   public int size() {
+      return size;
+   }
+
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   public int getMaxLength() {
+      return maxLength;
+   }
+
+   /**
+    * Return the number of lookups that found their value in the pool
+    */
+   public long getHits() {
+      return hits;
+   }
+
+   /**
+    * Return the number of lookups of pooled fields that didn't find their value in the pool
+    */
+   public long getMisses() {
+      return misses;
+   }
+
+   public long getHits(String field) {
+      Field f = fields.get(field);
+      return f != null ? f.hits : 0;
+   }
+
+   public long getMisses(String field) {
+      Field f = fields.get(field);
+      return f != null ? f.misses : 0;
+   }
+
+   /**
+    * Return the total length of the values returned from the pool rather than created, a lower bound on the
+    * characters that sharing has saved
+    */
+   public long getSavedChars() {
+      return savedChars;
+   }
+
+   /**
+    * Remove all values from the pool and zero the statistics, keeping the policies
+    */
+   public void clear() {
+      slots = new int[1024];
+      values = new String[256];
+      hashes = new int[256];
+      size = 0;
+      hits = 0;
+      misses = 0;
+      savedChars = 0;
+      for (Field f : fields.values()) {
+         f.hits = 0;
+         f.misses = 0;
+      }
+   }
+
+   private Field field(String field) {
+      Field f = fields.get(field);
+      if (f == null) {
+         f = new Field();
+         fields.put(field, f);
+      }
+      return f;
+   }
+
+   private void add(int slot, String value, int hash) {
+      if (size == values.length) {
+         values = Arrays.copyOf(values, size * 2);
+         hashes = Arrays.copyOf(hashes, size * 2);
+      }
+      values[size] = value;
+      hashes[size] = hash;
+      slots[slot] = ++size;
+      // keep the hash at most half full
+      if (size * 2 > slots.length) {
+         slots = new int[slots.length * 2];
+         int mask = slots.length - 1;
+         for (int index = 0; index < size; index++) {
+            int i = mix(hashes[index]) & mask;
+            while (slots[i] != 0) {
+               i = (i + 1) & mask;
+            }
+            slots[i] = index + 1;
+         }
+      }
+   }
+
+   private static boolean contentEquals(String s, CharSequence value) {
+      int length = s.length();
+      if (length != value.length()) {
+         return false;
+      }
+      for (int i = 0; i < length; i++) {
+         if (s.charAt(i) != value.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+}
@@ -20,11 +20,11 @@ import org.folg.gedcom.model.*;
 import org.folg.gedcom.model.Name;
 import org.folg.gedcom.parser.ModelParser;
 import org.gedml.AnselOutputStreamWriter;
+import org.gedml.FrameStack;
 import org.gedml.GedcomParser;
 
 import java.io.*;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * User: Dallan
@@ -36,7 +36,7 @@ public class GedcomWriter extends Visitor {
 
    private Writer out = null;
    private String eol = "";
-   private Stack<Object> stack;
+   private FrameStack<Object> stack;
    private IOException nestedException;
 
    public void write(Gedcom gedcom, File file) throws IOException {
@@ -46,7 +46,7 @@ public class GedcomWriter extends Visitor {
    }
 
    public void write(Gedcom gedcom, OutputStream out) throws IOException {
-      stack = new Stack<Object>();
+      stack = new FrameStack<Object>();
       nestedException = null;
       String charset = getCharsetName(gedcom);
       eol = (charset.equals("x-MacRoman") ? "\r" : "\n");
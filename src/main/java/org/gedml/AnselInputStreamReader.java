@@ -16,39 +16,77 @@ import java.io.InputStreamReader;
 */
 public class AnselInputStreamReader extends InputStreamReader
 {
+    /*
+    * Lookup tables built from convert1 and convert2.
+    * DECODE1 maps every byte to a character; DECODE2 is indexed by the first byte of a two-byte
+    * sequence, then by the second, and holds 0 where there is no match.
+    */
+    static final char[] DECODE1 = new char[256];
+    static final char[][] DECODE2 = new char[256][];
+
+    static {
+        for (int b=0; b<256; b++) {
+            DECODE1[b] = (char)(b<128 ? b : convert1(b));
+            if ((b>=0xE0 && b<=0xFF) || (b>=0xd7 && b<=0xd9)) {
+                DECODE2[b] = new char[256];
+                for (int next=1; next<256; next++) {
+                    int u = convert2(b*256 + next);
+                    if (u>0) {
+                        DECODE2[b][next] = (char)u;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
     private InputStream input;
-    private int pending;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private char[] single = new char[1];
 
     public AnselInputStreamReader(InputStream in)
             throws IOException
     {
         super(in);
         input = in;
-        pending = input.read(); // we read one character ahead to cope
-        // with non-spacing diacriticals
+        fill(); // we read ahead to cope with non-spacing diacriticals
     }
 
     /*
-    * Return one UNICODE character
+    * Read more bytes, keeping any that have not been decoded yet
     */
 
-    public int read() throws IOException
+    private void fill() throws IOException
     {
-        int b = pending;
-        if (b<0) return b;     // return EOF unchanged
-        pending = input.read();
-        if (b<128) return b;   // return ASCII characters unchanged
-
-        // try to match two ansel chars if we can
-        if (pending>0 && ((b>=0xE0 && b<=0xFF) || (b>=0xd7 && b<=0xd9))) {
-            int u = convert2(b*256 + pending);
-            if (u>0) {
-                pending = input.read();
-                return u;
+        if (pos>0) {
+            System.arraycopy(buf, pos, buf, 0, limit-pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (!eof && limit<buf.length) {
+            int n = input.read(buf, limit, buf.length-limit);
+            if (n<0) {
+                eof = true;
+            }
+            else if (n>0) {
+                limit += n;
+                break;
             }
         }
-        // else match one char
-        return(convert1(b));
+    }
+
+    /*
+    * Return one UNICODE character
+    */
+
+    public int read() throws IOException
+    {
+        int n = read(single, 0, 1);
+        return n<=0 ? -1 : single[0];
     }
 
     /*
@@ -58,15 +96,45 @@ public class AnselInputStreamReader extends InputStreamReader
     public int read(char cbuf[], int off, int len)
             throws IOException
     {
-        if (pending<0) return -1;  // have already hit EOF
-        for (int i=off; i<off+len; i++) {
-            int c = read();
-            if (c<0) {
-                return i-off;
+        int n = 0;
+        while (n<len) {
+            if (pos==limit) {
+                if (n>0 && !eof && input.available()<=0) {
+                    break; // don't block once we have something to return
+                }
+                fill();
+                if (pos==limit) {
+                    break;
+                }
+            }
+            // copy ASCII characters unchanged
+            int end = Math.min(limit, pos+len-n);
+            while (pos<end && buf[pos]>=0) {
+                cbuf[off+n++] = (char)buf[pos++];
+            }
+            if (pos==end) {
+                continue;
+            }
+
+            int b = buf[pos] & 0xFF;
+            char[] second = DECODE2[b];
+            if (second!=null && pos+1==limit && !eof) {
+                fill(); // need the next byte to match two ansel chars
+            }
+            // try to match two ansel chars if we can
+            if (second!=null && pos+1<limit) {
+                char u = second[buf[pos+1] & 0xFF];
+                if (u!=0) {
+                    cbuf[off+n++] = u;
+                    pos += 2;
+                    continue;
+                }
             }
-            cbuf[off+i] = (char)c;
+            // else match one char
+            cbuf[off+n++] = DECODE1[b];
+            pos++;
         }
-        return len;
+        return n==0 && len>0 ? -1 : n;
     }
 
     /*
@@ -81,7 +149,7 @@ public class AnselInputStreamReader extends InputStreamReader
     * Conversion table for ANSEL characters coded in one byte
     */
 
-    private int convert1( int ansel )
+    static int convert1( int ansel )
     {
         switch(ansel) {
             case 0x8D: return 0x200D;  //  zero width joiner
@@ -174,7 +242,7 @@ public class AnselInputStreamReader extends InputStreamReader
     * Conversion table for ANSEL characters coded in two bytes
     */
 
-    private int convert2( int ansel )
+    static int convert2( int ansel )
     {
         switch(ansel) {
             case 0xE020: return 0x02C0;  //  modifier letter glottal stop
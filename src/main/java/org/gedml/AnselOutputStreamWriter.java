@@ -1,6 +1,7 @@
 package org.gedml;
 
 import java.io.*;
+import java.util.Arrays;
 
 /*
 * org.lm.gedml.AnselOutputStreamWriter
@@ -15,7 +16,31 @@ import java.io.*;
 */
 public class AnselOutputStreamWriter extends OutputStreamWriter
 {
+    /*
+    * Lookup table built from convert, indexed by the high byte and then the low byte of a
+    * UNICODE character.  Pages without any mappings share one page of inverted '?'.
+    */
+    private static final int[][] ENCODE = new int[256][];
+
+    static {
+        int[] unmapped = new int[256];
+        Arrays.fill(unmapped, convert(0xFFFD));
+        for (int hi=0; hi<256; hi++) {
+            int[] page = new int[256];
+            boolean mapped = false;
+            for (int lo=0; lo<256; lo++) {
+                page[lo] = convert(hi*256 + lo);
+                mapped |= page[lo]!=unmapped[lo];
+            }
+            ENCODE[hi] = mapped ? page : unmapped;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
     private OutputStream output;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int count = 0;
 
     public AnselOutputStreamWriter(OutputStream out)
     throws IOException
@@ -25,25 +50,46 @@ public class AnselOutputStreamWriter extends OutputStreamWriter
     }
 
     /*
-    * Write one UNICODE character
+    * Write the bytes encoded so far to the underlying stream
     */
 
-    public void write(int c) throws IOException
+    private void writeBuffer() throws IOException
     {
+        if (count>0) {
+            output.write(buf, 0, count);
+            count = 0;
+        }
+    }
 
+    /*
+    * Encode one UNICODE character into the buffer, which must have room for two bytes
+    */
+
+    private void encode(int c)
+    {
         int ansel;
-        if (c<128) output.write(c);
+        if (c<128) buf[count++] = (byte)c;
         else {
-          ansel = convert(c);
+          ansel = c<=0xFFFF ? ENCODE[c>>8][c&0xFF] : convert(c);
           if (ansel < 256) {
-            output.write(ansel);
+            buf[count++] = (byte)ansel;
           } else {
-            output.write(ansel / 256);
-            output.write(ansel % 256);
+            buf[count++] = (byte)(ansel / 256);
+            buf[count++] = (byte)(ansel % 256);
           }
         }
     }
 
+    /*
+    * Write one UNICODE character
+    */
+
+    public void write(int c) throws IOException
+    {
+        if (count+2>buf.length) writeBuffer();
+        encode(c);
+    }
+
     /*
     * Write part of an array of UNICODE characters
     */
@@ -51,8 +97,16 @@ public class AnselOutputStreamWriter extends OutputStreamWriter
     public void write(char cbuf[], int off, int len)
                      throws IOException
     {
-        for (int i=off; i<off+len; i++) {
-            write(cbuf[i]);
+        int end = off+len;
+        int i = off;
+        while (i<end) {
+            if (count+2>buf.length) writeBuffer();
+            // at least one character, and ASCII runs while they fit
+            int stop = Math.min(end, i+buf.length-count-1);
+            encode(cbuf[i++]);
+            while (i<stop && cbuf[i]<128) {
+                buf[count++] = (byte)cbuf[i++];
+            }
         }
     }
 
@@ -63,11 +117,53 @@ public class AnselOutputStreamWriter extends OutputStreamWriter
     public void write(String s)
                      throws IOException
     {
-        for (int i=0; i<s.length(); i++) {
-            write((int)s.charAt(i));
+        write(s, 0, s.length());
+    }
+
+    /*
+    * Write part of a string of UNICODE characters
+    */
+
+    public void write(String s, int off, int len)
+                     throws IOException
+    {
+        int end = off+len;
+        int i = off;
+        while (i<end) {
+            if (count+2>buf.length) writeBuffer();
+            int stop = Math.min(end, i+buf.length-count-1);
+            encode(s.charAt(i++));
+            while (i<stop && s.charAt(i)<128) {
+                buf[count++] = (byte)s.charAt(i++);
+            }
         }
     }
 
+    public Writer append(CharSequence csq) throws IOException
+    {
+        write(String.valueOf(csq));
+        return this;
+    }
+
+    public Writer append(CharSequence csq, int start, int end) throws IOException
+    {
+        if (csq == null) csq = "null";
+        write(csq.subSequence(start, end).toString());
+        return this;
+    }
+
+    public void flush() throws IOException
+    {
+        writeBuffer();
+        super.flush();
+    }
+
+    public void close() throws IOException
+    {
+        writeBuffer();
+        super.close();
+    }
+
     /*
     * Determine the character code in use
     */
@@ -80,7 +176,7 @@ public class AnselOutputStreamWriter extends OutputStreamWriter
     * Conversion table for UNICODE to Ansel
     */
 
-    private int convert( int unicode )
+    private static int convert( int unicode )
     {
       switch(unicode) {
 
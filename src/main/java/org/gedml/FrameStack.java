@@ -0,0 +1,75 @@
+package org.gedml;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An unsynchronized stack of the frames of the open GEDCOM lines, indexed by level: the frame of the level-0
+ * line is at 0 and the frame of the innermost line at size() - 1, so size() is the current depth.
+ * Unlike java.util.Stack it takes no lock on each call, and peek returns null rather than throwing when empty.
+ */
+public final class FrameStack<T> {
+   private Object[] frames;
+   private int size = 0;
+
+   public FrameStack() {
+      this(16);
+   }
+
+   public FrameStack(int capacity) {
+      frames = new Object[Math.max(capacity, 1)];
+   }
+
+   public void push(T frame) {
+      if (size == frames.length) {
+         frames = Arrays.copyOf(frames, size * 2);
+      }
+      frames[size++] = frame;
+   }
+
+   /**
+    * Remove and return the innermost frame
+    * @throws NoSuchElementException if the stack is empty
+    */
+   @SuppressWarnings("unchecked")
+   public T pop() {
+      if (size == 0) {
+         throw new NoSuchElementException("Frame stack is empty");
+      }
+      T frame = (T) frames[--size];
+      frames[size] = null;
+      return frame;
+   }
+
+   /**
+    * Return the innermost frame, or null if the stack is empty
+    */
+   @SuppressWarnings("unchecked")
+   public T peek() {
+      return size > 0 ? (T) frames[size - 1] : null;
+   }
+
+   /**
+    * Return the frame at level, counting the outermost as 0
+    */
+   @SuppressWarnings("unchecked")
+   public T get(int level) {
+      if (level < 0 || level >= size) {
+         throw new IndexOutOfBoundsException("Level " + level + ", depth " + size);
+      }
+      return (T) frames[level];
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   public void clear() {
+      Arrays.fill(frames, 0, size, null);
+      size = 0;
+   }
+}
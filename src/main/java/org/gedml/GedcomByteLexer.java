@@ -0,0 +1,598 @@
+package org.gedml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lexer that works directly on the bytes of a memory-mapped file.
+ * Line boundaries and the level, id, tag and xref fields are found in the bytes without decoding them;
+ * values are only decoded when getValue is called.
+ *
+ * Works for ANSEL, UTF-8 and single-byte ASCII-compatible encodings, in which the structural parts of a
+ * GEDCOM line are plain ASCII bytes.  A line that has a control character or a non-ASCII byte before its
+ * value is decoded and tokenized as characters instead, so the result is always the same as reading the
+ * file through GedcomParser.parse(InputStream).
+ */
+public class GedcomByteLexer implements GedcomLexer {
+   public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+   private static final int NONSTANDARD = 0;
+   private static final int STANDARD = 1;
+   private static final int NEEDS_CHARS = 2;
+   private static final int ODD = -2;
+
+   private final FileChannel channel;
+   private final long start;
+   private final long end;
+   private final String charsetName;
+   private final boolean ansel;
+   private final CharsetDecoder decoder;
+   private int windowSize;
+
+   // window onto the file; line offsets below are indexes into it
+   private ByteBuffer window = null;
+   private ByteBuffer src = null;
+   private long windowStart;
+   private int windowLimit;
+   private long nextLineStart;
+
+   private int lineNr = 0;
+   private int lineStart, lineEnd;
+   private boolean empty, standard, charMode;
+   private int level;
+   private int idStart, idEnd, tagStart, tagEnd, xrefStart, xrefEnd, valueStart, valueEnd;
+
+   private final GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+   private char[] chars = new char[256];
+   private CharBuffer view = CharBuffer.wrap(chars);
+   private int charsLength;
+   private byte[] scratch = new byte[32];
+
+   /**
+    * Open a lexer over a local file
+    * @return null if the character encoding of the file cannot be lexed as bytes; use GedcomParser.parse(InputStream) instead
+    */
+   public static GedcomByteLexer open(File file) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      try {
+         long size = channel.size();
+         ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(size, GedcomCharsetSniffer.WINDOW_SIZE));
+         while (prefix.hasRemaining()) {
+            if (channel.read(prefix, prefix.position()) <= 0) {
+               break;
+            }
+         }
+         GedcomCharsetSniffer sniffer = GedcomCharsetSniffer.sniff(prefix.array(), 0, prefix.position(),
+                                                                   prefix.position() == size);
+         String charsetName = sniffer.getCharsetName();
+         if (sniffer.isUtf16() || !isSupported(charsetName)) {
+            channel.close();
+            return null;
+         }
+
+         // skip over junk at the beginning of the file
+         long start = sniffer.getJunkLength();
+         if (start < 0) {
+            start = prefix.position();
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            boolean found = false;
+            while (!found && channel.read(buf, start) > 0) {
+               buf.flip();
+               while (buf.hasRemaining()) {
+                  if (buf.get() == '0') {
+                     found = true;
+                     break;
+                  }
+                  start++;
+               }
+               buf.clear();
+            }
+         }
+         return new GedcomByteLexer(channel, start, size, charsetName);
+      } catch (IOException | RuntimeException e) {
+         channel.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Return true if files in the specified (corrected) encoding can be lexed as bytes
+    */
+   public static boolean isSupported(String charsetName) {
+      if ("ANSEL".equals(charsetName)) {
+         return true;
+      }
+      try {
+         Charset charset = Charset.forName(charsetName);
+         if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+         }
+         if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+         }
+         byte[] ascii = new byte[128];
+         for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+         }
+         return new String(ascii, charset).equals(new String(ascii, StandardCharsets.US_ASCII));
+      } catch (IllegalArgumentException e) {
+         return false;
+      }
+   }
+
+   public GedcomByteLexer(FileChannel channel, long start, long end, String charsetName) {
+      this(channel, start, end, charsetName, DEFAULT_WINDOW_SIZE);
+   }
+
+   /**
+    * Lex the lines in [start, end) of the channel, which must start at the beginning of a line.
+    * The file is mapped windowSize bytes at a time; lines that are longer than the window grow it.
+    */
+   public GedcomByteLexer(FileChannel channel, long start, long end, String charsetName, int windowSize) {
+      this.channel = channel;
+      this.start = start;
+      this.nextLineStart = start;
+      this.end = end;
+      this.charsetName = charsetName;
+      this.windowSize = windowSize;
+      this.ansel = "ANSEL".equals(charsetName);
+      this.decoder = ansel ? null : Charset.forName(charsetName).newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+   }
+
+   public String getCharsetName() {
+      return charsetName;
+   }
+
+   /**
+    * Return the offset of the first line, after any junk at the beginning of the file
+    */
+   public long getStart() {
+      return start;
+   }
+
+   public long getEnd() {
+      return end;
+   }
+
+   /**
+    * Number the lines starting from lineNumber instead of 1, for a lexer over part of a file
+    */
+   public void setFirstLineNumber(int lineNumber) {
+      lineNr = lineNumber - 1;
+   }
+
+   /**
+    * Return the offset of the first standard level-0 line that starts after offset from, or end if there isn't one.
+    * The parser starts a new record at such a line whatever comes before it, so a file can be split there.
+    */
+   public static long findRecordStart(FileChannel channel, long from, long end, String charsetName) throws IOException {
+      // skip to the start of the next line
+      ByteBuffer buf = ByteBuffer.allocate(8192);
+      long pos = from;
+      boolean found = false;
+      while (!found && pos < end) {
+         buf.clear();
+         buf.limit((int) Math.min(buf.capacity(), end - pos));
+         if (channel.read(buf, pos) <= 0) {
+            return end;
+         }
+         buf.flip();
+         while (buf.hasRemaining()) {
+            byte b = buf.get();
+            pos++;
+            if (b == '\n' || b == '\r') {
+               found = true;
+               if (b == '\r') {
+                  // the \n of a \r\n may be in the next block
+                  ByteBuffer next = ByteBuffer.allocate(1);
+                  if (pos < end && channel.read(next, pos) == 1 && next.get(0) == '\n') {
+                     pos++;
+                  }
+               }
+               break;
+            }
+         }
+      }
+
+      GedcomByteLexer lexer = new GedcomByteLexer(channel, pos, end, charsetName, 1 << 20);
+      while (lexer.nextLine()) {
+         if (lexer.isStandard() && lexer.getLevel() == 0) {
+            return lexer.getLineOffset();
+         }
+      }
+      return end;
+   }
+
+   /**
+    * Count the lines in [start, end) of the channel as nextLine would; start must be the beginning of a line,
+    * and end must be the beginning of a line or the end of the file
+    */
+   public static int countLines(FileChannel channel, long start, long end) throws IOException {
+      int count = 0;
+      boolean cr = false;
+      boolean open = false;
+      for (long position = start; position < end; position += DEFAULT_WINDOW_SIZE) {
+         ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(DEFAULT_WINDOW_SIZE, end - position));
+         int limit = window.limit();
+         for (int i = 0; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == '\n') {
+               if (!cr) {
+                  count++;
+               }
+               cr = false;
+               open = false;
+            }
+            else if (b == '\r') {
+               count++;
+               cr = true;
+               open = false;
+            }
+            else {
+               cr = false;
+               open = true;
+            }
+         }
+      }
+      // last line without a terminator
+      return open ? count + 1 : count;
+   }
+
+   private void map(long position, int size) throws IOException {
+      windowStart = position;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, end - position));
+      windowLimit = window.limit();
+      src = window.duplicate();
+   }
+
+   public boolean nextLine() throws IOException {
+      if (nextLineStart >= end) {
+         return false;
+      }
+      if (window == null || nextLineStart >= windowStart + windowLimit) {
+         map(nextLineStart, windowSize);
+      }
+
+      // find the end of the line: \n, \r or \r\n as in BufferedReader.readLine
+      int i = (int) (nextLineStart - windowStart);
+      int terminatorLength;
+      for (;;) {
+         while (i < windowLimit) {
+            byte b = window.get(i);
+            if (b == '\n' || b == '\r') {
+               break;
+            }
+            i++;
+         }
+         if (i < windowLimit - 1 || (i == windowLimit - 1 && window.get(i) == '\n')) {
+            terminatorLength = (window.get(i) == '\r' && window.get(i + 1) == '\n') ? 2 : 1;
+            break;
+         }
+         else if (windowStart + windowLimit >= end) {
+            // last line of the input, possibly ending in \r
+            terminatorLength = (i < windowLimit) ? 1 : 0;
+            break;
+         }
+         // the line (or its \r\n) runs past the end of the window
+         if (nextLineStart == windowStart) {
+            if (windowSize >= Integer.MAX_VALUE / 2) {
+               throw new IOException("Line too long @ " + (lineNr + 1));
+            }
+            windowSize *= 2;
+         }
+         map(nextLineStart, windowSize);
+         i = 0;
+      }
+      lineStart = (int) (nextLineStart - windowStart);
+      lineEnd = i;
+      nextLineStart = windowStart + i + terminatorLength;
+      lineNr++;
+
+      tokenize();
+      return true;
+   }
+
+   private void tokenize() {
+      charMode = false;
+      idStart = idEnd = xrefStart = xrefEnd = valueStart = valueEnd = -1;
+      int result = tokenizeBytes(lineStart, lineEnd);
+      if (result == NEEDS_CHARS) {
+         charMode = true;
+         charsLength = decode(lineStart, lineEnd);
+         empty = charsLength == 0;
+         standard = !empty && tokenizer.parse(chars, 0, charsLength);
+      }
+      else {
+         empty = lineStart == lineEnd;
+         standard = result == STANDARD;
+      }
+   }
+
+   private static boolean isOdd(byte c) {
+      // control characters are removed before tokenizing, and non-ASCII bytes need to be decoded first
+      return c < 32 && c != '\t';
+   }
+
+   private static boolean isSpace(byte c) {
+      return c == ' ' || c == '\t';
+   }
+
+   private int skipSpace(int p, int end) {
+      while (p < end && isSpace(window.get(p))) {
+         p++;
+      }
+      return p;
+   }
+
+   private int scanPointer(int p, int end) {
+      int e = p;
+      while (e < end) {
+         byte c = window.get(e);
+         if (isOdd(c)) {
+            return ODD;
+         }
+         if (c == '@' || c == ' ') {
+            break;
+         }
+         e++;
+      }
+      return (e > p && e < end && window.get(e) == '@') ? e : -1;
+   }
+
+   private int nonstandard(int p, int end) {
+      return (p < end && isOdd(window.get(p))) ? NEEDS_CHARS : NONSTANDARD;
+   }
+
+   /**
+    * Same rules as GedcomLineTokenizer, applied to the bytes of the line
+    */
+   private int tokenizeBytes(int p, int end) {
+      // level
+      p = skipSpace(p, end);
+      if (p == end || !GedcomLineTokenizer.isDigit((char) window.get(p))) {
+         return nonstandard(p, end);
+      }
+      level = window.get(p) - '0';
+      p++;
+      int q = skipSpace(p, end);
+      if (q == p) {
+         return nonstandard(q, end);
+      }
+      p = q;
+
+      // optional @id@ followed by whitespace
+      if (p < end && window.get(p) == '@') {
+         int e = scanPointer(p + 1, end);
+         if (e == ODD) {
+            return NEEDS_CHARS;
+         }
+         else if (e < 0) {
+            return NONSTANDARD;
+         }
+         q = skipSpace(e + 1, end);
+         if (q == e + 1) {
+            return nonstandard(q, end);
+         }
+         idStart = p + 1;
+         idEnd = e;
+         p = q;
+      }
+
+      // tag
+      tagStart = p;
+      while (p < end && GedcomLineTokenizer.isTagChar((char) window.get(p))) {
+         p++;
+      }
+      if (p == tagStart) {
+         return nonstandard(p, end);
+      }
+      tagEnd = p;
+      if (p == end) {
+         return STANDARD;
+      }
+      byte c = window.get(p);
+      if (isOdd(c)) {
+         return NEEDS_CHARS;
+      }
+      else if (!isSpace(c)) {
+         return NONSTANDARD;
+      }
+
+      // optional @xref@
+      q = skipSpace(p, end);
+      if (q < end) {
+         c = window.get(q);
+         if (isOdd(c)) {
+            return NEEDS_CHARS;
+         }
+         if (c == '@') {
+            int e = scanPointer(q + 1, end);
+            if (e == ODD) {
+               return NEEDS_CHARS;
+            }
+            else if (e >= 0) {
+               int after = e + 1;
+               if (after == end) {
+                  xrefStart = q + 1;
+                  xrefEnd = e;
+                  return STANDARD;
+               }
+               c = window.get(after);
+               if (isOdd(c)) {
+                  return NEEDS_CHARS;
+               }
+               else if (isSpace(c)) {
+                  xrefStart = q + 1;
+                  xrefEnd = e;
+                  valueStart = after + 1;
+                  valueEnd = end;
+                  return STANDARD;
+               }
+            }
+         }
+      }
+      valueStart = p + 1;
+      valueEnd = end;
+      return STANDARD;
+   }
+
+   /**
+    * Decode window[from..to) into chars and remove control characters; return the number of chars
+    */
+   private int decode(int from, int to) {
+      if (chars.length < to - from) {
+         chars = new char[Math.max(to - from, chars.length * 2)];
+         view = CharBuffer.wrap(chars);
+      }
+      int n = 0;
+      int i = from;
+      if (ansel) {
+         while (i < to) {
+            int b = window.get(i++) & 0xFF;
+            // try to match two ansel chars if we can, as AnselInputStreamReader does
+            char[] second = AnselInputStreamReader.DECODE2[b];
+            if (second != null && i < to && second[window.get(i) & 0xFF] != 0) {
+               chars[n++] = second[window.get(i++) & 0xFF];
+            }
+            else {
+               chars[n++] = AnselInputStreamReader.DECODE1[b];
+            }
+         }
+      }
+      else {
+         while (i < to) {
+            byte b = window.get(i);
+            if (b < 0) {
+               break;
+            }
+            chars[n++] = (char) b;
+            i++;
+         }
+         if (i < to) {
+            src.limit(to).position(i);
+            CharBuffer dst = CharBuffer.wrap(chars, n, chars.length - n);
+            decoder.reset();
+            decoder.decode(src, dst, true);
+            decoder.flush(dst);
+            n = dst.position();
+         }
+      }
+
+      // remove control chars
+      int len = 0;
+      for (int j = 0; j < n; j++) {
+         char c = chars[j];
+         if (c >= 32 || c == 9) {
+            chars[len++] = c;
+         }
+      }
+      return len;
+   }
+
+   private String ascii(int from, int to) {
+      if (from < 0) {
+         return null;
+      }
+      int len = to - from;
+      if (scratch.length < len) {
+         scratch = new byte[Math.max(len, scratch.length * 2)];
+      }
+      src.limit(to).position(from);
+      src.get(scratch, 0, len);
+      return new String(scratch, 0, len, StandardCharsets.ISO_8859_1);
+   }
+
+   public int getLineNumber() {
+      return lineNr;
+   }
+
+   /**
+    * Return the file offset of the start of the current line
+    */
+   public long getLineOffset() {
+      return windowStart + lineStart;
+   }
+
+   /**
+    * Return the file offset of the start of the next line
+    */
+   public long getNextLineOffset() {
+      return nextLineStart;
+   }
+
+   public boolean isEmpty() {
+      return empty;
+   }
+
+   public boolean isStandard() {
+      return standard;
+   }
+
+   public int getLevel() {
+      return charMode ? tokenizer.getLevel() : level;
+   }
+
+   public String getTag() {
+      if (charMode) {
+         return tokenizer.getTag();
+      }
+      int len = tagEnd - tagStart;
+      if (scratch.length < len) {
+         scratch = new byte[Math.max(len, scratch.length * 2)];
+      }
+      src.limit(tagEnd).position(tagStart);
+      src.get(scratch, 0, len);
+      return tokenizer.getTags().intern(scratch, 0, len);
+   }
+
+   public String getID() {
+      return charMode ? tokenizer.getID() : ascii(idStart, idEnd);
+   }
+
+   public String getXRef() {
+      return charMode ? tokenizer.getXRef() : ascii(xrefStart, xrefEnd);
+   }
+
+   public boolean hasValue() {
+      return charMode ? tokenizer.hasValue() : valueStart >= 0;
+   }
+
+   public CharBuffer getValue() {
+      if (charMode) {
+         view.clear();
+         view.position(tokenizer.getValueStart());
+         view.limit(tokenizer.getValueEnd());
+      }
+      else {
+         int len = decode(valueStart, valueEnd);
+         view.clear();
+         view.limit(len);
+      }
+      return view;
+   }
+
+   public CharBuffer getLine() {
+      if (!charMode) {
+         charsLength = decode(lineStart, lineEnd);
+      }
+      view.clear();
+      view.limit(charsLength);
+      return view;
+   }
+
+   public void close() throws IOException {
+      window = null;
+      src = null;
+      channel.close();
+   }
+}
@@ -0,0 +1,237 @@
+package org.gedml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Works out the character encoding of a GEDCOM file, and where its first record starts, in a single pass
+ * over a fixed-size prefix of the file.
+ *
+ * A byte order mark or a pattern of zero bytes identifies UTF-16; otherwise the encoding is taken from the
+ * HEAD.SOUR, HEAD.CHAR and HEAD.CHAR.VERS values and corrected by GedcomParser.getCorrectedCharsetName.
+ * The junk length is the number of bytes before the first '0' character, which is where parsing starts.
+ */
+public class GedcomCharsetSniffer {
+   public static final int WINDOW_SIZE = 64 * 1024;
+
+   // only look for HEAD.CHAR in the first 100 lines
+   private static final int MAX_HEADER_LINES = 100;
+   // number of leading bytes examined for the zero-byte pattern of UTF-16
+   private static final int PATTERN_SIZE = 512;
+
+   private String generatorName = null;
+   private String encoding = null;
+   private String version = null;
+   private String utf16Name = null;
+   private int junkLength = -1;
+   private int scannedLength = 0;
+
+   private GedcomCharsetSniffer() {
+   }
+
+   /**
+    * Sniff the start of a stream.  The stream must support mark; it is reset to where it was before returning.
+    */
+   public static GedcomCharsetSniffer sniff(InputStream in) throws IOException {
+      byte[] buf = new byte[WINDOW_SIZE];
+      in.mark(WINDOW_SIZE);
+      int len = in.readNBytes(buf, 0, WINDOW_SIZE);
+      in.reset();
+      return sniff(buf, 0, len, len < WINDOW_SIZE);
+   }
+
+   /**
+    * Sniff a prefix of a file
+    * @param complete true if the prefix is the whole file
+    */
+   public static GedcomCharsetSniffer sniff(byte[] buf, int off, int len, boolean complete) {
+      GedcomCharsetSniffer sniffer = new GedcomCharsetSniffer();
+      sniffer.scan(buf, off, len, complete);
+      return sniffer;
+   }
+
+   private void scan(byte[] buf, int off, int len, boolean complete) {
+      int bomLength = 0;
+      if (len >= 2 && (buf[off] & 0xFF) == 0xFE && (buf[off + 1] & 0xFF) == 0xFF) {
+         utf16Name = "UTF-16BE";
+         bomLength = 2;
+      } else if (len >= 2 && (buf[off] & 0xFF) == 0xFF && (buf[off + 1] & 0xFF) == 0xFE) {
+         utf16Name = "UTF-16LE";
+         bomLength = 2;
+      } else {
+         utf16Name = getUtf16Pattern(buf, off, Math.min(len, PATTERN_SIZE));
+      }
+
+      String text;
+      if (utf16Name != null) {
+         int textLength = (len - bomLength) & ~1;
+         boolean bigEndian = utf16Name.equals("UTF-16BE");
+         for (int i = bomLength; i < bomLength + textLength; i += 2) {
+            if ((bigEndian && buf[off + i] == 0 && buf[off + i + 1] == '0') ||
+                (!bigEndian && buf[off + i] == '0' && buf[off + i + 1] == 0)) {
+               junkLength = i;
+               break;
+            }
+         }
+         scannedLength = bomLength + textLength;
+         text = new String(buf, off + bomLength, textLength,
+                           bigEndian ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE);
+      } else {
+         for (int i = 0; i < len; i++) {
+            if (buf[off + i] == '0') {
+               junkLength = i;
+               break;
+            }
+         }
+         scannedLength = len;
+         // the header tags and the values we look for are ASCII
+         text = new String(buf, off, len, StandardCharsets.ISO_8859_1);
+      }
+      scanHeader(text, complete);
+   }
+
+   /**
+    * Return UTF-16BE or UTF-16LE if most of the 2-byte units have a zero high or low byte, or null
+    */
+   private static String getUtf16Pattern(byte[] buf, int off, int len) {
+      int units = len / 2;
+      int bigEndian = 0;
+      int littleEndian = 0;
+      for (int i = 0; i < units; i++) {
+         byte b1 = buf[off + 2 * i];
+         byte b2 = buf[off + 2 * i + 1];
+         if (b1 == 0 && b2 != 0) {
+            bigEndian++;
+         } else if (b1 != 0 && b2 == 0) {
+            littleEndian++;
+         }
+      }
+      if (units > 0 && bigEndian * 2 > units) {
+         return "UTF-16BE";
+      } else if (units > 0 && littleEndian * 2 > units) {
+         return "UTF-16LE";
+      }
+      return null;
+   }
+
+   private void scanHeader(String text, boolean complete) {
+      int pos = 0;
+      for (int i = 0; i < MAX_HEADER_LINES && hasLine(text, pos, complete); i++) {
+         int end = getLineEnd(text, pos);
+         String[] split = text.substring(pos, end).trim().split("\\s+", 3);
+         pos = getNextLineStart(text, end);
+         if (split.length == 3) {
+            if (generatorName == null &&
+                    split[0].equals("1") &&
+                    split[1].equals("SOUR")) {
+               generatorName = split[2];
+            } else if (split[0].equals("1") &&
+                    (split[1].equals("CHAR") || split[1].equals("CHARACTER"))) {
+               // get encoding
+               encoding = split[2].toUpperCase();
+               // look for version
+               if (hasLine(text, pos, complete)) {
+                  end = getLineEnd(text, pos);
+                  split = text.substring(pos, end).trim().split("\\s+", 3);
+                  pos = getNextLineStart(text, end);
+                  if (split.length == 3 && split[0].equals("2") && split[1].equals("VERS")) {
+                     version = split[2];
+                  }
+               }
+            }
+         }
+         if (generatorName != null && encoding != null) {
+            break; // got what we need
+         }
+      }
+   }
+
+   /**
+    * Return true if a whole line starts at pos; the last line of the window may have been cut off
+    */
+   private static boolean hasLine(String text, int pos, boolean complete) {
+      int end = getLineEnd(text, pos);
+      return end < text.length() || (complete && end > pos);
+   }
+
+   private static int getLineEnd(String text, int pos) {
+      while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') {
+         pos++;
+      }
+      return pos;
+   }
+
+   private static int getNextLineStart(String text, int end) {
+      if (end < text.length() && text.charAt(end) == '\r') {
+         end++;
+         if (end < text.length() && text.charAt(end) == '\n') {
+            end++;
+         }
+      } else if (end < text.length()) {
+         end++;
+      }
+      return end;
+   }
+
+   /**
+    * Return true if the bytes of the file are UTF-16
+    */
+   public boolean isUtf16() {
+      return utf16Name != null;
+   }
+
+   /**
+    * Return the encoding named in the header, corrected by GedcomParser.getCorrectedCharsetName; empty if not found
+    */
+   public String getDeclaredCharsetName() {
+      return GedcomParser.getCorrectedCharsetName(generatorName, encoding, version);
+   }
+
+   /**
+    * Return the name of the charset to read the file with, starting after the junk.
+    * UTF-16 files are read with an explicit byte order, since the byte order mark is part of the junk.
+    * Files that don't name an encoding are assumed to be ANSEL.
+    */
+   public String getCharsetName() {
+      if (utf16Name != null) {
+         return utf16Name;
+      }
+      String charsetName = getDeclaredCharsetName();
+      return charsetName.length() == 0 ? "ANSEL" : charsetName;
+   }
+
+   /**
+    * Return the number of bytes before the first '0' character, or -1 if there isn't one in the window
+    */
+   public int getJunkLength() {
+      return junkLength;
+   }
+
+   /**
+    * Skip over junk at the beginning of the stream the sniffer was run on.  The stream must support mark.
+    */
+   public void skipJunk(InputStream in) throws IOException {
+      if (junkLength >= 0) {
+         in.skipNBytes(junkLength);
+         return;
+      }
+      // no '0' in the window; keep looking a character at a time
+      in.skipNBytes(scannedLength);
+      int unit = isUtf16() ? 2 : 1;
+      byte[] buf = new byte[unit];
+      while (true) {
+         in.mark(unit);
+         if (in.readNBytes(buf, 0, unit) < unit) {
+            return;
+         }
+         char c = (char) (unit == 1 ? buf[0] & 0xFF :
+                          utf16Name.equals("UTF-16BE") ? ((buf[0] & 0xFF) << 8) | (buf[1] & 0xFF) :
+                                                         ((buf[1] & 0xFF) << 8) | (buf[0] & 0xFF));
+         if (c == '0') {
+            in.reset();
+            return;
+         }
+      }
+   }
+}
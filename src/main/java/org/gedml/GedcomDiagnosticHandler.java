@@ -0,0 +1,25 @@
+package org.gedml;
+
+import org.xml.sax.SAXException;
+
+import java.util.function.Supplier;
+
+/**
+ * Receives the recoverable errors GedcomParser finds, each as a code and a line number, so no SAXParseException
+ * has to be built for them.  If set on the parser, it is used instead of the ErrorHandler for these errors;
+ * fatal errors still go to the ErrorHandler.
+ */
+public interface GedcomDiagnosticHandler {
+   public static enum Code {
+      // a line that doesn't appear to be standard GEDCOM; its text is passed on as a value of the previous line
+      NONSTANDARD_LINE,
+      // a line more than one level deeper than the line before it; it is skipped
+      LEVEL_SKIPPED
+   }
+
+   /**
+    * Called for each recoverable error.
+    * The message may refer to the parser's buffers, so call message.get() before returning if you want it.
+    */
+   public void diagnostic(Code code, int lineNumber, Supplier<String> message) throws SAXException;
+}
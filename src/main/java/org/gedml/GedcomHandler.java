@@ -0,0 +1,41 @@
+package org.gedml;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.nio.CharBuffer;
+
+/**
+ * Receives the lines of a GEDCOM file from GedcomParser without going through SAX.
+ * Unlike the SAX events, there is no GED root element and no Attributes object: each line is delivered as
+ * its level, tag, id and ref, followed by its value.
+ * Errors are still reported to the parser's ErrorHandler.
+ */
+public interface GedcomHandler {
+   /**
+    * Called before any other event
+    * @param locator reports the number of the line being parsed
+    */
+   public void startGedcom(Locator locator) throws SAXException;
+
+   /**
+    * Called for each line, after the tags of any lines at the same or a deeper level have been ended
+    * @param id null if the line has no id
+    * @param ref null if the line has no ref
+    */
+   public void startTag(int level, String tag, String id, String ref) throws SAXException;
+
+   /**
+    * Called with the value of the most recently started tag, if it has one, and with the text of lines that
+    * do not appear to be standard GEDCOM.
+    * The value is a view over the parser's buffer, which is reused for the next line; copy what you need to keep.
+    */
+   public void value(CharBuffer value) throws SAXException;
+
+   public void endTag(int level, String tag) throws SAXException;
+
+   /**
+    * Called at the end of the file.  As with the SAX events, tags still open at the end of the file are not ended first.
+    */
+   public void endGedcom() throws SAXException;
+}
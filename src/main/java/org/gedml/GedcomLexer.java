@@ -0,0 +1,56 @@
+package org.gedml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * A source of tokenized GEDCOM lines.
+ * Control characters are removed from each line before it is tokenized, as GedcomParser always has.
+ * The CharBuffers returned by getValue and getLine are views over a buffer that is reused for the next line.
+ */
+public interface GedcomLexer extends Closeable {
+   /**
+    * Advance to the next physical line
+    * @return false at the end of the input
+    */
+   public boolean nextLine() throws IOException;
+
+   /**
+    * Return the 1-based number of the current line
+    */
+   public int getLineNumber();
+
+   /**
+    * Return true if nothing is left of the current line once control characters are removed
+    */
+   public boolean isEmpty();
+
+   /**
+    * Return true if the current line is a standard GEDCOM line: level, optional id, tag, optional xref, optional value
+    */
+   public boolean isStandard();
+
+   public int getLevel();
+
+   public String getTag();
+
+   public String getID();
+
+   public String getXRef();
+
+   /**
+    * Return true if the current line has a (possibly empty) value
+    */
+   public boolean hasValue();
+
+   /**
+    * Decode and return the value of the current line
+    */
+   public CharBuffer getValue();
+
+   /**
+    * Decode and return the whole current line; used for lines that are not standard
+    */
+   public CharBuffer getLine();
+}
@@ -6,7 +6,10 @@ import java.util.regex.Pattern;
 /**
  * User: npowell
  * Date: May 2, 2007
+ *
+ * @deprecated GedcomParser now uses {@link GedcomLineTokenizer}, which accepts the same lines without a regex
  */
+@Deprecated
 public class GedcomLineParser {
    private static final Pattern pGedcomLine = Pattern.compile(
            "^\\s*(\\d)\\s+(@([^@ ]+)@\\s+)?([a-zA-Z_0-9.]+)(\\s+@([^@ ]+)@)?(\\s(.*))?$", Pattern.DOTALL); // DOTALL for unicode line separator
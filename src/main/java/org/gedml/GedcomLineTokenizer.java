@@ -0,0 +1,226 @@
+package org.gedml;
+
+/**
+ * Single-pass replacement for GedcomLineParser.
+ * Splits a GEDCOM line into level, id, tag, xref and value without a regex.
+ * The fields are reported as offsets into the caller's buffer, so a parser can reuse one
+ * buffer for every line and only create Strings for the fields it actually needs.
+ * Tags are returned as the shared instances in TagTable, or in the tokenizer's own LocalTagTable.
+ *
+ * Accepts exactly the lines accepted by the GedcomLineParser pattern
+ * <code>^\s*(\d)\s+(@([^@ ]+)@\s+)?([a-zA-Z_0-9.]+)(\s+@([^@ ]+)@)?(\s(.*))?$</code>
+ * and reports the same groups.
+ */
+public class GedcomLineTokenizer {
+   private char[] buf;
+   private int level;
+   private int idStart, idEnd;
+   private int tagStart, tagEnd;
+   private int xrefStart, xrefEnd;
+   private int valueStart, valueEnd;
+   private final LocalTagTable tags = new LocalTagTable();
+
+   public boolean parse(String line) {
+      char[] chars = line.toCharArray();
+      return parse(chars, 0, chars.length);
+   }
+
+   /**
+    * Tokenize buf[off..off+len).  Returns false if the line is not a standard GEDCOM line.
+    * The buffer is referenced, not copied, so the offsets are only valid until it is overwritten.
+    */
+   public boolean parse(char[] buf, int off, int len) {
+      this.buf = buf;
+      idStart = idEnd = -1;
+      xrefStart = xrefEnd = -1;
+      valueStart = valueEnd = -1;
+      int end = off + len;
+
+      // level
+      int p = skipSpace(buf, off, end);
+      if (p == end || !isDigit(buf[p])) {
+         return false;
+      }
+      level = buf[p] - '0';
+      p++;
+      int q = skipSpace(buf, p, end);
+      if (q == p) {
+         return false;
+      }
+      p = q;
+
+      // optional @id@ followed by whitespace
+      if (p < end && buf[p] == '@') {
+         int e = scanPointer(buf, p + 1, end);
+         if (e < 0) {
+            return false;
+         }
+         q = skipSpace(buf, e + 1, end);
+         if (q == e + 1) {
+            return false;
+         }
+         idStart = p + 1;
+         idEnd = e;
+         p = q;
+      }
+
+      // tag
+      tagStart = p;
+      while (p < end && isTagChar(buf[p])) {
+         p++;
+      }
+      if (p == tagStart) {
+         return false;
+      }
+      tagEnd = p;
+
+      if (p < end && isSpace(buf[p])) {
+         // optional @xref@, which only counts if it is followed by whitespace or the end of the line
+         q = skipSpace(buf, p, end);
+         if (q < end && buf[q] == '@') {
+            int e = scanPointer(buf, q + 1, end);
+            if (e >= 0) {
+               int after = e + 1;
+               if (after < end && isSpace(buf[after])) {
+                  xrefStart = q + 1;
+                  xrefEnd = e;
+                  valueStart = after + 1;
+                  valueEnd = end;
+                  return true;
+               }
+               else if (isEnd(buf, after, end)) {
+                  xrefStart = q + 1;
+                  xrefEnd = e;
+                  return true;
+               }
+            }
+         }
+         // everything after the first whitespace character is the value
+         valueStart = p + 1;
+         valueEnd = end;
+         return true;
+      }
+      return isEnd(buf, p, end);
+   }
+
+   /**
+    * Return the index of the closing '@' of a pointer whose body starts at p, or -1 if there isn't one
+    */
+   private static int scanPointer(char[] buf, int p, int end) {
+      int e = p;
+      while (e < end && buf[e] != '@' && buf[e] != ' ') {
+         e++;
+      }
+      return (e > p && e < end && buf[e] == '@') ? e : -1;
+   }
+
+   private static int skipSpace(char[] buf, int p, int end) {
+      while (p < end && isSpace(buf[p])) {
+         p++;
+      }
+      return p;
+   }
+
+   /**
+    * Same as regex $: the end of the input, or just before a final line terminator
+    */
+   private static boolean isEnd(char[] buf, int p, int end) {
+      return p == end ||
+             (p == end - 1 && isLineTerminator(buf[p])) ||
+             (p == end - 2 && buf[p] == '\r' && buf[p + 1] == '\n');
+   }
+
+   /**
+    * Same as regex \s
+    */
+   static boolean isSpace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+   }
+
+   static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+   }
+
+   static boolean isTagChar(char c) {
+      return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '.';
+   }
+
+   private static boolean isLineTerminator(char c) {
+      return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+   }
+
+   public char[] getBuffer() {
+      return buf;
+   }
+
+   public int getLevel() {
+      return level;
+   }
+
+   public boolean hasID() {
+      return idStart >= 0;
+   }
+
+   public int getIDStart() {
+      return idStart;
+   }
+
+   public int getIDEnd() {
+      return idEnd;
+   }
+
+   public int getTagStart() {
+      return tagStart;
+   }
+
+   public int getTagEnd() {
+      return tagEnd;
+   }
+
+   public boolean hasXRef() {
+      return xrefStart >= 0;
+   }
+
+   public int getXRefStart() {
+      return xrefStart;
+   }
+
+   public int getXRefEnd() {
+      return xrefEnd;
+   }
+
+   public boolean hasValue() {
+      return valueStart >= 0;
+   }
+
+   public int getValueStart() {
+      return valueStart;
+   }
+
+   public int getValueEnd() {
+      return valueEnd;
+   }
+
+   public String getID() {
+      return idStart >= 0 ? new String(buf, idStart, idEnd - idStart) : null;
+   }
+
+   /**
+    * Return the table that holds the tags this tokenizer has seen that aren't in TagTable
+    */
+   public LocalTagTable getTags() {
+      return tags;
+   }
+
+   public String getTag() {
+      return tags.intern(buf, tagStart, tagEnd);
+   }
+
+   public String getXRef() {
+      return xrefStart >= 0 ? new String(buf, xrefStart, xrefEnd - xrefStart) : null;
+   }
+
+   public String getValue() {
+      return valueStart >= 0 ? new String(buf, valueStart, valueEnd - valueStart) : null;
+   }
+}
@@ -5,10 +5,10 @@ import org.xml.sax.helpers.AttributesImpl;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.CharBuffer;
 import java.util.Arrays;
-import java.util.EmptyStackException;
 import java.util.List;
-import java.util.Stack;
+import java.util.function.Supplier;
 
 /**
  * This class is designed to look like a SAX2-compliant XML parser; however,
@@ -32,12 +32,22 @@ public class GedcomParser implements XMLReader, Locator {
     );
 
     private ContentHandler contentHandler;
+    private GedcomHandler gedcomHandler;
     private ErrorHandler errorHandler;
+    private GedcomDiagnosticHandler diagnosticHandler;
     private AttributesImpl emptyAttList = new AttributesImpl();
     private AttributesImpl attList = new AttributesImpl();
     private EntityResolver entityResolver = null;
     private String systemId;
     private int lineNr;
+    private boolean pipelined = false;
+    private boolean reportErrors = true;
+    private GedcomProjection projection = null;
+    private GedcomReaderLexer readerLexer = null;
+    // tags of the open lines; its size is the level of the next line
+    private final FrameStack<String> stack = new FrameStack<String>();
+    // upper-case forms of the tags the projection is asked about
+    private final LocalTagTable tags = new LocalTagTable();
 
     /**
      * Set the ContentHandler
@@ -55,6 +65,33 @@ public class GedcomParser implements XMLReader, Locator {
         return contentHandler;
     }
 
+    /**
+     * Set a handler to receive the lines of the file directly, without SAX events.
+     * If set, it is used instead of the ContentHandler.
+     */
+    public void setGedcomHandler(GedcomHandler handler) {
+        gedcomHandler = handler;
+    }
+
+    /**
+     * Get the GedcomHandler
+     */
+    public GedcomHandler getGedcomHandler() {
+        return gedcomHandler;
+    }
+
+    /**
+     * Set whether to lex the input on a separate thread, so decoding and tokenizing lines overlaps with handling them.
+     * Worth it for encodings that are expensive to decode, such as ANSEL and UTF-16, when a second core is available.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
     /**
      * Set the entityResolver.
      * This call has no effect, because entities are not used in GEDCOM files.
@@ -100,48 +137,57 @@ public class GedcomParser implements XMLReader, Locator {
         return errorHandler;
     }
 
-    private static String readCorrectedCharsetName(InputStream is) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(is));
-        return readCorrectedCharsetName(in);
-    }
-
-    private static String readCorrectedCharsetName(BufferedReader in) throws IOException {
-        // We will only try to read the first 100 lines of
-        // the file attempting to get the char encoding.
-        String line;
-        String generatorName = null;
-        String encoding = null;
-        String version = null;
-        for (int i = 0; i < 100; i++) {
-            line = in.readLine();
-            if (line != null) {
-                String[] split = line.trim().split("\\s+", 3);
-                if (split.length == 3) {
-                    if (generatorName == null &&
-                            split[0].equals("1") &&
-                            split[1].equals("SOUR")) {
-                        generatorName = split[2];
-                    } else if (split[0].equals("1") &&
-                            (split[1].equals("CHAR") || split[1].equals("CHARACTER"))) {
-                        // get encoding
-                        encoding = split[2].toUpperCase();
-                        // look for version
-                        line = in.readLine();
-                        if (line != null) {
-                            split = line.trim().split("\\s+", 3);
-                            if (split.length == 3 && split[0].equals("2") && split[1].equals("VERS")) {
-                                version = split[2];
-                            }
-                        }
-                    }
-                }
-            }
-            if (generatorName != null && encoding != null) {
-                break; // got what we need
-            }
-        }
+    /**
+     * Set a handler to receive recoverable errors as codes rather than as SAXParseExceptions.
+     * If set, it is used instead of the ErrorHandler for them.
+     */
+    public void setDiagnosticHandler(GedcomDiagnosticHandler handler) {
+        diagnosticHandler = handler;
+    }
 
-        return getCorrectedCharsetName(generatorName, encoding, version);
+    /**
+     * Get the GedcomDiagnosticHandler
+     */
+    public GedcomDiagnosticHandler getDiagnosticHandler() {
+        return diagnosticHandler;
+    }
+
+    /**
+     * Set whether to report recoverable errors, such as lines that are not standard, to the error handler.
+     * When false their messages are never built.  Fatal errors are always reported.
+     */
+    public void setReportErrors(boolean reportErrors) {
+        this.reportErrors = reportErrors;
+    }
+
+    /**
+     * Set the records and fields to pass to the handler; lines outside the projection and the lines below them
+     * are skipped without decoding their values.  Null, the default, passes every line.
+     */
+    public void setProjection(GedcomProjection projection) {
+        this.projection = projection;
+    }
+
+    public GedcomProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Return this parser to the state it was in when it was constructed, clearing its handlers and settings
+     * but keeping its buffers, so it can parse another file.
+     */
+    public void reset() {
+        contentHandler = null;
+        gedcomHandler = null;
+        errorHandler = null;
+        diagnosticHandler = null;
+        entityResolver = null;
+        systemId = null;
+        lineNr = 0;
+        pipelined = false;
+        reportErrors = true;
+        projection = null;
+        tags.clear();
     }
 
     public static String getCorrectedCharsetName(String generatorName, String encoding, String version) {
@@ -190,55 +236,15 @@ public class GedcomParser implements XMLReader, Locator {
         return encoding;
     }
 
-    private BufferedReader getBufferedReader(InputStream in) throws IOException {
+    static BufferedReader getBufferedReader(InputStream in) throws IOException {
         if (!in.markSupported()) {
             in = new BufferedInputStream(in);
         }
-        in.mark(Integer.MAX_VALUE);
-
-        String charEncoding = readCorrectedCharsetName(in);
-        in.reset();
-
-        if (charEncoding.length() == 0) {
-            // Let's try again with a UTF-16 reader.
-            BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-16"));
-            charEncoding = readCorrectedCharsetName(br);
-            in.reset();
-
-            if (charEncoding.equals("UTF-16")) {
-                // skip over junk at the beginning of the file
-                InputStreamReader reader = new InputStreamReader(in, "UTF-16");
-                int cnt = 0;
-                int c;
-                while ((c = reader.read()) != '0' && c != -1) {
-                    cnt++;
-                }
-
-                in.reset();
-                reader = new InputStreamReader(in, "UTF-16");
-                for (int i = 0; i < cnt; i++) {
-                    reader.read();
-                }
-                return new BufferedReader(reader);
-            }
-        }
-
-        if (charEncoding.length() == 0) {
-            charEncoding = "ANSEL"; // default
-        }
+        GedcomCharsetSniffer sniffer = GedcomCharsetSniffer.sniff(in);
+        String charEncoding = sniffer.getCharsetName();
 
         // skip over junk at the beginning of the file
-        in.reset();
-        int cnt = 0;
-        int c;
-        while ((c = in.read()) != '0' && c != -1) {
-            cnt++;
-        }
-
-        in.reset();
-        for (int i = 0; i < cnt; i++) {
-            in.read();
-        }
+        sniffer.skipJunk(in);
 
         InputStreamReader reader;
         if (charEncoding.equals("ANSEL")) {
@@ -275,6 +281,20 @@ public class GedcomParser implements XMLReader, Locator {
         parse(is);
     }
 
+    /**
+     * Parse input from the supplied File.  Files in ANSEL, UTF-8 and other ASCII-compatible encodings are
+     * memory-mapped and lexed as bytes; other files are read as an InputStream.
+     */
+    public void parse(File file) throws IOException, SAXParseException {
+        this.systemId = file.toURI().toString();
+        GedcomByteLexer lexer = GedcomByteLexer.open(file);
+        if (lexer != null) {
+            parse(lexer);
+        } else {
+            parse(new FileInputStream(file));
+        }
+    }
+
     /**
      * Parse input from the supplied InputStream
      */
@@ -293,77 +313,96 @@ public class GedcomParser implements XMLReader, Locator {
     }
 
     private void parse(BufferedReader reader) throws IOException, SAXParseException {
-        String line;
+        // reuse the lexer's line buffer from one parse to the next
+        if (readerLexer == null) {
+            readerLexer = new GedcomReaderLexer(reader);
+        } else {
+            readerLexer.reset(reader);
+        }
+        parse(readerLexer);
+    }
+
+    /**
+     * Parse the lines returned by the supplied lexer
+     */
+    public void parse(GedcomLexer lexer) throws IOException, SAXParseException {
+        if (pipelined && !(lexer instanceof PipelinedGedcomLexer)) {
+            lexer = new PipelinedGedcomLexer(lexer);
+        }
         int thisLevel;
-        int prevLevel = -1;
-        String iden, tag, xref, valu;
         lineNr = 0;
-        Stack<String> stack = new Stack<String>();
-        stack.push("GED");
-        StringBuilder buf = new StringBuilder();
+        stack.clear();
+        // the projection node of each open level, and the level of the line whose subtree is being skipped
+        GedcomProjection.Node[] nodes = new GedcomProjection.Node[16];
+        int skipLevel = -1;
+        GedcomHandler handler = (gedcomHandler != null ? gedcomHandler : new ContentHandlerAdapter());
 
         try {
-            contentHandler.setDocumentLocator(this);
-            contentHandler.startDocument();
-            contentHandler.startElement("", "GED", "GED", emptyAttList);
+            handler.startGedcom(this);
             boolean goodLine = false; // Indicates whether we have found a good line so far in the file.
-            GedcomLineParser lineParser = new GedcomLineParser();
-            while ((line = reader.readLine()) != null) {
-                lineNr++;
-
-                // remove control chars
-                buf.setLength(0);
-                for (int j = 0; j < line.length(); j++) {
-                    char c = line.charAt(j);
-                    if (c >= 32 || c == 9) {
-                        buf.append(c);
-                    }
-                }
-                line = buf.toString();
-
-                if (line.length() > 0) {
-                    // parse the GEDCOM line into five fields: level, iden, tag, xref, value
-                    if (!lineParser.parse(line)) {
-                        if (goodLine) {
-                            errorHandler.error(new SAXParseException("Line does not appear to be standard @ " +
-                                    this.getLineNumber() + " appending content to the last tag started." + line, this));
-                            contentHandler.characters(line.toCharArray(), 0, line.length());
+            while (lexer.nextLine()) {
+                lineNr = lexer.getLineNumber();
+
+                if (!lexer.isEmpty()) {
+                    // the lexer has parsed the GEDCOM line into five fields: level, iden, tag, xref, value
+                    if (!lexer.isStandard()) {
+                        if (skipLevel >= 0) {
+                            // belongs to a skipped line
+                        } else if (goodLine) {
+                            CharBuffer line = lexer.getLine();
+                            if (reportErrors) {
+                                error(GedcomDiagnosticHandler.Code.NONSTANDARD_LINE, () -> "Line does not appear to be standard @ " +
+                                        this.getLineNumber() + " appending content to the last tag started." + line);
+                            }
+                            handler.value(line);
                         } // if we haven't found a good line yet, just skip it
                         if (lineNr > 20 && !goodLine) {
                             break;
                         }
                     } else {
-                        thisLevel = Integer.parseInt(lineParser.getLevel());
-                        tag = lineParser.getTag();
+                        thisLevel = lexer.getLevel();
+                        if (skipLevel >= 0) {
+                            if (thisLevel > skipLevel) {
+                                continue;
+                            }
+                            skipLevel = -1;
+                        }
 
                         // if level is > prevlevel+1, ignore it until it comes back down
-                        if (thisLevel > prevLevel + 1) {
-                            errorHandler.error(new SAXParseException("Level > prevLevel+1 @ " + this.getLineNumber(), this));
-                        } else if (thisLevel < 0) {
-                            errorHandler.error(new SAXParseException("Level < 0 @ " + this.getLineNumber(), this));
-                        } else if (tag == null || tag.length() == 0) {
-                            errorHandler.error(new SAXParseException("Tag not found @ " + this.getLineNumber(), this));
+                        if (thisLevel > stack.size()) {
+                            if (reportErrors) {
+                                error(GedcomDiagnosticHandler.Code.LEVEL_SKIPPED, () -> "Level > prevLevel+1 @ " + this.getLineNumber());
+                            }
                         } else {
-                            iden = lineParser.getID();
-                            xref = lineParser.getXRef();
-                            valu = lineParser.getValue();
-
                             // insert any necessary closing tags
-                            while (thisLevel <= prevLevel) {
-                                String endtag = stack.pop();
-                                contentHandler.endElement("", endtag, endtag);
-                                prevLevel--;
+                            while (stack.size() > thisLevel) {
+                                handler.endTag(stack.size() - 1, stack.pop());
                             }
-                            attList.clear();
-                            if (iden != null && iden.length() > 0) attList.addAttribute("", "ID", "ID", "ID", iden);
-                            if (xref != null && xref.length() > 0)
-                                attList.addAttribute("", "REF", "REF", "IDREF", xref);
-                            contentHandler.startElement("", tag, tag, attList);
+                            String tag = lexer.getTag();
+                            if (projection != null) {
+                                String tagUpper = tags.toUpperCase(tag);
+                                GedcomProjection.Node node = (thisLevel == 0 ? projection.getRoot() : nodes[thisLevel - 1]).child(tagUpper);
+                                if (node == null && thisLevel > 0 && (tagUpper.equals("CONC") || tagUpper.equals("CONT"))) {
+                                    node = GedcomProjection.ALL;
+                                }
+                                if (node == null) {
+                                    goodLine = true;
+                                    skipLevel = thisLevel;
+                                    continue;
+                                }
+                                if (thisLevel >= nodes.length) {
+                                    nodes = Arrays.copyOf(nodes, thisLevel * 2);
+                                }
+                                nodes[thisLevel] = node;
+                            }
+                            handler.startTag(thisLevel, tag, lexer.getID(), lexer.getXRef());
                             goodLine = true;
                             stack.push(tag);
-                            prevLevel = thisLevel;
-                            if (valu != null && valu.length() > 0) {
-                                contentHandler.characters(valu.toCharArray(), 0, valu.length());
+                            if (lexer.hasValue()) {
+                                CharBuffer valu = lexer.getValue();
+                                if (valu.hasRemaining()) {
+                                    handler.value(valu);
+                                }
                             }
                         }
                     }
@@ -373,8 +412,7 @@ public class GedcomParser implements XMLReader, Locator {
             if (!goodLine) {
                 throw new SAXParseException("no good lines found in the first 20 lines ", this);
             }
-            contentHandler.endElement("", "GED", "GED");
-            contentHandler.endDocument();
+            handler.endGedcom();
         } catch (SAXException e) {
             SAXParseException err = new SAXParseException("SAXException: " + e.getMessage(), this);
             try {
@@ -383,19 +421,59 @@ public class GedcomParser implements XMLReader, Locator {
                 // ignore
             }
             throw err;
-        } catch (EmptyStackException e) {
-            SAXParseException err = new SAXParseException("EmptyStack: " + e.getMessage(), this);
-            try {
-                errorHandler.fatalError(err);
-            } catch (SAXException e1) {
-                // ignore
-            }
-            throw err;
         } finally {
-            if (reader != null) {
-                reader.close();
+            stack.clear();
+            lexer.close();
+        }
+    }
+
+    /**
+     * Report a recoverable error to the diagnostic handler, or else to the error handler
+     */
+    private void error(GedcomDiagnosticHandler.Code code, Supplier<String> message) throws SAXException {
+        if (diagnosticHandler != null) {
+            diagnosticHandler.diagnostic(code, lineNr, message);
+        }
+        else {
+            errorHandler.error(new SAXParseException(message.get(), this));
+        }
+    }
+
+    /**
+     * Turns GedcomHandler events into SAX events for the ContentHandler
+     */
+    private class ContentHandlerAdapter implements GedcomHandler {
+        public void startGedcom(Locator locator) throws SAXException {
+            contentHandler.setDocumentLocator(locator);
+            contentHandler.startDocument();
+            contentHandler.startElement("", "GED", "GED", emptyAttList);
+        }
+
+        public void startTag(int level, String tag, String id, String ref) throws SAXException {
+            attList.clear();
+            if (id != null && id.length() > 0) attList.addAttribute("", "ID", "ID", "ID", id);
+            if (ref != null && ref.length() > 0)
+                attList.addAttribute("", "REF", "REF", "IDREF", ref);
+            contentHandler.startElement("", tag, tag, attList);
+        }
+
+        public void value(CharBuffer value) throws SAXException {
+            if (value.hasArray()) {
+                contentHandler.characters(value.array(), value.arrayOffset() + value.position(), value.remaining());
+            } else {
+                char[] chars = value.toString().toCharArray();
+                contentHandler.characters(chars, 0, chars.length);
             }
         }
+
+        public void endTag(int level, String tag) throws SAXException {
+            contentHandler.endElement("", tag, tag);
+        }
+
+        public void endGedcom() throws SAXException {
+            contentHandler.endElement("", "GED", "GED");
+            contentHandler.endDocument();
+        }
     }
 
     /**
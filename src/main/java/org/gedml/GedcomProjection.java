@@ -0,0 +1,97 @@
+package org.gedml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The records and fields to keep when parsing, such as <code>INDI: NAME, BIRT/DATE, BIRT/PLAC; FAM: HUSB, WIFE, CHIL</code>.
+ * Records are separated by semicolons.  A record tag on its own keeps whole records; otherwise it is followed by a
+ * colon and a comma-separated list of paths of tags below the record, and the lines on each path are kept along with
+ * everything below the last tag of the path.  Tags are matched without regard to case.
+ *
+ * GedcomParser skips the lines that aren't kept, along with all the lines below them, without decoding their values.
+ * The header and trailer are always kept, as are CONC and CONT lines below a line that is kept.
+ */
+public class GedcomProjection {
+   static final class Node {
+      // null if everything below this node is kept
+      Map<String, Node> children = new HashMap<String, Node>();
+
+      Node child(String tag) {
+         return children == null ? ALL : children.get(tag);
+      }
+   }
+
+   static final Node ALL = new Node();
+   static {
+      ALL.children = null;
+   }
+
+   private final Node root = new Node();
+   private final String spec;
+
+   /**
+    * @throws IllegalArgumentException if spec is empty or has an empty tag
+    */
+   public GedcomProjection(String spec) {
+      this.spec = spec;
+      for (String record : spec.split(";")) {
+         record = record.trim();
+         if (record.length() == 0) {
+            continue;
+         }
+         int colon = record.indexOf(':');
+         String recordTag = tag(colon < 0 ? record : record.substring(0, colon));
+         if (colon < 0 || record.substring(colon + 1).trim().length() == 0) {
+            root.children.put(recordTag, ALL);
+            continue;
+         }
+         Node recordNode = add(root, recordTag);
+         if (recordNode == ALL) {
+            continue;
+         }
+         for (String path : record.substring(colon + 1).split(",")) {
+            Node node = recordNode;
+            String[] tags = path.split("/");
+            for (int i = 0; i < tags.length && node != ALL; i++) {
+               if (i == tags.length - 1) {
+                  node.children.put(tag(tags[i]), ALL);
+               }
+               else {
+                  node = add(node, tag(tags[i]));
+               }
+            }
+         }
+      }
+      if (root.children.isEmpty()) {
+         throw new IllegalArgumentException("Empty projection: " + spec);
+      }
+      root.children.put(TagTable.register("HEAD"), ALL);
+      root.children.put(TagTable.register("TRLR"), ALL);
+   }
+
+   private static Node add(Node parent, String tag) {
+      Node node = parent.children.get(tag);
+      if (node == null) {
+         node = new Node();
+         parent.children.put(tag, node);
+      }
+      return node;
+   }
+
+   private static String tag(String tag) {
+      tag = tag.trim();
+      if (tag.length() == 0) {
+         throw new IllegalArgumentException("Empty tag in projection");
+      }
+      return TagTable.toUpperCase(tag);
+   }
+
+   Node getRoot() {
+      return root;
+   }
+
+   public String toString() {
+      return spec;
+   }
+}
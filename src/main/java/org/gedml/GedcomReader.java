@@ -0,0 +1,212 @@
+package org.gedml;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Pull-style reader over the lines of a GEDCOM file.
+ * Call next() to advance to each line in turn, then read its level, tag, id, xref and value.
+ *
+ * Lines are handled as GedcomParser handles them: lines before the first standard line are skipped, and lines
+ * that are not standard or that jump more than one level deeper are reported to the ErrorHandler and skipped.
+ * Values are only decoded when getValue is called, so skipSubtree can pass over whole records cheaply.
+ */
+public class GedcomReader implements Closeable, Locator {
+   private final GedcomLexer lexer;
+   private ErrorHandler errorHandler = null;
+   private String systemId = null;
+   private int prevLevel = -1;
+   private boolean goodLine = false;
+   // true if the lexer is already positioned on the line next() should return
+   private boolean pending = false;
+   // true once skipSubtree has moved the lexer past the current line, until next() is called
+   private boolean skipped = false;
+   private boolean done = false;
+
+   /**
+    * Read a local file, lexing it as bytes when its encoding allows
+    */
+   public static GedcomReader open(File file) throws IOException {
+      GedcomLexer lexer = GedcomByteLexer.open(file);
+      if (lexer == null) {
+         lexer = new GedcomReaderLexer(GedcomParser.getBufferedReader(new FileInputStream(file)));
+      }
+      GedcomReader reader = new GedcomReader(lexer);
+      reader.systemId = file.toURI().toString();
+      return reader;
+   }
+
+   /**
+    * Read a stream, detecting its character encoding as GedcomParser does
+    */
+   public GedcomReader(InputStream in) throws IOException {
+      this(new GedcomReaderLexer(GedcomParser.getBufferedReader(in)));
+   }
+
+   /**
+    * Read characters; it is assumed that the reader has been initialized with the appropriate character encoding
+    */
+   public GedcomReader(Reader reader) {
+      this(new GedcomReaderLexer(reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader)));
+   }
+
+   public GedcomReader(GedcomLexer lexer) {
+      this.lexer = lexer;
+   }
+
+   public void setErrorHandler(ErrorHandler errorHandler) {
+      this.errorHandler = errorHandler;
+   }
+
+   public ErrorHandler getErrorHandler() {
+      return errorHandler;
+   }
+
+   private void error(String message) throws SAXException {
+      if (errorHandler != null) {
+         errorHandler.error(new SAXParseException(message, this));
+      }
+   }
+
+   /**
+    * Advance to the next line
+    * @return false at the end of the file
+    * @throws SAXParseException if there are no standard lines in the first 20 lines of the file
+    */
+   public boolean next() throws IOException, SAXException {
+      skipped = false;
+      if (pending) {
+         pending = false;
+         prevLevel = lexer.getLevel();
+         return true;
+      }
+      while (!done && lexer.nextLine()) {
+         if (lexer.isEmpty()) {
+            continue;
+         }
+         if (!lexer.isStandard()) {
+            if (goodLine) {
+               error("Line does not appear to be standard @ " + getLineNumber() + " skipping it." + lexer.getLine());
+            } else if (lexer.getLineNumber() > 20) {
+               break;
+            }
+         } else if (lexer.getLevel() > prevLevel + 1) {
+            error("Level > prevLevel+1 @ " + getLineNumber());
+         } else {
+            goodLine = true;
+            prevLevel = lexer.getLevel();
+            return true;
+         }
+      }
+      done = true;
+      if (!goodLine) {
+         throw new SAXParseException("no good lines found in the first 20 lines ", this);
+      }
+      return false;
+   }
+
+   /**
+    * Skip the lines below the current line, without decoding them.
+    * Afterwards, next() advances to the line that follows the current line's subtree.  Finding that line reads past
+    * the current one, so until next() is called, the accessors for the current line throw IllegalStateException.
+    * @throws IllegalStateException if next() hasn't returned a line yet
+    */
+   public void skipSubtree() throws IOException {
+      if (!goodLine) {
+         throw new IllegalStateException("skipSubtree called before next returned a line");
+      }
+      if (pending || done) {
+         return;
+      }
+      int level = prevLevel;
+      skipped = true;
+      while (lexer.nextLine()) {
+         if (lexer.isStandard() && lexer.getLevel() <= level) {
+            pending = true;
+            return;
+         }
+      }
+      done = true;
+   }
+
+   private void checkCurrent() {
+      if (skipped) {
+         throw new IllegalStateException("the current line's subtree was skipped; call next()");
+      }
+   }
+
+   public int getLevel() {
+      checkCurrent();
+      return lexer.getLevel();
+   }
+
+   public String getTag() {
+      checkCurrent();
+      return lexer.getTag();
+   }
+
+   /**
+    * Return the id of the current line, or null
+    */
+   public String getID() {
+      checkCurrent();
+      return lexer.getID();
+   }
+
+   /**
+    * Return the xref of the current line, or null
+    */
+   public String getXRef() {
+      checkCurrent();
+      return lexer.getXRef();
+   }
+
+   /**
+    * Return the value of the current line, or null if it has no value
+    */
+   public String getValue() {
+      checkCurrent();
+      return lexer.hasValue() ? lexer.getValue().toString() : null;
+   }
+
+   /**
+    * Return the value of the current line as a view over the lexer's buffer, which is reused for the next line;
+    * null if the line has no value
+    */
+   public CharBuffer getValueChars() {
+      checkCurrent();
+      return lexer.hasValue() ? lexer.getValue() : null;
+   }
+
+   public void close() throws IOException {
+      done = true;
+      lexer.close();
+   }
+
+   public String getPublicId() {
+      return null;
+   }
+
+   public String getSystemId() {
+      return systemId;
+   }
+
+   public int getLineNumber() {
+      return lexer.getLineNumber();
+   }
+
+   public int getColumnNumber() {
+      return -1;
+   }
+}
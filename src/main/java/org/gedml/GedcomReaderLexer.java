@@ -0,0 +1,106 @@
+package org.gedml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Lexer over a character stream.
+ * It is assumed that the reader has been initialized with the appropriate character encoding.
+ */
+public class GedcomReaderLexer implements GedcomLexer {
+   private BufferedReader reader;
+   private final GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+   private char[] buf = new char[256];
+   private CharBuffer view = CharBuffer.wrap(buf);
+   private int len;
+   private int lineNr = 0;
+   private boolean standard;
+
+   public GedcomReaderLexer(BufferedReader reader) {
+      this.reader = reader;
+   }
+
+   /**
+    * Lex another reader, keeping the line buffer
+    */
+   void reset(BufferedReader reader) {
+      this.reader = reader;
+      tokenizer.getTags().clear();
+      len = 0;
+      lineNr = 0;
+      standard = false;
+   }
+
+   public boolean nextLine() throws IOException {
+      String line = reader.readLine();
+      if (line == null) {
+         return false;
+      }
+      lineNr++;
+
+      // remove control chars
+      if (buf.length < line.length()) {
+         buf = new char[Math.max(line.length(), buf.length * 2)];
+         view = CharBuffer.wrap(buf);
+      }
+      len = 0;
+      for (int j = 0; j < line.length(); j++) {
+         char c = line.charAt(j);
+         if (c >= 32 || c == 9) {
+            buf[len++] = c;
+         }
+      }
+      standard = len > 0 && tokenizer.parse(buf, 0, len);
+      return true;
+   }
+
+   public int getLineNumber() {
+      return lineNr;
+   }
+
+   public boolean isEmpty() {
+      return len == 0;
+   }
+
+   public boolean isStandard() {
+      return standard;
+   }
+
+   public int getLevel() {
+      return tokenizer.getLevel();
+   }
+
+   public String getTag() {
+      return tokenizer.getTag();
+   }
+
+   public String getID() {
+      return tokenizer.getID();
+   }
+
+   public String getXRef() {
+      return tokenizer.getXRef();
+   }
+
+   public boolean hasValue() {
+      return tokenizer.hasValue();
+   }
+
+   public CharBuffer getValue() {
+      view.clear();
+      view.position(tokenizer.getValueStart());
+      view.limit(tokenizer.getValueEnd());
+      return view;
+   }
+
+   public CharBuffer getLine() {
+      view.clear();
+      view.limit(len);
+      return view;
+   }
+
+   public void close() throws IOException {
+      reader.close();
+   }
+}
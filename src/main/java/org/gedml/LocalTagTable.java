@@ -0,0 +1,158 @@
+package org.gedml;
+
+import java.util.Arrays;
+
+/**
+ * The tags of one parse that aren't in TagTable's vocabulary, such as vendor extension tags.
+ * Each lexer and parser owns one and clears it when it is reset, so a file full of distinct custom tags shares
+ * them within its own parse but never fills the table shared by the whole process.
+ * Lookups check TagTable first, so tags in the vocabulary are always returned as TagTable's instances.
+ * Holds at most TagTable.MAX_SIZE tags; after that new tags are returned as fresh Strings.
+ *
+ * Not thread-safe.
+ */
+public final class LocalTagTable {
+   // open-addressing hash of codes + 1; 0 means empty
+   private int[] slots = new int[64];
+   private String[] names = new String[16];
+   private String[] upperNames = new String[16];
+   private int size = 0;
+
+   /**
+    * Return the shared instance of tag
+    */
+   public String intern(String tag) {
+      if (tag == null) {
+         return null;
+      }
+      int code = TagTable.code(tag);
+      if (code >= 0) {
+         return TagTable.name(code);
+      }
+      code = find(tag);
+      return code >= 0 ? names[code] : add(tag);
+   }
+
+   /**
+    * Return the shared instance of the tag in buf[start..end), creating a String only if the tag is new
+    */
+   public String intern(char[] buf, int start, int end) {
+      String name = TagTable.lookup(buf, start, end);
+      if (name != null) {
+         return name;
+      }
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+         hash = 31 * hash + buf[i];
+      }
+      int mask = slots.length - 1;
+      for (int i = TagTable.mix(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+         name = names[slots[i] - 1];
+         if (name.length() == end - start && TagTable.regionMatches(name, buf, start)) {
+            return name;
+         }
+      }
+      return add(new String(buf, start, end - start));
+   }
+
+   /**
+    * Return the shared instance of the ISO-8859-1 tag in buf[start..end), creating a String only if the tag is new
+    */
+   public String intern(byte[] buf, int start, int end) {
+      String name = TagTable.lookup(buf, start, end);
+      if (name != null) {
+         return name;
+      }
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+         hash = 31 * hash + (buf[i] & 0xff);
+      }
+      int mask = slots.length - 1;
+      for (int i = TagTable.mix(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+         name = names[slots[i] - 1];
+         if (name.length() == end - start && TagTable.regionMatches(name, buf, start)) {
+            return name;
+         }
+      }
+      return add(TagTable.latin1(buf, start, end));
+   }
+
+   /**
+    * Return the shared instance of tag in upper case
+    */
+   public String toUpperCase(String tag) {
+      String upper = TagTable.lookupUpperCase(tag);
+      if (upper != null) {
+         return upper;
+      }
+      int code = find(tag);
+      if (code < 0) {
+         add(tag);
+         code = find(tag);
+         if (code < 0) {
+            return TagTable.toUpperCase(tag);
+         }
+      }
+      return upperNames[code];
+   }
+
+   /**
+    * Return the number of tags in this table, not counting the vocabulary
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Forget the tags of the last parse
+    */
+   public void clear() {
+      if (size > 0) {
+         Arrays.fill(slots, 0);
+         Arrays.fill(names, 0, size, null);
+         Arrays.fill(upperNames, 0, size, null);
+         size = 0;
+      }
+   }
+
+   private int find(String tag) {
+      int mask = slots.length - 1;
+      for (int i = TagTable.mix(tag.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+         String name = names[slots[i] - 1];
+         if (name == tag || name.equals(tag)) {
+            return slots[i] - 1;
+         }
+      }
+      return TagTable.NO_CODE;
+   }
+
+   private String add(String tag) {
+      // the upper-case form is in the vocabulary, or else it's kept here too so toUpperCase needn't allocate
+      String upper = TagTable.toUpperCase(tag);
+      if (upper.equals(tag)) {
+         upper = tag;
+      }
+      else if (TagTable.code(upper) == TagTable.NO_CODE) {
+         upper = intern(upper);
+      }
+      if (size >= TagTable.MAX_SIZE) {
+         return tag;
+      }
+      if (size == names.length) {
+         names = Arrays.copyOf(names, size * 2);
+         upperNames = Arrays.copyOf(upperNames, size * 2);
+      }
+      names[size] = tag;
+      upperNames[size] = upper;
+      // keep the hash at most half full
+      if ((size + 1) * 2 > slots.length) {
+         slots = new int[slots.length * 2];
+         for (int c = 0; c < size; c++) {
+            TagTable.put(slots, names[c], c);
+         }
+      }
+      TagTable.put(slots, tag, size);
+      size++;
+      return tag;
+   }
+}
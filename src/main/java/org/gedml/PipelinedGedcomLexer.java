@@ -0,0 +1,302 @@
+package org.gedml;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lexer that runs another lexer on a thread of its own, so decoding and tokenizing lines overlaps with handling them.
+ * The lexer thread copies the lines into batches and publishes them through a bounded ring of batches with a single
+ * producer and a single consumer; when the ring is full the lexer thread waits for the consumer to catch up.
+ * An exception thrown by the underlying lexer is rethrown from nextLine once the lines read before it have been returned.
+ *
+ * getLine returns the text of lines that are not standard; for standard lines it is rebuilt from the fields.
+ */
+public class PipelinedGedcomLexer implements GedcomLexer {
+   public static final int DEFAULT_BATCH_SIZE = 256;
+   public static final int DEFAULT_BATCH_COUNT = 8;
+
+   private static final int EMPTY = 1;
+   private static final int STANDARD = 2;
+   private static final int HAS_VALUE = 4;
+
+   private static class Batch {
+      int size;
+      final int[] lineNumbers;
+      final int[] flags;
+      final int[] levels;
+      final String[] tags, ids, xrefs;
+      // ends of the value (standard lines) or line (other lines) text of each line in chars
+      final int[] ends;
+      char[] chars = new char[4096];
+
+      Batch(int capacity) {
+         lineNumbers = new int[capacity];
+         flags = new int[capacity];
+         levels = new int[capacity];
+         tags = new String[capacity];
+         ids = new String[capacity];
+         xrefs = new String[capacity];
+         ends = new int[capacity];
+      }
+
+      void add(GedcomLexer lexer) {
+         int i = size;
+         int start = (i == 0 ? 0 : ends[i - 1]);
+         lineNumbers[i] = lexer.getLineNumber();
+         CharBuffer text = null;
+         int f;
+         if (lexer.isEmpty()) {
+            f = EMPTY;
+         } else if (lexer.isStandard()) {
+            f = STANDARD;
+            levels[i] = lexer.getLevel();
+            tags[i] = lexer.getTag();
+            ids[i] = lexer.getID();
+            xrefs[i] = lexer.getXRef();
+            if (lexer.hasValue()) {
+               f |= HAS_VALUE;
+               text = lexer.getValue();
+            }
+         } else {
+            f = 0;
+            text = lexer.getLine();
+         }
+         flags[i] = f;
+         if (text != null) {
+            int len = text.remaining();
+            if (start + len > chars.length) {
+               char[] newChars = new char[Math.max(start + len, chars.length * 2)];
+               System.arraycopy(chars, 0, newChars, 0, start);
+               chars = newChars;
+            }
+            text.get(chars, start, len);
+            start += len;
+         }
+         ends[i] = start;
+         size++;
+      }
+
+      void clear() {
+         for (int i = 0; i < size; i++) {
+            tags[i] = ids[i] = xrefs[i] = null;
+         }
+         size = 0;
+      }
+   }
+
+   private final GedcomLexer source;
+   private final Batch[] ring;
+   // number of batches published by the lexer thread and taken by the consumer; only ever increase
+   private volatile long published = 0;
+   private volatile long taken = 0;
+   private volatile boolean finished = false;
+   private volatile boolean closed = false;
+   private volatile Throwable failure = null;
+   private volatile Thread consumer = null;
+   private Thread producer = null;
+
+   // consumer state
+   private Batch batch = null;
+   private int index;
+   private CharBuffer view = CharBuffer.wrap(new char[0]);
+
+   public PipelinedGedcomLexer(GedcomLexer source) {
+      this(source, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_COUNT);
+   }
+
+   /**
+    * @param batchSize number of lines in each batch
+    * @param batchCount number of batches the lexer thread may get ahead of the consumer
+    */
+   public PipelinedGedcomLexer(GedcomLexer source, int batchSize, int batchCount) {
+      if (batchSize < 1 || batchCount < 1) {
+         throw new IllegalArgumentException("batchSize and batchCount must be positive");
+      }
+      this.source = source;
+      ring = new Batch[batchCount];
+      for (int i = 0; i < batchCount; i++) {
+         ring[i] = new Batch(batchSize);
+      }
+   }
+
+   private void start() {
+      consumer = Thread.currentThread();
+      producer = new Thread(new Runnable() {
+         public void run() {
+            produce();
+         }
+      }, "gedcom-lexer");
+      producer.setDaemon(true);
+      producer.start();
+   }
+
+   private void produce() {
+      long next = 0;
+      Batch b = null;
+      try {
+         while (!closed && source.nextLine()) {
+            if (b == null) {
+               // wait for the consumer to hand back the batch
+               while (next - taken >= ring.length && !closed) {
+                  LockSupport.park(this);
+               }
+               if (closed) {
+                  break;
+               }
+               b = ring[(int) (next % ring.length)];
+            }
+            b.add(source);
+            if (b.size == b.lineNumbers.length) {
+               published = ++next;
+               LockSupport.unpark(consumer);
+               b = null;
+            }
+         }
+      } catch (Throwable t) {
+         failure = t;
+      } finally {
+         // publish the lines read before the end of the input or the failure
+         if (b != null && b.size > 0) {
+            published = ++next;
+         }
+         finished = true;
+         LockSupport.unpark(consumer);
+         try {
+            source.close();
+         } catch (IOException e) {
+            if (failure == null) {
+               failure = e;
+            }
+         }
+      }
+   }
+
+   public boolean nextLine() throws IOException {
+      if (batch != null && ++index < batch.size) {
+         return true;
+      }
+      if (producer == null) {
+         if (closed) {
+            return false;
+         }
+         start();
+      }
+      if (batch != null) {
+         batch.clear();
+         batch = null;
+         taken = taken + 1;
+         LockSupport.unpark(producer);
+      }
+      long t = taken;
+      while (published == t) {
+         if (finished && published == t) {
+            Throwable f = failure;
+            if (f == null) {
+               return false;
+            } else if (f instanceof IOException) {
+               throw (IOException) f;
+            } else if (f instanceof RuntimeException) {
+               throw (RuntimeException) f;
+            } else if (f instanceof Error) {
+               throw (Error) f;
+            }
+            throw new IOException(f);
+         }
+         if (closed) {
+            return false;
+         }
+         LockSupport.park(this);
+         if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted waiting for lines");
+         }
+      }
+      batch = ring[(int) (t % ring.length)];
+      index = 0;
+      return true;
+   }
+
+   public int getLineNumber() {
+      return batch == null ? 0 : batch.lineNumbers[index];
+   }
+
+   public boolean isEmpty() {
+      return (batch.flags[index] & EMPTY) != 0;
+   }
+
+   public boolean isStandard() {
+      return (batch.flags[index] & STANDARD) != 0;
+   }
+
+   public int getLevel() {
+      return batch.levels[index];
+   }
+
+   public String getTag() {
+      return batch.tags[index];
+   }
+
+   public String getID() {
+      return batch.ids[index];
+   }
+
+   public String getXRef() {
+      return batch.xrefs[index];
+   }
+
+   public boolean hasValue() {
+      return (batch.flags[index] & HAS_VALUE) != 0;
+   }
+
+   private CharBuffer text() {
+      if (view.array() != batch.chars) {
+         view = CharBuffer.wrap(batch.chars);
+      }
+      view.clear();
+      view.position(index == 0 ? 0 : batch.ends[index - 1]);
+      view.limit(batch.ends[index]);
+      return view;
+   }
+
+   public CharBuffer getValue() {
+      return text();
+   }
+
+   public CharBuffer getLine() {
+      if (!isStandard()) {
+         return text();
+      }
+      StringBuilder line = new StringBuilder();
+      line.append(getLevel());
+      if (getID() != null) {
+         line.append(" @").append(getID()).append('@');
+      }
+      line.append(' ').append(getTag());
+      if (getXRef() != null) {
+         line.append(" @").append(getXRef()).append('@');
+      }
+      if (hasValue()) {
+         line.append(' ').append(text());
+      }
+      return CharBuffer.wrap(line);
+   }
+
+   /**
+    * Stop the lexer thread and wait for it to close the underlying lexer
+    */
+   public void close() throws IOException {
+      closed = true;
+      if (producer == null) {
+         source.close();
+         return;
+      }
+      LockSupport.unpark(producer);
+      try {
+         producer.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted waiting for the lexer thread");
+      }
+   }
+}
@@ -0,0 +1,261 @@
+package org.gedml;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Symbol table of the model's tag names, shared by the lexers, the model parser and the model.
+ * Each registered tag is kept as a single String instance with a compact int code, so a parsed tree holds one copy
+ * of each tag name and tags returned by intern can be compared with ==.
+ *
+ * Only the model's vocabulary is registered, when ModelParser, EventFact and the other classes that know tags are
+ * loaded, so the table never grows while files are parsed.  Other tags are shared within one parse by the
+ * LocalTagTable of the lexer or parser that reads them.  At most MAX_SIZE tags can be registered.
+ * Codes are assigned in the order tags are registered, so they are only stable within one run.
+ *
+ * Lookups read an immutable snapshot of the table and never lock; registering a tag copies the table.
+ */
+public final class TagTable {
+   public static final int MAX_SIZE = 8192;
+   public static final int NO_CODE = -1;
+
+   private static final class Snapshot {
+      // open-addressing hash of codes + 1; 0 means empty
+      final int[] slots;
+      final String[] names;
+      final String[] upperNames;
+      final int size;
+
+      Snapshot(int[] slots, String[] names, String[] upperNames, int size) {
+         this.slots = slots;
+         this.names = names;
+         this.upperNames = upperNames;
+         this.size = size;
+      }
+   }
+
+   private static volatile Snapshot table = new Snapshot(new int[256], new String[64], new String[64], 0);
+   private static volatile boolean full = false;
+
+   private TagTable() {
+   }
+
+   /**
+    * Add tag and its upper-case form to the vocabulary, if there is room, and return the shared instance of tag
+    */
+   public static String register(String tag) {
+      Snapshot t = table;
+      int code = find(t, tag);
+      // once the table is full it never changes, so there's no need to lock
+      return code >= 0 ? t.names[code] : full ? tag : add(tag);
+   }
+
+   /**
+    * Return the shared instance of tag if it's in the vocabulary, or else tag itself
+    */
+   public static String intern(String tag) {
+      if (tag == null) {
+         return null;
+      }
+      Snapshot t = table;
+      int code = find(t, tag);
+      return code >= 0 ? t.names[code] : tag;
+   }
+
+   /**
+    * Return the shared instance of the tag in buf[start..end) if it's in the vocabulary, or else a new String
+    */
+   public static String intern(char[] buf, int start, int end) {
+      String name = lookup(buf, start, end);
+      return name != null ? name : new String(buf, start, end - start);
+   }
+
+   /**
+    * Return the shared instance of the ISO-8859-1 tag in buf[start..end) if it's in the vocabulary, or else a new String
+    */
+   public static String intern(byte[] buf, int start, int end) {
+      String name = lookup(buf, start, end);
+      return name != null ? name : latin1(buf, start, end);
+   }
+
+   /**
+    * Return the code of tag, or NO_CODE if tag is not in the vocabulary
+    */
+   public static int code(String tag) {
+      return find(table, tag);
+   }
+
+   /**
+    * Return the tag with the given code
+    */
+   public static String name(int code) {
+      return table.names[code];
+   }
+
+   /**
+    * Return tag in upper case; the shared instance if the upper-case tag is in the vocabulary
+    */
+   public static String toUpperCase(String tag) {
+      Snapshot t = table;
+      int code = find(t, tag);
+      if (code >= 0) {
+         return t.upperNames[code];
+      }
+      return intern(tag.toUpperCase(Locale.ROOT));
+   }
+
+   /**
+    * Return the number of tags in the vocabulary
+    */
+   public static int size() {
+      return table.size;
+   }
+
+   /**
+    * Return the shared instance of the tag in buf[start..end), or null if it's not in the vocabulary
+    */
+   static String lookup(char[] buf, int start, int end) {
+      Snapshot t = table;
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+         hash = 31 * hash + buf[i];
+      }
+      int mask = t.slots.length - 1;
+      for (int i = mix(hash) & mask; t.slots[i] != 0; i = (i + 1) & mask) {
+         String name = t.names[t.slots[i] - 1];
+         if (name.length() == end - start && regionMatches(name, buf, start)) {
+            return name;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Return the shared instance of the ISO-8859-1 tag in buf[start..end), or null if it's not in the vocabulary
+    */
+   static String lookup(byte[] buf, int start, int end) {
+      Snapshot t = table;
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+         hash = 31 * hash + (buf[i] & 0xff);
+      }
+      int mask = t.slots.length - 1;
+      for (int i = mix(hash) & mask; t.slots[i] != 0; i = (i + 1) & mask) {
+         String name = t.names[t.slots[i] - 1];
+         if (name.length() == end - start && regionMatches(name, buf, start)) {
+            return name;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Return the upper-case instance of tag, or null if tag is not in the vocabulary
+    */
+   static String lookupUpperCase(String tag) {
+      Snapshot t = table;
+      int code = find(t, tag);
+      return code >= 0 ? t.upperNames[code] : null;
+   }
+
+   private static int find(Snapshot t, String tag) {
+      int mask = t.slots.length - 1;
+      for (int i = mix(tag.hashCode()) & mask; t.slots[i] != 0; i = (i + 1) & mask) {
+         String name = t.names[t.slots[i] - 1];
+         if (name == tag || name.equals(tag)) {
+            return t.slots[i] - 1;
+         }
+      }
+      return NO_CODE;
+   }
+
+   private static synchronized String add(String tag) {
+      Snapshot t = table;
+      int code = find(t, tag);
+      if (code >= 0) {
+         return t.names[code];
+      }
+      if (t.size >= MAX_SIZE) {
+         full = true;
+         return tag;
+      }
+      String upper = tag.toUpperCase(Locale.ROOT);
+      if (!upper.equals(tag)) {
+         // make sure the upper-case form has a code of its own, so toUpperCase needn't allocate
+         upper = add(upper);
+         t = table;
+         if (t.size >= MAX_SIZE) {
+            full = true;
+            return tag;
+         }
+      }
+      else {
+         upper = tag;
+      }
+
+      int size = t.size;
+      int capacity = (size == t.names.length ? size * 2 : t.names.length);
+      String[] names = Arrays.copyOf(t.names, capacity);
+      String[] upperNames = Arrays.copyOf(t.upperNames, capacity);
+      names[size] = tag;
+      upperNames[size] = upper;
+      table = new Snapshot(withCode(t.slots, names, size), names, upperNames, size + 1);
+      return tag;
+   }
+
+   /**
+    * Return a copy of slots with code added, grown if the hash would be more than half full; names[code] is its name
+    */
+   private static int[] withCode(int[] slots, String[] names, int code) {
+      if ((code + 1) * 2 > slots.length) {
+         slots = new int[slots.length * 2];
+         for (int c = 0; c < code; c++) {
+            put(slots, names[c], c);
+         }
+      }
+      else {
+         slots = slots.clone();
+      }
+      put(slots, names[code], code);
+      return slots;
+   }
+
+   static void put(int[] slots, String name, int code) {
+      int mask = slots.length - 1;
+      int i = mix(name.hashCode()) & mask;
+      while (slots[i] != 0) {
+         i = (i + 1) & mask;
+      }
+      slots[i] = code + 1;
+   }
+
+   static String latin1(byte[] buf, int start, int end) {
+      char[] chars = new char[end - start];
+      for (int i = start; i < end; i++) {
+         chars[i - start] = (char) (buf[i] & 0xff);
+      }
+      return new String(chars);
+   }
+
+   static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+
+   static boolean regionMatches(String name, char[] buf, int start) {
+      for (int i = 0; i < name.length(); i++) {
+         if (name.charAt(i) != buf[start + i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static boolean regionMatches(String name, byte[] buf, int start) {
+      for (int i = 0; i < name.length(); i++) {
+         if (name.charAt(i) != (char) (buf[start + i] & 0xff)) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
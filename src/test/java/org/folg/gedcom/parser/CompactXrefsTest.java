@@ -0,0 +1,89 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.ChildRef;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.SpouseFamilyRef;
+import org.folg.gedcom.model.XrefTable;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class CompactXrefsTest {
+    private static final String GEDCOM =
+            "0 HEAD\n" +
+            "0 @I1@ INDI\n1 NAME John /Smith/\n1 FAMS @F1@\n" +
+            "0 @I2@ INDI\n1 NAME Mary /Jones/\n1 FAMS @F1@\n" +
+            "0 @I3@ INDI\n1 FAMC @F1@\n1 FAMC @F9@\n" +
+            "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n" +
+            "0 TRLR\n";
+
+    private static ModelParser parser(boolean compact) {
+        ModelParser modelParser = new ModelParser();
+        modelParser.setErrorHandler(new ParallelModelParserTest.RecordingErrorHandler());
+        modelParser.setCompactXrefs(compact);
+        return modelParser;
+    }
+
+    @Test
+    public void testHandles() throws Exception {
+        Gedcom gedcom = parser(true).parseGedcom(new StringReader(GEDCOM));
+        XrefTable xrefs = gedcom.getXrefTable();
+        assertEquals(xrefs.size(), 5);
+
+        Person child = gedcom.getPerson("I3");
+        Family family = gedcom.getFamily("F1");
+        ChildRef childRef = family.getChildRefs().get(0);
+        // each xref is stored once
+        assertSame(childRef.getRef(), child.getId());
+        assertSame(child.getParentFamilyRefs().get(0).getRef(), family.getId());
+
+        assertSame(childRef.getPerson(gedcom), child);
+        assertSame(family.getHusbandRefs().get(0).getPerson(gedcom), gedcom.getPerson("I1"));
+        assertSame(child.getParentFamilyRefs().get(0).getFamily(gedcom), family);
+        assertNull(child.getParentFamilyRefs().get(1).getFamily(gedcom));
+        // an xref that names a person doesn't resolve to a family
+        SpouseFamilyRef wrongType = new SpouseFamilyRef();
+        wrongType.setRef("I1", xrefs);
+        assertNull(wrongType.getFamily(gedcom));
+
+        // a ref set by string resolves through the table too
+        SpouseFamilyRef byString = new SpouseFamilyRef();
+        byString.setRef(new String("F1"));
+        assertSame(byString.getFamily(gedcom), family);
+
+        // records added later are resolved too
+        Person added = new Person();
+        added.setId("I4");
+        gedcom.addPerson(added);
+        ChildRef addedRef = new ChildRef();
+        addedRef.setRef("I4", xrefs);
+        assertSame(addedRef.getPerson(gedcom), added);
+        gedcom.removePerson(added);
+        assertNull(addedRef.getPerson(gedcom));
+    }
+
+    @Test
+    public void testSameAsStrings() throws Exception {
+        URL url = this.getClass().getClassLoader().getResource("Case002-ReferenceIntegrity.ged");
+        File file = new File(url.toURI());
+        Gedcom expected = parser(false).parseGedcom(file);
+        Gedcom actual = parser(true).parseGedcom(file);
+        assertNull(expected.getXrefTable());
+        assertTrue(actual.getXrefTable().size() > 0);
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(actual), jsonParser.toJson(expected));
+
+        actual.updateReferences();
+        expected.updateReferences();
+        assertEquals(jsonParser.toJson(actual), jsonParser.toJson(expected));
+    }
+}
@@ -0,0 +1,76 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomTag;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks that long runs of CONC and CONT lines are put together correctly, and each into one String.
+ */
+public class ContinuationLinesTest {
+    private static final String LINE = "The quick brown fox jumps over the lazy dog, again and again";
+
+    private static String note(int lines) {
+        StringBuilder buf = new StringBuilder("0 HEAD\n0 @N1@ NOTE ").append(LINE).append('\n');
+        for (int i = 1; i < lines; i++) {
+            buf.append(i % 2 == 0 ? "1 CONC " : "1 CONT ").append(LINE).append('\n');
+        }
+        buf.append("0 @I1@ INDI\n1 _CUSTOM first\n").append(LINE).append('\n').append(LINE).append("\n0 TRLR\n");
+        return buf.toString();
+    }
+
+    private static void parseModel(String gedcom, int lines) throws Exception {
+        ModelParser modelParser = new ModelParser();
+        modelParser.setErrorHandler(new ParallelModelParserTest.RecordingErrorHandler());
+        Gedcom parsed = modelParser.parseGedcom(new StringReader(gedcom));
+        String value = parsed.getNotes().get(0).getValue();
+        // every CONT line adds a newline
+        assertEquals(value.length(), lines * LINE.length() + lines / 2);
+        assertTrue(value.startsWith(LINE + "\n" + LINE + LINE + "\n"));
+    }
+
+    private static void parseTree(String gedcom) throws Exception {
+        TreeParser treeParser = new TreeParser();
+        treeParser.setErrorHandler(new ParallelModelParserTest.RecordingErrorHandler());
+        List<GedcomTag> tags = treeParser.parseGedcom(new StringReader(gedcom));
+        GedcomTag custom = tags.get(2).getChildren().get(0);
+        assertEquals(custom.getValue(), "first" + LINE + LINE);
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        parseModel(note(5), 5);
+        parseTree(note(5));
+
+        Gedcom gedcom = new ModelParser().parseGedcom(new StringReader(
+                "0 HEAD\n0 @I1@ INDI\n1 NOTE a\n2 CONC b\n2 CONT c\n1 NAME x\n2 GIVN y\n3 CONC z\n" +
+                "0 @F1@ FAM\n1 _TAG p\n2 CONC q\n2 CONT r\n0 TRLR\n"));
+        assertEquals(gedcom.getPeople().get(0).getNotes().get(0).getValue(), "ab\nc");
+        assertEquals(gedcom.getPeople().get(0).getNames().get(0).getGiven(), "yz");
+    }
+
+    private static long valuesBuilt(int lines) throws Exception {
+        ValuePool pool = new ValuePool();
+        pool.setPolicy("Value", ValuePool.Policy.ALL);
+        ModelParser modelParser = new ModelParser();
+        modelParser.setValuePool(pool);
+        Gedcom parsed = modelParser.parseGedcom(new StringReader(note(lines)));
+        assertEquals(parsed.getNotes().get(0).getValue().length(), lines * LINE.length() + lines / 2);
+        return pool.getHits("Value") + pool.getMisses("Value");
+    }
+
+    @Test
+    public void testValueBuiltOnce() throws Exception {
+        // each value is made into a String once, however many lines it spans, rather than once for every line
+        // appended to it
+        long built = valuesBuilt(10);
+        assertTrue(built <= 3, "built " + built);
+        assertEquals(valuesBuilt(20000), built);
+    }
+}
@@ -0,0 +1,51 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.GedcomTag;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class FieldRefTest {
+
+    @Test
+    public void testSetGetAppend() throws Exception {
+        Name name = new Name();
+        FieldRef fieldRef = new FieldRef(name, "Value");
+        fieldRef.setValue("John ");
+        fieldRef.appendValue("/Smith/");
+        assertEquals(name.getValue(), "John /Smith/");
+        assertEquals(fieldRef.getValue(), "John /Smith/");
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        Person person = new Person();
+        FieldRef fieldRef = new FieldRef(person, "ReferenceNumber");
+        fieldRef.appendValue("1");
+        fieldRef.appendValue("2");
+        assertEquals(person.getReferenceNumbers(), Arrays.asList("1", "2"));
+    }
+
+    @Test
+    public void testMissingField() throws Exception {
+        // GedcomTag has setValue/getValue but no setNoSuchField
+        FieldRef fieldRef = new FieldRef(new GedcomTag(null, "_X", null), "NoSuchField");
+        try {
+            fieldRef.setValue("x");
+            fail("expected NoSuchMethodException");
+        } catch (NoSuchMethodException e) {
+            assertEquals(e.getMessage(), "org.folg.gedcom.model.GedcomTag.NoSuchField");
+        }
+        try {
+            fieldRef.appendValue("x");
+            fail("expected NoSuchMethodException");
+        } catch (NoSuchMethodException e) {
+            // expected
+        }
+    }
+}
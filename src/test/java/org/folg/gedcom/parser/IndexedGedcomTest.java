@@ -0,0 +1,154 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.FrozenGedcom;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class IndexedGedcomTest {
+
+    private static Gedcom copy(Gedcom gedcom) {
+        Gedcom copy = new Gedcom();
+        copy.setHeader(gedcom.getHeader());
+        copy.setSubmission(gedcom.getSubmission());
+        copy.setPeople(new ArrayList<>(gedcom.getPeople()));
+        copy.setFamilies(new ArrayList<>(gedcom.getFamilies()));
+        copy.setMedia(new ArrayList<>(gedcom.getMedia()));
+        copy.setNotes(new ArrayList<>(gedcom.getNotes()));
+        copy.setSources(new ArrayList<>(gedcom.getSources()));
+        copy.setRepositories(new ArrayList<>(gedcom.getRepositories()));
+        copy.setSubmitters(new ArrayList<>(gedcom.getSubmitters()));
+        return copy;
+    }
+
+    private File getFile(String name) throws Exception {
+        URL url = this.getClass().getClassLoader().getResource(name);
+        return new File(url.toURI());
+    }
+
+    @Test
+    public void testSameAsFullParse() throws Exception {
+        for (String name : new String[] {"Case001-AddressStructure.ged", "Case002-ReferenceIntegrity.ged"}) {
+            File file = getFile(name);
+            Gedcom expected = new ModelParser().parseGedcom(file);
+            IndexedGedcom indexed = new IndexedGedcom(file, 2, null);
+            JsonParser jsonParser = new JsonParser();
+            assertEquals(jsonParser.toJson(copy(indexed)), jsonParser.toJson(copy(expected)), name);
+            assertTrue(indexed.getCacheSize() <= 2);
+        }
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        File file = File.createTempFile("indexed", ".ged");
+        try {
+            Files.write(file.toPath(), ("0 HEAD\r\n1 CHAR UTF-8\r\n" +
+                    "0 @I1@ INDI\r\n1 NAME Jöhn /Smith/\r\n1 FAMS @F1@\r\n" +
+                    "0 @I2@ INDI\r\n1 NAME Mary /Jones/\r\n2 NOTE one\r\n3 CONT two\r\n" +
+                    "0 @F1@ FAM\r\n1 HUSB @I1@\r\n1 WIFE @I2@\r\n" +
+                    "0 @P1@ _PLAC Somewhere\r\n" +
+                    "0 TRLR\r\n").getBytes(StandardCharsets.UTF_8));
+            ParallelModelParserTest.RecordingErrorHandler errors = new ParallelModelParserTest.RecordingErrorHandler();
+            IndexedGedcom gedcom = new IndexedGedcom(file, 1, errors);
+            assertEquals(gedcom.getHeader().getCharacterSet().getValue(), "UTF-8");
+            assertEquals(gedcom.getCacheSize(), 0);
+            assertEquals(gedcom.getPeople().size(), 2);
+            assertEquals(gedcom.getFamilies().size(), 1);
+
+            Person person = gedcom.getPerson("I2");
+            assertEquals(person.getNames().get(0).getValue(), "Mary /Jones/");
+            assertEquals(person.getNames().get(0).getNotes().get(0).getValue(), "one\ntwo");
+            assertSame(gedcom.getPerson("I2"), person);
+            assertEquals(gedcom.getPerson("I1").getNames().get(0).getValue(), "Jöhn /Smith/");
+            // evicted
+            assertEquals(gedcom.getCacheSize(), 1);
+            assertTrue(gedcom.getPerson("I2") != person);
+
+            assertEquals(gedcom.getFamily("F1").getWifeRefs().get(0).getRef(), "I2");
+            assertNull(gedcom.getFamily("I1"));
+            assertNull(gedcom.getPerson("P1"));
+            assertNull(gedcom.getPerson("X"));
+            assertTrue(errors.messages.isEmpty(), errors.messages.toString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRepeatedIds() throws Exception {
+        File file = File.createTempFile("indexed", ".ged");
+        try {
+            Files.write(file.toPath(), ("0 HEAD\n1 CHAR UTF-8\n" +
+                    "0 @I1@ INDI\n1 NAME First /Smith/\n" +
+                    "0 @X1@ FAM\n1 HUSB @I1@\n" +
+                    "0 @I1@ INDI\n1 NAME Second /Smith/\n" +
+                    "0 @X1@ INDI\n1 NAME Third /Smith/\n" +
+                    "0 TRLR\n").getBytes(StandardCharsets.UTF_8));
+            Gedcom expected = new ModelParser().parseGedcom(file);
+            IndexedGedcom indexed = new IndexedGedcom(file, 10, null);
+            JsonParser jsonParser = new JsonParser();
+            assertEquals(jsonParser.toJson(copy(indexed)), jsonParser.toJson(copy(expected)));
+            assertEquals(indexed.getPeople().size(), 3);
+            for (String id : new String[] {"I1", "X1"}) {
+                assertEquals(indexed.getPerson(id).getNames().get(0).getValue(),
+                        expected.getPerson(id).getNames().get(0).getValue(), id);
+            }
+            assertEquals(indexed.getPerson("I1").getNames().get(0).getValue(), "Second /Smith/");
+            assertEquals(indexed.getFamily("X1").getHusbandRefs().get(0).getRef(), "I1");
+            assertEquals(expected.getFamily("X1").getHusbandRefs().get(0).getRef(), "I1");
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testReadOnly() throws Exception {
+        new IndexedGedcom(getFile("Case001-AddressStructure.ged")).addPerson(new Person());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testUpdateReferencesUnsupported() throws Exception {
+        new IndexedGedcom(getFile("Case002-ReferenceIntegrity.ged")).updateReferences();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testParallelUpdateReferencesUnsupported() throws Exception {
+        new IndexedGedcom(getFile("Case002-ReferenceIntegrity.ged")).updateReferences(null, 2);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testPutExtensionUnsupported() throws Exception {
+        new IndexedGedcom(getFile("Case001-AddressStructure.ged")).putExtension("key", "value");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetExtensionsUnsupported() throws Exception {
+        new IndexedGedcom(getFile("Case001-AddressStructure.ged")).setExtensions(new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        File file = getFile("Case002-ReferenceIntegrity.ged");
+        IndexedGedcom indexed = new IndexedGedcom(file, 1, null);
+        FrozenGedcom frozen = indexed.freeze();
+        assertTrue(indexed.getCacheSize() <= 1);
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(copy(frozen)), jsonParser.toJson(copy(new ModelParser().parseGedcom(file))));
+        // the snapshot keeps its records however the cache changes
+        Person person = frozen.getPeople().get(0);
+        indexed.getPeople().get(indexed.getPeople().size() - 1);
+        assertSame(frozen.getPeople().get(0), person);
+    }
+}
@@ -149,4 +149,75 @@ public class ModelParserTest {
     assertNotNull(gedcom);
   }
 
+  @Test
+  public void testParse_pipelined() throws Exception {
+    URL gedcomUrl = this.getClass().getClassLoader().getResource("Case002-ReferenceIntegrity.ged");
+    JsonParser jsonParser = new JsonParser();
+    String expected = jsonParser.toJson(new ModelParser().parseGedcom(gedcomUrl.openStream()));
+
+    ModelParser modelParser = new ModelParser();
+    modelParser.setPipelined(true);
+    assertEquals(jsonParser.toJson(modelParser.parseGedcom(gedcomUrl.openStream())), expected);
+    modelParser = new ModelParser();
+    modelParser.setPipelined(true);
+    assertEquals(jsonParser.toJson(modelParser.parseGedcom(new File(gedcomUrl.toURI()))), expected);
+  }
+
+  @Test
+  public void testTagDispatch() throws Exception {
+    Gedcom gedcom = new ModelParser().parseGedcom(new java.io.StringReader(
+        "0 HEAD\n0 @I1@ INDI\n1 TITL Sir\n1 birt\n2 DATE 1900\n1 DEAT\n2 CAUS fever\n1 _CUSTOM x\n" +
+        "0 @F1@ FAM\n1 MARR\n1 TITL not a family event\n0 @S1@ SOUR\n1 TITL Census\n0 TRLR\n"));
+    Person person = gedcom.getPeople().get(0);
+    assertEquals(person.getEventsFacts().size(), 3);
+    assertEquals(person.getEventsFacts().get(0).getTag(), "TITL");
+    assertEquals(person.getEventsFacts().get(0).getValue(), "Sir");
+    assertEquals(person.getEventsFacts().get(1).getTag(), "birt");
+    assertEquals(person.getEventsFacts().get(1).getDate(), "1900");
+    assertEquals(person.getEventsFacts().get(2).getCause(), "fever");
+    assertNotNull(person.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY));
+    Family family = gedcom.getFamilies().get(0);
+    assertEquals(family.getEventsFacts().size(), 1);
+    assertNotNull(family.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY));
+    assertEquals(gedcom.getSources().get(0).getTitle(), "Census");
+  }
+
+  @Test
+  public void testDiagnosticThreshold() throws Exception {
+    String ged = "0 HEAD\n0 @I1@ INDI\n1 _CUSTOM x\nnot standard\n3 DATE too deep\n1 NAME John\n0 TRLR\n";
+    final java.util.List<String> diagnostics = new java.util.ArrayList<String>();
+    ErrorHandler errorsOnly = new ErrorHandler() {
+      public void warning(String message, int lineNumber) {
+        diagnostics.add("warning " + message);
+      }
+      public void error(String message, int lineNumber) {
+        diagnostics.add("error " + message);
+      }
+      public void fatalError(String message, int lineNumber) {
+        diagnostics.add("fatal " + message);
+      }
+      public Level getThreshold() {
+        return Level.ERROR;
+      }
+      public void diagnostic(Level level, Code code, int lineNumber, java.util.function.Supplier<String> message) {
+        diagnostics.add(level + " " + code + " @" + lineNumber);
+      }
+    };
+    ModelParser modelParser = new ModelParser();
+    modelParser.setErrorHandler(errorsOnly);
+    modelParser.parseGedcom(new java.io.StringReader(ged));
+    assertEquals(diagnostics, java.util.Arrays.asList("ERROR NONSTANDARD_LINE @4", "ERROR LEVEL_SKIPPED @5"));
+
+    // the default passes everything on to warning, error and fatalError
+    diagnostics.clear();
+    modelParser = new ModelParser();
+    modelParser.setErrorHandler(new ParallelModelParserTest.RecordingErrorHandler() {
+      public void warning(String message, int lineNumber) {
+        diagnostics.add("warning " + message + " @" + lineNumber);
+      }
+    });
+    modelParser.parseGedcom(new java.io.StringReader(ged));
+    assertEquals(diagnostics, java.util.Arrays.asList("warning Tag added as extension: INDI _CUSTOM @3"));
+  }
+
 }
@@ -0,0 +1,118 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Gedcom;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelModelParserTest {
+
+    static class RecordingErrorHandler implements ErrorHandler {
+        final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public void warning(String message, int lineNumber) {
+            messages.add("warning " + message + " @ " + lineNumber);
+        }
+
+        @Override
+        public void error(String message, int lineNumber) {
+            messages.add("error " + message + " @ " + lineNumber);
+        }
+
+        @Override
+        public void fatalError(String message, int lineNumber) {
+            messages.add("fatal " + message + " @ " + lineNumber);
+        }
+    }
+
+    private static void assertSameAsSingleThreaded(File file) throws Exception {
+        RecordingErrorHandler expectedErrors = new RecordingErrorHandler();
+        ModelParser modelParser = new ModelParser();
+        modelParser.setErrorHandler(expectedErrors);
+        Gedcom expected = modelParser.parseGedcom(file);
+
+        RecordingErrorHandler actualErrors = new RecordingErrorHandler();
+        modelParser = new ModelParser();
+        modelParser.setErrorHandler(actualErrors);
+        // split into chunks of a record or two
+        Gedcom actual = ParallelModelParser.parse(modelParser, file, 4, 1);
+        assertNotNull(actual, "parsed in parallel");
+
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(actual), jsonParser.toJson(expected));
+        assertEquals(actualErrors.messages, expectedErrors.messages);
+    }
+
+    private File getFile(String name) throws Exception {
+        URL url = this.getClass().getClassLoader().getResource(name);
+        return new File(url.toURI());
+    }
+
+    private static File write(String gedcom) throws Exception {
+        File file = File.createTempFile("parallel", ".ged");
+        file.deleteOnExit();
+        Files.write(file.toPath(), gedcom.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testSameAsSingleThreaded_withResources() throws Exception {
+        assertSameAsSingleThreaded(getFile("Case001-AddressStructure.ged"));
+        assertSameAsSingleThreaded(getFile("Case002-ReferenceIntegrity.ged"));
+    }
+
+    @Test
+    public void testSameAsSingleThreaded_withErrors() throws Exception {
+        StringBuilder buf = new StringBuilder("0 HEAD\r\n1 CHAR UTF-8\r\n1 SOUR Test\r\n");
+        for (int i = 1; i <= 500; i++) {
+            buf.append("0 @I").append(i).append("@ INDI\r\n");
+            buf.append("1 NAME Person /Nr").append(i).append("/\r\n");
+            if (i % 7 == 0) {
+                buf.append("3 DATE too deep\r\n");
+            }
+            if (i % 11 == 0) {
+                buf.append("1 _CUSTOM extension ").append(i).append("\n");
+            }
+            if (i % 13 == 0) {
+                buf.append("not a standard line\r");
+            }
+            buf.append("1 FAMS @F").append(i).append("@\r\n");
+            buf.append("0 @F").append(i).append("@ FAM\r\n1 HUSB @I").append(i).append("@\r\n");
+            if (i % 17 == 0) {
+                buf.append("0 _LEVEL0 record level extension\r\n1 _SUB value\r\n");
+            }
+        }
+        buf.append("0 TRLR\r\n");
+        File file = write(buf.toString());
+        assertSameAsSingleThreaded(file);
+
+        ModelParser modelParser = new ModelParser();
+        modelParser.setParallelism(4);
+        Gedcom gedcom = modelParser.parseGedcom(file);
+        assertEquals(gedcom.getPeople().size(), 500);
+        assertEquals(gedcom.getFamilies().get(499).getId(), "F500");
+    }
+
+    @Test
+    public void testFallsBackWithSecondHeader() throws Exception {
+        File file = write("0 HEAD\n1 CHAR UTF-8\n0 @I1@ INDI\n0 HEAD\n1 SOUR Second\n0 @I2@ INDI\n0 TRLR\n");
+        assertNull(ParallelModelParser.parse(new ModelParser(), file, 4, 1));
+
+        ModelParser modelParser = new ModelParser();
+        modelParser.setParallelism(4);
+        Gedcom gedcom = modelParser.parseGedcom(file);
+        assertEquals(gedcom.getPeople().size(), 2);
+        assertTrue(gedcom.getExtensions().containsKey(ModelParser.MORE_TAGS_EXTENSION_KEY));
+    }
+}
@@ -0,0 +1,92 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomTag;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParserPoolTest {
+
+    private static String gedcom(int n) {
+        StringBuilder buf = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n");
+        for (int i = 0; i < n; i++) {
+            buf.append("0 @I").append(i).append("@ INDI\n1 NAME Person /").append(n).append("/\n");
+        }
+        return buf.append("0 TRLR\n").toString();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        ModelParser parser = new ModelParser();
+        ParallelModelParserTest.RecordingErrorHandler errors = new ParallelModelParserTest.RecordingErrorHandler();
+        parser.setErrorHandler(errors);
+        Gedcom first = parser.parseGedcom(new StringReader(gedcom(3) + "junk\n"));
+        assertEquals(first.getPeople().size(), 3);
+        assertTrue(errors.messages.size() > 0);
+
+        // a file without a trailer leaves tags open; they mustn't leak into the next parse
+        Gedcom second = parser.parseGedcom(new StringReader("0 HEAD\n0 @I9@ INDI\n1 NAME Open"));
+        assertEquals(second.getPeople().size(), 1);
+        assertEquals(second.getPerson("I9").getNames().get(0).getValue(), "Open");
+
+        int reported = errors.messages.size();
+        parser.reset();
+        Gedcom third = parser.parseGedcom(new StringReader(gedcom(2) + "junk\n"));
+        assertEquals(third.getPeople().size(), 2);
+        assertEquals(third.getPerson("I1").getNames().get(0).getValue(), "Person /2/");
+        // the error handler was cleared by reset
+        assertEquals(errors.messages.size(), reported);
+
+        TreeParser treeParser = new TreeParser();
+        assertEquals(treeParser.parseGedcom(new StringReader(gedcom(3))).size(), 5);
+        treeParser.reset();
+        List<GedcomTag> tags = treeParser.parseGedcom(new StringReader(gedcom(1)));
+        assertEquals(tags.size(), 3);
+        assertEquals(tags.get(1).getChildren().get(0).getValue(), "Person /1/");
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        final ParserPool<ModelParser> pool = ParserPool.modelParsers(2);
+        ModelParser parser = pool.borrow();
+        pool.release(parser);
+        assertEquals(pool.getIdleCount(), 1);
+        assertSame(pool.borrow(), parser);
+        assertEquals(pool.getIdleCount(), 0);
+        pool.release(parser);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 200; i++) {
+                final int n = i % 7 + 1;
+                results.add(executor.submit(() -> {
+                    ModelParser borrowed = pool.borrow();
+                    try {
+                        Gedcom gedcom = borrowed.parseGedcom(new StringReader(gedcom(n)));
+                        assertEquals(gedcom.getPerson("I0").getNames().get(0).getValue(), "Person /" + n + "/");
+                        return gedcom.getPeople().size() - n;
+                    } finally {
+                        pool.release(borrowed);
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals((int) result.get(), 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getIdleCount() <= 2);
+    }
+}
@@ -0,0 +1,100 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class ProjectionTest {
+    private static final String GEDCOM =
+            "0 HEAD\n1 SOUR test\n1 CHAR UTF-8\n" +
+            "0 @I1@ INDI\n1 NAME John /Smith/\n2 GIVN John\n2 SURN Smith\n1 SEX M\n" +
+            "1 BIRT\n2 DATE 1 JAN 1900\n2 PLAC Springfield\n3 CONC , Illinois\n2 SOUR @S1@\n3 PAGE 12\n" +
+            "1 DEAT\n2 DATE 1980\n1 NOTE a note\n2 CONT more\n1 _CUSTOM x\n2 _MORE y\n1 FAMS @F1@\n" +
+            "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n1 MARR\n2 DATE 1925\n" +
+            "0 @S1@ SOUR\n1 TITL A source\n" +
+            "0 @N1@ NOTE shared\n1 CONT note\n" +
+            "0 @P1@ _PLAC Springfield\n" +
+            "0 TRLR\n";
+
+    private static Gedcom parse(String spec) throws Exception {
+        ModelParser modelParser = new ModelParser();
+        ParallelModelParserTest.RecordingErrorHandler errors = new ParallelModelParserTest.RecordingErrorHandler();
+        modelParser.setErrorHandler(errors);
+        modelParser.setProjection(spec);
+        Gedcom gedcom = modelParser.parseGedcom(new StringReader(GEDCOM));
+        assertTrue(errors.messages.isEmpty(), errors.messages.toString());
+        return gedcom;
+    }
+
+    @Test
+    public void testFields() throws Exception {
+        Gedcom gedcom = parse("INDI: NAME, BIRT/DATE, birt/plac; FAM: HUSB, WIFE, CHIL");
+        assertNotNull(gedcom.getHeader());
+        assertEquals(gedcom.getHeader().getCharacterSet().getValue(), "UTF-8");
+
+        assertEquals(gedcom.getPeople().size(), 1);
+        Person person = gedcom.getPeople().get(0);
+        assertEquals(person.getId(), "I1");
+        assertEquals(person.getNames().get(0).getValue(), "John /Smith/");
+        assertEquals(person.getNames().get(0).getSurname(), "Smith");
+        assertEquals(person.getEventsFacts().size(), 1);
+        EventFact birth = person.getEventsFacts().get(0);
+        assertEquals(birth.getTag(), "BIRT");
+        assertEquals(birth.getDate(), "1 JAN 1900");
+        assertEquals(birth.getPlace(), "Springfield, Illinois");
+        assertTrue(birth.getSourceCitations().isEmpty());
+        assertTrue(person.getNotes().isEmpty());
+        assertTrue(person.getExtensions().isEmpty());
+        assertTrue(person.getSpouseFamilyRefs().isEmpty());
+
+        Family family = gedcom.getFamilies().get(0);
+        assertEquals(family.getHusbandRefs().get(0).getRef(), "I1");
+        assertEquals(family.getWifeRefs().get(0).getRef(), "I2");
+        assertEquals(family.getChildRefs().get(0).getRef(), "I3");
+        assertTrue(family.getEventsFacts().isEmpty());
+
+        assertTrue(gedcom.getSources().isEmpty());
+        assertTrue(gedcom.getNotes().isEmpty());
+        assertTrue(gedcom.getExtensions().isEmpty());
+    }
+
+    @Test
+    public void testWholeRecords() throws Exception {
+        Gedcom gedcom = parse("NOTE; SOUR:");
+        assertTrue(gedcom.getPeople().isEmpty());
+        assertTrue(gedcom.getFamilies().isEmpty());
+        assertEquals(gedcom.getSources().get(0).getTitle(), "A source");
+        assertEquals(gedcom.getNotes().get(0).getValue(), "shared\nnote");
+    }
+
+    @Test
+    public void testLowerCaseContinuation() throws Exception {
+        ModelParser modelParser = new ModelParser();
+        modelParser.setProjection("INDI: BIRT/PLAC, NOTE");
+        Gedcom gedcom = modelParser.parseGedcom(new StringReader(
+                "0 HEAD\n0 @I1@ INDI\n1 BIRT\n2 PLAC Springfield\n3 conc , Illinois\n1 NOTE a note\n2 cont more\n0 TRLR\n"));
+        Person person = gedcom.getPeople().get(0);
+        assertEquals(person.getEventsFacts().get(0).getPlace(), "Springfield, Illinois");
+        assertEquals(person.getNotes().get(0).getValue(), "a note\nmore");
+    }
+
+    @Test
+    public void testBadSpec() {
+        for (String spec : new String[] {"", " ; ", "INDI: NAME, /DATE"}) {
+            try {
+                new ModelParser().setProjection(spec);
+                throw new AssertionError("accepted " + spec);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
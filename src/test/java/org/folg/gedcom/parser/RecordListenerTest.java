@@ -0,0 +1,90 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.*;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class RecordListenerTest {
+
+    static class RecordCollector implements RecordListener {
+        final List<String> records = new ArrayList<String>();
+
+        public void header(Header header) {
+            records.add("HEAD");
+        }
+
+        public void submitter(Submitter submitter) {
+            records.add("SUBM " + submitter.getId());
+        }
+
+        public void person(Person person) {
+            records.add("INDI " + person.getId() + " " + person.getNames().size());
+        }
+
+        public void family(Family family) {
+            records.add("FAM " + family.getId());
+        }
+
+        public void source(Source source) {
+            records.add("SOUR " + source.getId());
+        }
+
+        public void note(Note note) {
+            records.add("NOTE " + note.getId() + " " + note.getValue());
+        }
+
+        public void repository(Repository repository) {
+            records.add("REPO " + repository.getId());
+        }
+
+        public void extension(GedcomTag tag) {
+            records.add(tag.getTag() + " " + tag.getChildren().size());
+        }
+    }
+
+    @Test
+    public void testRecordsAsTheyEnd() throws Exception {
+        RecordCollector collector = new RecordCollector();
+        ModelParser modelParser = new ModelParser();
+        modelParser.setRecordListener(collector);
+        Gedcom gedcom = modelParser.parseGedcom(new StringReader(
+                "0 HEAD\n1 SOUR test\n0 @I1@ INDI\n1 NAME A /B/\n1 NAME C\n0 @F1@ FAM\n1 HUSB @I1@\n" +
+                "0 @N1@ NOTE long\n1 CONC er\n0 _PLAC x\n1 _SUB y\n0 @I2@ INDI\n"));
+        assertEquals(collector.records.toString(),
+                "[HEAD, INDI I1 2, FAM F1, NOTE N1 longer, _PLAC 1, INDI I2 0]");
+        // only the header is kept
+        assertNotNull(gedcom.getHeader());
+        assertTrue(gedcom.getPeople().isEmpty());
+        assertTrue(gedcom.getFamilies().isEmpty());
+        assertTrue(gedcom.getNotes().isEmpty());
+        assertTrue(gedcom.getExtensions().isEmpty());
+    }
+
+    @Test
+    public void testSameRecordsAsFullParse() throws Exception {
+        URL url = this.getClass().getClassLoader().getResource("Case002-ReferenceIntegrity.ged");
+        File file = new File(url.toURI());
+        Gedcom full = new ModelParser().parseGedcom(file);
+
+        RecordCollector collector = new RecordCollector();
+        ModelParser modelParser = new ModelParser();
+        modelParser.setRecordListener(collector);
+        modelParser.parseGedcom(file);
+        int people = 0;
+        for (String record : collector.records) {
+            if (record.startsWith("INDI ")) {
+                assertEquals(record.split(" ")[1], full.getPeople().get(people++).getId());
+            }
+        }
+        assertEquals(people, full.getPeople().size());
+    }
+}
@@ -0,0 +1,116 @@
+package org.folg.gedcom.parser;
+
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Person;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ValuePoolTest {
+    private static final String[] PLACES = {"Springfield, Sangamon, Illinois, USA", "Boston, Suffolk, Massachusetts, USA",
+            "Salt Lake City, Salt Lake, Utah, USA", "London, Middlesex, England", "Oslo, Norway"};
+    private static final String[] SURNAMES = {"Smith", "Jones", "Larsen", "Brown", "Young", "Taylor", "Olsen"};
+
+    private static String gedcom(int people) {
+        StringBuilder buf = new StringBuilder("0 HEAD\n1 CHAR UTF-8\n");
+        for (int i = 0; i < people; i++) {
+            String surname = SURNAMES[i % SURNAMES.length];
+            buf.append("0 @I").append(i).append("@ INDI\n1 NAME John /").append(surname).append("/\n")
+               .append("2 GIVN John\n2 SURN ").append(surname).append('\n')
+               .append("1 SEX M\n")
+               .append("1 BIRT\n2 DATE ").append(1 + i % 28).append(" JAN ").append(1800 + i % 150).append('\n')
+               .append("2 PLAC ").append(PLACES[i % PLACES.length]).append('\n')
+               .append("2 SOUR @S1@\n3 PAGE Film 1234567, p. ").append(i % 40).append('\n')
+               .append("1 DEAT Y\n2 PLAC ").append(PLACES[(i + 1) % PLACES.length]).append('\n')
+               .append("1 RESI\n2 TYPE Census\n2 PLAC ").append(PLACES[(i + 2) % PLACES.length]).append('\n')
+               .append("1 NOTE Born the ").append(i).append("th child\n2 CONT of a large family\n");
+        }
+        return buf.append("0 @S1@ SOUR\n1 TITL Parish registers\n0 TRLR\n").toString();
+    }
+
+    @Test
+    public void testPool() {
+        ValuePool pool = new ValuePool(3, 5);
+        pool.setPolicy("Note", ValuePool.Policy.NONE);
+        String place = pool.intern("Place", new StringBuilder("Springfield, Illinois"));
+        assertSame(pool.intern("Place", "Springfield, Illinois"), place);
+        assertEquals(pool.getHits("Place"), 1);
+        assertEquals(pool.getMisses("Place"), 1);
+        assertEquals(pool.getSavedChars(), place.length());
+
+        // SHORT fields pool only values up to the maximum length
+        assertSame(pool.intern("Value", "Y"), pool.intern("Value", "Y"));
+        StringBuilder longValue = new StringBuilder("a long value");
+        assertNotSame(pool.intern("Value", longValue), pool.intern("Value", longValue));
+        // unknown fields have the default policy
+        assertEquals(pool.getPolicy("Note"), ValuePool.Policy.NONE);
+        assertEquals(pool.getPolicy("Unknown"), ValuePool.Policy.NONE);
+        assertNotSame(pool.intern("Unknown", new StringBuilder("a")), pool.intern("Unknown", new StringBuilder("a")));
+        pool.setDefaultPolicy(ValuePool.Policy.ALL);
+        assertSame(pool.intern("Unknown", "a"), pool.intern("Unknown", "a"));
+        assertEquals(pool.size(), 3);
+
+        // the pool is full, so new values aren't added but old ones are still shared
+        assertNotSame(pool.intern("Place", new StringBuilder("Oslo")), pool.intern("Place", "Oslo"));
+        assertSame(pool.intern("Place", new StringBuilder("Springfield, Illinois")), place);
+        assertEquals(pool.size(), 3);
+        assertEquals(pool.getHits(), 4);
+        assertEquals(pool.getMisses(), 5);
+
+        pool.clear();
+        assertEquals(pool.size(), 0);
+        assertEquals(pool.getHits("Place"), 0);
+        assertEquals(pool.getPolicy("Unknown"), ValuePool.Policy.ALL);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        String gedcom = gedcom(50);
+        ModelParser parser = new ModelParser();
+        ValuePool pool = new ValuePool();
+        parser.setValuePool(pool);
+        Gedcom pooled = parser.parseGedcom(new StringReader(gedcom));
+        Gedcom plain = new ModelParser().parseGedcom(new StringReader(gedcom));
+
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(pooled), jsonParser.toJson(plain));
+        Person first = pooled.getPerson("I0");
+        Person sixth = pooled.getPerson("I5");
+        assertSame(sixth.getEventsFacts().get(0).getPlace(), first.getEventsFacts().get(0).getPlace());
+        assertSame(sixth.getEventsFacts().get(2).getType(), first.getEventsFacts().get(2).getType());
+        assertSame(pooled.getPerson("I7").getNames().get(0).getSurname(), first.getNames().get(0).getSurname());
+        assertEquals(first.getNotes().get(0).getValue(), "Born the 0th child\nof a large family");
+
+        assertEquals(pool.getHits("Place") + pool.getMisses("Place"), 150);
+        assertEquals(pool.getMisses("Place"), PLACES.length);
+        assertEquals(pool.getMisses("Surname"), SURNAMES.length);
+        assertEquals(pool.getHits("Type"), 49);
+        assertTrue(pool.getHits("Page") > 0);
+        assertEquals(pool.getHits() + pool.getMisses(), pool.getHits("Place") + pool.getMisses("Place") +
+                pool.getHits("Surname") + pool.getMisses("Surname") + pool.getHits("Given") + pool.getMisses("Given") +
+                pool.getHits("Date") + pool.getMisses("Date") + pool.getHits("Type") + pool.getMisses("Type") +
+                pool.getHits("Page") + pool.getMisses("Page") + pool.getHits("Title") + pool.getMisses("Title") +
+                pool.getHits("Value") + pool.getMisses("Value"));
+
+        parser.reset();
+        assertEquals(parser.getValuePool(), null);
+    }
+
+    @Test
+    public void testParseFile() throws Exception {
+        URL url = this.getClass().getClassLoader().getResource("Case001-AddressStructure.ged");
+        File file = new File(url.toURI());
+        ModelParser parser = new ModelParser();
+        parser.setParallelism(4);
+        parser.setValuePool(new ValuePool());
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(parser.parseGedcom(file)), jsonParser.toJson(new ModelParser().parseGedcom(file)));
+    }
+}
@@ -0,0 +1,104 @@
+package org.folg.gedml;
+
+import org.gedml.AnselInputStreamReader;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class AnselInputStreamReaderTest {
+
+    /**
+     * Returns at most one byte per read, as a slow network stream might
+     */
+    static class TricklingInputStream extends InputStream {
+        private final InputStream in;
+
+        TricklingInputStream(byte[] bytes) {
+            in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 1));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+
+    private static String readOneAtATime(InputStream in) throws IOException {
+        AnselInputStreamReader reader = new AnselInputStreamReader(in);
+        StringBuilder buf = new StringBuilder();
+        int c;
+        while ((c = reader.read()) >= 0) {
+            buf.append((char) c);
+        }
+        return buf.toString();
+    }
+
+    private static String readInChunks(InputStream in, Random random) throws IOException {
+        AnselInputStreamReader reader = new AnselInputStreamReader(in);
+        StringBuilder buf = new StringBuilder();
+        char[] chars = new char[64];
+        int n;
+        while (true) {
+            int off = random.nextInt(8);
+            n = reader.read(chars, off, 1 + random.nextInt(chars.length - off - 1));
+            if (n < 0) {
+                break;
+            }
+            buf.append(chars, off, n);
+        }
+        return buf.toString();
+    }
+
+    private static String decode(int... bytes) throws IOException {
+        byte[] b = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            b[i] = (byte) bytes[i];
+        }
+        return readInChunks(new ByteArrayInputStream(b), new Random(1));
+    }
+
+    @Test
+    public void testKnownSequences() throws IOException {
+        assertEquals(decode('a', 0xE2, 'e', 'b'), "aéb");
+        assertEquals(decode(0xF0, 'c'), "ç");
+        assertEquals(decode(0xA5, 0xB5), "Ææ");
+        assertEquals(decode(0xD9, 0x49), "\u2020");
+        assertEquals(decode(0xE2, 'q'), "\u0301q");
+        assertEquals(decode(0xE2, 0), "\u0301\u0000");
+        assertEquals(decode('x', 0xE2), "x\u0301");
+        assertEquals(decode(0xFF, 0xBB), "\uFFFD\uFFFD");
+        assertEquals(decode(), "");
+    }
+
+    @Test
+    public void testBulkReadsMatchSingleReads() throws IOException {
+        Random random = new Random(20111122L);
+        for (int i = 0; i < 200; i++) {
+            byte[] bytes = new byte[random.nextInt(20000)];
+            for (int j = 0; j < bytes.length; j++) {
+                // mostly ASCII, with runs of ANSEL lead and trailing bytes
+                bytes[j] = (byte) (random.nextInt(3) == 0 ? 0x80 + random.nextInt(128) : random.nextInt(128));
+            }
+            String expected = readOneAtATime(new ByteArrayInputStream(bytes));
+            assertEquals(readInChunks(new ByteArrayInputStream(bytes), random), expected);
+            if (bytes.length < 2000) {
+                assertEquals(readInChunks(new TricklingInputStream(bytes), random), expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.folg.gedml;
+
+import org.gedml.AnselOutputStreamWriter;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class AnselOutputStreamWriterTest {
+
+    private static byte[] encodeOneAtATime(String s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new AnselOutputStreamWriter(out);
+        for (int i = 0; i < s.length(); i++) {
+            writer.write(s.charAt(i));
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeInChunks(String s, Random random) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new AnselOutputStreamWriter(out);
+        char[] chars = s.toCharArray();
+        int i = 0;
+        while (i < chars.length) {
+            int len = Math.min(chars.length - i, random.nextInt(20000));
+            switch (random.nextInt(3)) {
+                case 0:
+                    writer.write(chars, i, len);
+                    break;
+                case 1:
+                    writer.write(s.substring(i, i + len));
+                    break;
+                default:
+                    writer.write(s, i, len);
+            }
+            i += len;
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testKnownCharacters() throws IOException {
+        assertEquals(encodeInChunks("a\u00E9b\u00C6\u2020\u4E2D", new Random(1)),
+                new byte[]{'a', (byte) 0xE2, 'e', 'b', (byte) 0xA5, (byte) 0xD9, 0x49, (byte) 0xC5});
+    }
+
+    @Test
+    public void testBulkWritesMatchSingleWrites() throws IOException {
+        Random random = new Random(20111122L);
+        for (int i = 0; i < 50; i++) {
+            StringBuilder buf = new StringBuilder();
+            int len = random.nextInt(40000);
+            for (int j = 0; j < len; j++) {
+                int r = random.nextInt(4);
+                buf.append((char) (r == 0 ? random.nextInt(0x10000) : r == 1 ? 0x80 + random.nextInt(0x180) : random.nextInt(128)));
+            }
+            String s = buf.toString();
+            assertEquals(encodeInChunks(s, random), encodeOneAtATime(s));
+        }
+    }
+}
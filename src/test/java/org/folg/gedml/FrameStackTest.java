@@ -0,0 +1,43 @@
+package org.folg.gedml;
+
+import org.gedml.FrameStack;
+import org.testng.annotations.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class FrameStackTest {
+
+    @Test
+    public void testStack() {
+        FrameStack<String> stack = new FrameStack<String>(1);
+        assertTrue(stack.isEmpty());
+        assertNull(stack.peek());
+        for (int i = 0; i < 100; i++) {
+            stack.push("L" + i);
+        }
+        assertEquals(stack.size(), 100);
+        assertEquals(stack.get(0), "L0");
+        assertEquals(stack.peek(), "L99");
+        assertEquals(stack.pop(), "L99");
+        assertEquals(stack.size(), 99);
+        stack.clear();
+        assertTrue(stack.isEmpty());
+        try {
+            stack.pop();
+            fail("expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            stack.get(0);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
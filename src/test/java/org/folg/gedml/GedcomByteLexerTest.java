@@ -0,0 +1,162 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomByteLexer;
+import org.gedml.GedcomParser;
+import org.testng.annotations.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class GedcomByteLexerTest {
+
+    static class RecordingHandler extends DefaultHandler implements ErrorHandler {
+        final List<String> events = new ArrayList<String>();
+        private GedcomParser parser;
+
+        RecordingHandler(GedcomParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            events.add(parser.getLineNumber() + " start " + localName + " " + atts.getValue("ID") + " " + atts.getValue("REF"));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.add("end " + localName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.add("chars [" + new String(ch, start, length) + "]");
+        }
+
+        @Override
+        public void error(SAXParseException e) {
+            events.add("error " + e.getMessage());
+        }
+    }
+
+    private static List<String> parseStream(File file) throws Exception {
+        GedcomParser parser = new GedcomParser();
+        RecordingHandler handler = new RecordingHandler(parser);
+        parser.setContentHandler(handler);
+        parser.setErrorHandler(handler);
+        parser.parse(new FileInputStream(file));
+        return handler.events;
+    }
+
+    private static List<String> parseFile(File file) throws Exception {
+        GedcomParser parser = new GedcomParser();
+        RecordingHandler handler = new RecordingHandler(parser);
+        parser.setContentHandler(handler);
+        parser.setErrorHandler(handler);
+        parser.parse(file);
+        return handler.events;
+    }
+
+    private static List<String> parseWindowed(File file, long start, String charsetName, int windowSize) throws Exception {
+        GedcomParser parser = new GedcomParser();
+        RecordingHandler handler = new RecordingHandler(parser);
+        parser.setContentHandler(handler);
+        parser.setErrorHandler(handler);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        parser.parse(new GedcomByteLexer(channel, start, channel.size(), charsetName, windowSize));
+        return handler.events;
+    }
+
+    private static File write(byte[] bytes) throws IOException {
+        File file = File.createTempFile("lexer", ".ged");
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static byte[] bytes(Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object part : parts) {
+            if (part instanceof String) {
+                out.writeBytes(((String) part).getBytes(StandardCharsets.UTF_8));
+            } else {
+                for (int b : (int[]) part) {
+                    out.write(b);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSameEventsAsStream_withResources() throws Exception {
+        for (String name : new String[]{"Case001-AddressStructure.ged", "Case002-ReferenceIntegrity.ged"}) {
+            URL url = this.getClass().getClassLoader().getResource(name);
+            File file = new File(url.toURI());
+            assertNotNull(GedcomByteLexer.open(file));
+            assertEquals(parseFile(file), parseStream(file), name);
+        }
+    }
+
+    @Test
+    public void testSameEventsAsStream_withUtf8() throws Exception {
+        File file = write(bytes(
+                new int[]{0xEF, 0xBB, 0xBF},
+                "0 HEAD\r\n1 CHAR UTF-8\r\n0 @I1@ INDI\r",
+                "1 NAME Jörg /Müller/\n",
+                "1 NOTE tab\there and a bell", new int[]{7}, "\n",
+                "2 CONT café ", new int[]{0xE2, 0x82}, "\n",
+                "1 ", new int[]{1}, "SEX M\n",
+                "1 ÉVEN not a tag\n",
+                "this line is not standard\n",
+                "1 FAMS @F1@\n",
+                "1 FAMS @F1@x\n",
+                "\n",
+                "2 _X \n",
+                "1 _CUSTOM.TAG @R1@ value\r\n",
+                "0 TRLR"));
+        List<String> expected = parseStream(file);
+        assertTrue(expected.contains("chars [Jörg /Müller/]"));
+        assertEquals(parseFile(file), expected);
+        assertEquals(parseWindowed(file, 3, "UTF-8", 16), expected);
+    }
+
+    @Test
+    public void testSameEventsAsStream_withAnsel() throws Exception {
+        File file = write(bytes(
+                "0 HEAD\n1 CHAR ANSEL\n0 @I1@ INDI\n",
+                "1 NAME Fran", new int[]{0xF0}, "cois /", new int[]{0xE2}, "Eclair/\n",
+                "1 NOTE ends with a combining mark ", new int[]{0xE2}, "\n",
+                "2 CONC ", new int[]{0xA5, 0xB5, 0x88}, "\n",
+                "1 _T", new int[]{0xE2}, "A value\n",
+                "0 TRLR\n"));
+        List<String> expected = parseStream(file);
+        assertTrue(expected.contains("chars [François /Éclair/]"));
+        assertEquals(parseFile(file), expected);
+        assertEquals(parseWindowed(file, 0, "ANSEL", 8), expected);
+    }
+
+    @Test
+    public void testOpen_withUtf16() throws Exception {
+        File file = write("0 HEAD\n1 CHAR UNICODE\n0 TRLR\n".getBytes(StandardCharsets.UTF_16));
+        assertNull(GedcomByteLexer.open(file));
+        assertEquals(parseFile(file), parseStream(file));
+    }
+}
@@ -0,0 +1,104 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomCharsetSniffer;
+import org.gedml.GedcomParser;
+import org.testng.annotations.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class GedcomCharsetSnifferTest {
+
+    private static GedcomCharsetSniffer sniff(byte[] bytes) {
+        return GedcomCharsetSniffer.sniff(bytes, 0, bytes.length, true);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static List<String> parseTags(byte[] bytes) throws Exception {
+        final List<String> tags = new ArrayList<String>();
+        GedcomParser parser = new GedcomParser();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                tags.add(localName);
+            }
+        });
+        parser.parse(new ByteArrayInputStream(bytes));
+        return tags;
+    }
+
+    @Test
+    public void testCorrectedCharsetName() {
+        GedcomCharsetSniffer sniffer = sniff("junk\r\n0 HEAD\r\n1 SOUR GeneWeb\r\n1 CHAR ascii\r\n0 TRLR\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(sniffer.isUtf16());
+        assertEquals(sniffer.getCharsetName(), "Cp1252");
+        assertEquals(sniffer.getJunkLength(), 6);
+
+        sniffer = sniff("0 HEAD\n1 CHAR ASCII\n2 VERS MacOS Roman\n0 TRLR\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(sniffer.getCharsetName(), "x-MacRoman");
+        assertEquals(sniffer.getJunkLength(), 0);
+    }
+
+    @Test
+    public void testDefaultsToAnsel() {
+        GedcomCharsetSniffer sniffer = sniff("0 HEAD\n1 SOUR PAF\n0 TRLR\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(sniffer.getDeclaredCharsetName(), "");
+        assertEquals(sniffer.getCharsetName(), "ANSEL");
+    }
+
+    @Test
+    public void testIgnoresLineCutOffByWindow() {
+        byte[] bytes = "0 HEAD\n1 CHAR UTF-8\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(GedcomCharsetSniffer.sniff(bytes, 0, bytes.length - 4, false).getDeclaredCharsetName(), "");
+        assertEquals(GedcomCharsetSniffer.sniff(bytes, 0, bytes.length - 1, true).getDeclaredCharsetName(), "UTF-8");
+    }
+
+    @Test
+    public void testUtf16() throws Exception {
+        String ged = "0 HEAD\r\n1 CHAR UNICODE\r\n0 @I1@ INDI\r\n0 TRLR\r\n";
+
+        GedcomCharsetSniffer sniffer = sniff(ged.getBytes(StandardCharsets.UTF_16));
+        assertTrue(sniffer.isUtf16());
+        assertEquals(sniffer.getCharsetName(), "UTF-16BE");
+        assertEquals(sniffer.getDeclaredCharsetName(), "UTF-16");
+        assertEquals(sniffer.getJunkLength(), 2);
+
+        // no byte order mark
+        byte[] bytes = concat(new byte[]{' ', 0}, ged.getBytes(StandardCharsets.UTF_16LE));
+        sniffer = sniff(bytes);
+        assertEquals(sniffer.getCharsetName(), "UTF-16LE");
+        assertEquals(sniffer.getJunkLength(), 2);
+        assertEquals(parseTags(bytes), parseTags(ged.replace("UNICODE", "UTF-8").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testSkipJunkBeyondWindow() throws Exception {
+        byte[] junk = new byte[GedcomCharsetSniffer.WINDOW_SIZE + 100];
+        for (int i = 0; i < junk.length; i++) {
+            junk[i] = 'x';
+        }
+        byte[] bytes = concat(junk, "0 HEAD\n0 TRLR\n".getBytes(StandardCharsets.US_ASCII));
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(bytes));
+        GedcomCharsetSniffer sniffer = GedcomCharsetSniffer.sniff(in);
+        assertEquals(sniffer.getJunkLength(), -1);
+        sniffer.skipJunk(in);
+        assertEquals(in.read(), '0');
+        assertEquals(parseTags(bytes).size(), 3);
+    }
+}
@@ -0,0 +1,116 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomLineParser;
+import org.gedml.GedcomLineTokenizer;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class GedcomLineTokenizerTest {
+
+    private static final String[] LINES = {
+            "0 HEAD",
+            "0 @I1@ INDI",
+            "1 NAME John /Smith/",
+            "1 FAMS @F1@",
+            "1 FAMS @F1@ trailing value",
+            "1 FAMS @F1@x",
+            "1 FAMS @F1",
+            "1 NOTE @N1 with space@",
+            "1 NOTE  two leading spaces",
+            "1 NOTE ",
+            "1 NOTE\tafter tab",
+            "  2 DATE 1 JAN 1900",
+            "10 TAG value",
+            "0  @I1@   INDI",
+            "0 @I1@INDI",
+            "0 @@ INDI",
+            "0 @I1 INDI",
+            "0 @I\t1@ INDI",
+            "0 HEAD\u2028",
+            "0 HEAD\u2028x",
+            "0 HEAD\n",
+            "0 HEAD\r\n",
+            "1 SOUR @S1@\u0085",
+            "1 SOUR @S1@\u2029more",
+            "1 _CUSTOM.TAG value",
+            "1 BIRT,",
+            "1 @",
+            "",
+            "x",
+            "1",
+            "1 ",
+            "0 HEAD junk@ @",
+            "1 CONC @@value@@",
+    };
+
+    private static final char[] ALPHABET = {
+            '0', '1', '9', ' ', ' ', ' ', '\t', '@', '@', 'A', 'Z', 'a', '_', '.', 'x', '#', '-',
+            '\n', '\r', '\u000B', '\f', '\u0085', '\u2028', '\u2029', '\u00e9', '\u00a0'
+    };
+
+    private static void assertParity(String line) {
+        GedcomLineParser regex = new GedcomLineParser();
+        GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+        boolean expected = regex.parse(line);
+        boolean actual = tokenizer.parse(line);
+        assertEquals(actual, expected, "accepted: [" + line + "]");
+        if (expected) {
+            assertEquals(tokenizer.getLevel(), Integer.parseInt(regex.getLevel()), "level: [" + line + "]");
+            assertEquals(tokenizer.getID(), regex.getID(), "id: [" + line + "]");
+            assertEquals(tokenizer.getTag(), regex.getTag(), "tag: [" + line + "]");
+            assertEquals(tokenizer.getXRef(), regex.getXRef(), "xref: [" + line + "]");
+            assertEquals(tokenizer.getValue(), regex.getValue(), "value: [" + line + "]");
+        }
+    }
+
+    @Test
+    public void testParity_withKnownLines() {
+        for (String line : LINES) {
+            assertParity(line);
+        }
+    }
+
+    @Test
+    public void testParity_withRandomLines() {
+        Random random = new Random(20240101L);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            buf.setLength(0);
+            // start most lines with something that looks like a level so we reach the later fields
+            if (random.nextInt(4) > 0) {
+                buf.append((char) ('0' + random.nextInt(10))).append(' ');
+                if (random.nextBoolean()) {
+                    buf.append('@');
+                }
+            }
+            int len = random.nextInt(14);
+            for (int j = 0; j < len; j++) {
+                buf.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertParity(buf.toString());
+        }
+    }
+
+    @Test
+    public void testOffsetsIntoBuffer() {
+        char[] buf = "xx1 @S1@ SOUR @R1@ The Title".toCharArray();
+        GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+        assertTrue(tokenizer.parse(buf, 2, buf.length - 2));
+        assertEquals(tokenizer.getLevel(), 1);
+        assertEquals(tokenizer.getID(), "S1");
+        assertEquals(tokenizer.getTag(), "SOUR");
+        assertEquals(tokenizer.getXRef(), "R1");
+        assertEquals(new String(buf, tokenizer.getValueStart(), tokenizer.getValueEnd() - tokenizer.getValueStart()), "The Title");
+
+        assertTrue(tokenizer.parse(buf, 2, 11));
+        assertEquals(tokenizer.getTag(), "SOUR");
+        assertNull(tokenizer.getXRef());
+        assertFalse(tokenizer.hasValue());
+    }
+}
@@ -1,11 +1,14 @@
 package org.folg.gedml;
 
+import org.gedml.GedcomDiagnosticHandler;
+import org.gedml.GedcomHandler;
 import org.gedml.GedcomParser;
 import org.testng.annotations.Test;
 import org.xml.sax.*;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -82,6 +85,36 @@ public class GedcomParserTest {
 
     }
 
+    class MockGedcomHandler implements GedcomHandler {
+
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void startGedcom(Locator locator) {
+            events.add("start");
+        }
+
+        @Override
+        public void startTag(int level, String tag, String id, String ref) {
+            events.add(level + " " + tag + " " + id + " " + ref);
+        }
+
+        @Override
+        public void value(CharBuffer value) {
+            events.add("[" + value + "]");
+        }
+
+        @Override
+        public void endTag(int level, String tag) {
+            events.add("/" + level + " " + tag);
+        }
+
+        @Override
+        public void endGedcom() {
+            events.add("end");
+        }
+    }
+
     class MockErrorHandler implements ErrorHandler {
 
         @Override
@@ -217,4 +250,43 @@ public class GedcomParserTest {
         assertEquals(contentHandler.tags.get(1), "HEAD");
     }
 
+    @Test
+    public void testParse_withGedcomHandler() throws Exception {
+        MockGedcomHandler gedcomHandler = new MockGedcomHandler();
+        MockContentHandler contentHandler = new MockContentHandler();
+
+        GedcomParser parser = new GedcomParser();
+        parser.setGedcomHandler(gedcomHandler);
+        parser.setContentHandler(contentHandler);
+        parser.setErrorHandler(new MockErrorHandler());
+        parser.parse(new MockInputStream("0 HEAD\n1 CHAR UTF-8\n0 @I1@ INDI\n1 FAMS @F1@\nnot standard\n0 TRLR\n"));
+
+        assertEquals(gedcomHandler.events, Arrays.asList(
+                "start",
+                "0 HEAD null null", "1 CHAR null null", "[UTF-8]", "/1 CHAR", "/0 HEAD",
+                "0 INDI I1 null", "1 FAMS null F1", "[not standard]", "/1 FAMS", "/0 INDI",
+                "0 TRLR null null",
+                "end"));
+        assertTrue(contentHandler.tags.isEmpty(), "ContentHandler should not be called when there is a GedcomHandler");
+    }
+
+    @Test
+    public void testParse_withDiagnosticHandler() throws Exception {
+        final List<String> diagnostics = new ArrayList<String>();
+        GedcomParser parser = new GedcomParser();
+        parser.setGedcomHandler(new MockGedcomHandler());
+        parser.setErrorHandler(new MockErrorHandler() {
+            @Override
+            public void error(SAXParseException exception) {
+                diagnostics.add("SAX " + exception.getMessage());
+            }
+        });
+        parser.setDiagnosticHandler((code, lineNumber, message) -> diagnostics.add(code + " @" + lineNumber));
+        parser.parse(new MockInputStream("0 HEAD\n0 @I1@ INDI\nnot standard\n3 NOTE deep\n0 TRLR\n"));
+
+        assertEquals(diagnostics, Arrays.asList(
+                GedcomDiagnosticHandler.Code.NONSTANDARD_LINE + " @3",
+                GedcomDiagnosticHandler.Code.LEVEL_SKIPPED + " @4"));
+    }
+
 }
@@ -0,0 +1,149 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomHandler;
+import org.gedml.GedcomParser;
+import org.gedml.GedcomReader;
+import org.testng.annotations.Test;
+import org.xml.sax.Locator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class GedcomReaderTest {
+
+    private File getFile(String name) throws Exception {
+        URL url = this.getClass().getClassLoader().getResource(name);
+        return new File(url.toURI());
+    }
+
+    private static List<String> parse(File file) throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        GedcomParser parser = new GedcomParser();
+        parser.setGedcomHandler(new GedcomHandler() {
+            public void startGedcom(Locator locator) {
+            }
+
+            public void startTag(int level, String tag, String id, String ref) {
+                lines.add(level + " " + tag + " " + id + " " + ref);
+            }
+
+            public void value(CharBuffer value) {
+                lines.add("[" + value + "]");
+            }
+
+            public void endTag(int level, String tag) {
+            }
+
+            public void endGedcom() {
+            }
+        });
+        parser.parse(file);
+        return lines;
+    }
+
+    private static List<String> read(GedcomReader reader) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        while (reader.next()) {
+            lines.add(reader.getLevel() + " " + reader.getTag() + " " + reader.getID() + " " + reader.getXRef());
+            String value = reader.getValue();
+            if (value != null && value.length() > 0) {
+                lines.add("[" + value + "]");
+            }
+        }
+        reader.close();
+        return lines;
+    }
+
+    @Test
+    public void testSameLinesAsParser() throws Exception {
+        for (String name : new String[]{"Case001-AddressStructure.ged", "Case002-ReferenceIntegrity.ged"}) {
+            File file = getFile(name);
+            List<String> expected = parse(file);
+            assertEquals(read(GedcomReader.open(file)), expected, name);
+            assertEquals(read(new GedcomReader(file.toURI().toURL().openStream())), expected, name);
+        }
+    }
+
+    @Test
+    public void testSkipSubtree() throws Exception {
+        GedcomReader reader = GedcomReader.open(getFile("Case001-AddressStructure.ged"));
+        List<String> tags = new ArrayList<String>();
+        while (reader.next()) {
+            assertEquals(reader.getLevel(), 0);
+            tags.add(reader.getTag());
+            reader.skipSubtree();
+        }
+        reader.close();
+        assertEquals(tags, Arrays.asList("HEAD", "SUBM", "INDI", "REPO"));
+    }
+
+    @Test
+    public void testSkipNestedSubtree() throws Exception {
+        GedcomReader reader = new GedcomReader(new StringReader(
+                "0 @I1@ INDI\n1 NAME John /Smith/\n2 GIVN John\n2 SURN Smith\n1 SEX M\n0 TRLR\n"));
+        assertTrue(reader.next());
+        assertEquals(reader.getID(), "I1");
+        assertNull(reader.getValue());
+        assertTrue(reader.next());
+        assertEquals(reader.getTag(), "NAME");
+        reader.skipSubtree();
+        assertTrue(reader.next());
+        assertEquals(reader.getTag(), "SEX");
+        assertEquals(reader.getValue(), "M");
+        assertEquals(reader.getLineNumber(), 5);
+        reader.skipSubtree();
+        assertTrue(reader.next());
+        assertEquals(reader.getTag(), "TRLR");
+        reader.skipSubtree();
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSkipBeforeNext() throws Exception {
+        GedcomReader reader = new GedcomReader(new StringReader("0 HEAD\n1 SOUR X\n0 TRLR\n"));
+        reader.skipSubtree();
+    }
+
+    @Test
+    public void testNoAccessAfterSkip() throws Exception {
+        GedcomReader reader = new GedcomReader(new StringReader("0 @I1@ INDI\n1 NAME John\n0 TRLR\n"));
+        assertTrue(reader.next());
+        reader.skipSubtree();
+        try {
+            reader.getTag();
+            throw new AssertionError("getTag returned a line after skipSubtree");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(reader.next());
+        assertEquals(reader.getTag(), "TRLR");
+        reader.close();
+    }
+
+    @Test
+    public void testStopEarly() throws Exception {
+        byte[] bytes = "0 HEAD\n1 CHAR UTF-8\n0 @I1@ INDI\n1 NAME Jörg\n0 TRLR\n".getBytes(StandardCharsets.UTF_8);
+        GedcomReader reader = new GedcomReader(new ByteArrayInputStream(bytes));
+        String name = null;
+        while (name == null && reader.next()) {
+            if (reader.getTag().equals("NAME")) {
+                name = reader.getValue();
+            }
+        }
+        reader.close();
+        assertEquals(name, "Jörg");
+    }
+}
@@ -0,0 +1,112 @@
+package org.folg.gedml;
+
+import org.gedml.GedcomByteLexer;
+import org.gedml.GedcomLexer;
+import org.gedml.GedcomReaderLexer;
+import org.gedml.PipelinedGedcomLexer;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class PipelinedGedcomLexerTest {
+
+    private File getFile(String name) throws Exception {
+        URL url = this.getClass().getClassLoader().getResource(name);
+        return new File(url.toURI());
+    }
+
+    private static String describe(GedcomLexer lexer) {
+        if (lexer.isEmpty()) {
+            return lexer.getLineNumber() + " empty";
+        } else if (!lexer.isStandard()) {
+            return lexer.getLineNumber() + " [" + lexer.getLine() + "]";
+        }
+        return lexer.getLineNumber() + " " + lexer.getLevel() + " " + lexer.getID() + " " + lexer.getTag() + " " +
+                lexer.getXRef() + (lexer.hasValue() ? " [" + lexer.getValue() + "]" : "");
+    }
+
+    private static List<String> lex(GedcomLexer lexer, List<String> lines) throws IOException {
+        try {
+            while (lexer.nextLine()) {
+                lines.add(describe(lexer));
+            }
+        } finally {
+            lexer.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void testSameLines() throws Exception {
+        for (String name : new String[]{"Case001-AddressStructure.ged", "Case002-ReferenceIntegrity.ged"}) {
+            File file = getFile(name);
+            List<String> expected = lex(GedcomByteLexer.open(file), new ArrayList<String>());
+            assertTrue(expected.size() > 10);
+            assertEquals(lex(new PipelinedGedcomLexer(GedcomByteLexer.open(file)), new ArrayList<String>()), expected);
+            // a ring of two one-line batches makes the lexer thread wait on the consumer for almost every line
+            assertEquals(lex(new PipelinedGedcomLexer(GedcomByteLexer.open(file), 1, 2), new ArrayList<String>()), expected);
+            assertEquals(lex(new PipelinedGedcomLexer(GedcomByteLexer.open(file), 3, 1), new ArrayList<String>()), expected);
+        }
+    }
+
+    @Test
+    public void testNonstandardAndEmptyLines() throws Exception {
+        String gedcom = "0 HEAD\n\n1 NOTE first\nnot standard\n0 @I1@ INDI\n1 FAMS @F1@\n";
+        List<String> expected = lex(new GedcomReaderLexer(new BufferedReader(new StringReader(gedcom))), new ArrayList<String>());
+        List<String> actual = lex(new PipelinedGedcomLexer(
+                new GedcomReaderLexer(new BufferedReader(new StringReader(gedcom))), 2, 2), new ArrayList<String>());
+        assertEquals(actual, expected);
+        assertEquals(actual.get(3), "4 [not standard]");
+    }
+
+    @Test
+    public void testFailureAfterLines() throws Exception {
+        Reader failing = new Reader() {
+            private final Reader lines = new StringReader("0 HEAD\n1 CHAR UTF-8\n0 @I1@ INDI\n");
+
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = lines.read(cbuf, off, len);
+                if (n < 0) {
+                    throw new IOException("disk on fire");
+                }
+                return n;
+            }
+
+            public void close() {
+            }
+        };
+        List<String> lines = new ArrayList<String>();
+        try {
+            lex(new PipelinedGedcomLexer(new GedcomReaderLexer(new BufferedReader(failing, 4)), 2, 2), lines);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), "disk on fire");
+        }
+        assertEquals(lines.size(), 3);
+    }
+
+    @Test
+    public void testCloseEarly() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            buf.append("0 @I").append(i).append("@ INDI\n");
+        }
+        PipelinedGedcomLexer lexer = new PipelinedGedcomLexer(
+                new GedcomReaderLexer(new BufferedReader(new StringReader(buf.toString()))), 16, 2);
+        assertTrue(lexer.nextLine());
+        assertEquals(lexer.getID(), "I0");
+        // the lexer thread is waiting for the consumer; close must stop it rather than hang
+        lexer.close();
+    }
+}
@@ -0,0 +1,108 @@
+package org.folg.gedml;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.GedcomTag;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.ModelParser;
+import org.gedml.GedcomLineTokenizer;
+import org.gedml.LocalTagTable;
+import org.gedml.TagTable;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TagTableTest {
+
+    @Test
+    public void testIntern() {
+        String birt = TagTable.intern(new String("BIRT"));
+        assertSame(TagTable.intern(new String("BIRT")), birt);
+        assertSame(TagTable.intern("xBIRTx".toCharArray(), 1, 5), birt);
+        assertSame(TagTable.intern("xBIRTx".getBytes(StandardCharsets.ISO_8859_1), 1, 5), birt);
+        assertEquals(TagTable.name(TagTable.code(birt)), "BIRT");
+        assertNotEquals(TagTable.code("DEAT"), TagTable.code(birt));
+    }
+
+    @Test
+    public void testCustomTags() {
+        int size = TagTable.size();
+        LocalTagTable tags = new LocalTagTable();
+        String custom = tags.intern("_Custom".toCharArray(), 0, 7);
+        assertEquals(custom, "_Custom");
+        assertSame(tags.intern(new String("_Custom")), custom);
+        assertSame(tags.intern("x_Customx".getBytes(StandardCharsets.ISO_8859_1), 1, 8), custom);
+        assertSame(tags.toUpperCase(custom), tags.intern(new String("_CUSTOM")));
+        assertSame(tags.toUpperCase("_CUSTOM"), tags.intern("_CUSTOM"));
+        // vocabulary tags come from the shared table, in any case
+        assertSame(tags.intern(new String("BIRT")), TagTable.intern("BIRT"));
+        assertSame(tags.toUpperCase("birt"), TagTable.intern("BIRT"));
+        assertEquals(tags.size(), 3);
+        assertEquals(TagTable.size(), size);
+        assertEquals(TagTable.code(custom), TagTable.NO_CODE);
+        tags.clear();
+        assertEquals(tags.size(), 0);
+        assertEquals(tags.intern(new String("_Custom")), "_Custom");
+    }
+
+    @Test
+    public void testLookupsDoNotAdd() {
+        int size = TagTable.size();
+        assertEquals(TagTable.code("_NeverInterned"), TagTable.NO_CODE);
+        assertEquals(TagTable.intern("_NeverInterned"), "_NeverInterned");
+        assertEquals(TagTable.toUpperCase("_NeverInterned"), "_NEVERINTERNED");
+        assertEquals(TagTable.intern("_NeverInterned".toCharArray(), 0, 14), "_NeverInterned");
+        assertEquals(TagTable.size(), size);
+        String tag = TagTable.register("_Registered");
+        assertEquals(TagTable.name(TagTable.code(tag)), "_Registered");
+        assertSame(TagTable.toUpperCase("_Registered"), TagTable.intern(new String("_REGISTERED")));
+    }
+
+    @Test
+    public void testTokenizerSharesTags() {
+        GedcomLineTokenizer tokenizer = new GedcomLineTokenizer();
+        tokenizer.parse("1 NAME John /Smith/");
+        String name = tokenizer.getTag();
+        tokenizer.parse("1 NAME Mary /Jones/");
+        assertSame(tokenizer.getTag(), name);
+    }
+
+    @Test
+    public void testModelSharesTags() throws Exception {
+        Gedcom gedcom = new ModelParser().parseGedcom(new StringReader(
+                "0 HEAD\n0 @I1@ INDI\n1 BIRT\n2 DATE 1900\n1 _MYTAG a\n" +
+                "0 @I2@ INDI\n1 BIRT\n2 DATE 1901\n1 _MYTAG b\n0 TRLR\n"));
+        Person p1 = gedcom.getPeople().get(0);
+        Person p2 = gedcom.getPeople().get(1);
+        EventFact birth1 = p1.getEventsFacts().get(0);
+        EventFact birth2 = p2.getEventsFacts().get(0);
+        assertSame(birth1.getTag(), birth2.getTag());
+        @SuppressWarnings("unchecked")
+        List<GedcomTag> tags1 = (List<GedcomTag>) p1.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY);
+        @SuppressWarnings("unchecked")
+        List<GedcomTag> tags2 = (List<GedcomTag>) p2.getExtension(ModelParser.MORE_TAGS_EXTENSION_KEY);
+        assertSame(tags1.get(0).getTag(), tags2.get(0).getTag());
+        // custom tags are shared within the parse without being added to the shared table
+        assertEquals(TagTable.code("_MYTAG"), TagTable.NO_CODE);
+    }
+
+    @Test
+    public void testLowerCaseContinuation() throws Exception {
+        StringBuilder gedcom = new StringBuilder("0 HEAD\n0 @N1@ NOTE start\n");
+        for (int i = 0; i < 100; i++) {
+            gedcom.append("1 conc ").append(i % 10).append("\n1 _T").append(i).append(" x\n");
+        }
+        gedcom.append("0 TRLR\n");
+        int size = TagTable.size();
+        Gedcom parsed = new ModelParser().parseGedcom(new StringReader(gedcom.toString()));
+        assertTrue(parsed.getNotes().get(0).getValue().startsWith("start0123456789"));
+        assertEquals(TagTable.size(), size);
+    }
+}
@@ -0,0 +1,187 @@
+package org.folg.model;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
+import org.folg.gedcom.model.FrozenGedcom;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.parser.JsonParser;
+import org.folg.gedcom.parser.ModelParser;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class FrozenGedcomTest {
+
+    private static Gedcom parse(String name) throws Exception {
+        URL url = FrozenGedcomTest.class.getClassLoader().getResource(name);
+        return new ModelParser().parseGedcom(new File(url.toURI()));
+    }
+
+    private static void assertReadOnly(Runnable change) {
+        try {
+            change.run();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        Gedcom gedcom = parse("Case002-ReferenceIntegrity.ged");
+        FrozenGedcom frozen = gedcom.freeze();
+        assertSame(frozen.freeze(), frozen);
+        JsonParser jsonParser = new JsonParser();
+        assertEquals(jsonParser.toJson(frozen), jsonParser.toJson(gedcom));
+        assertEquals(frozen.getPeople().size(), gedcom.getPeople().size());
+
+        Person person = frozen.getPeople().get(0);
+        assertSame(frozen.getPerson(person.getId()), person);
+        assertNotSame(person, gedcom.getPerson(person.getId()));
+
+        assertReadOnly(() -> frozen.addPerson(new Person()));
+        assertReadOnly(() -> frozen.getPeople().add(new Person()));
+        assertReadOnly(() -> frozen.getFamilies().clear());
+        assertReadOnly(() -> frozen.setHeader(null));
+        assertReadOnly(frozen::updateReferences);
+        assertReadOnly(() -> frozen.putExtension("x", "y"));
+        assertReadOnly(() -> person.getNames().add(new Name()));
+        assertReadOnly(() -> person.addName(new Name()));
+        assertReadOnly(() -> person.getSpouseFamilyRefs().clear());
+
+        // later changes to the gedcom don't reach the snapshot
+        String json = jsonParser.toJson(frozen);
+        gedcom.getPerson(person.getId()).getNames().get(0).setValue("Changed /Name/");
+        gedcom.addPerson(new Person());
+        assertEquals(jsonParser.toJson(frozen), json);
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        FrozenGedcom first = parse("Case002-ReferenceIntegrity.ged").freeze();
+        String firstJson = new JsonParser().toJson(first);
+        Person unchanged = first.getPerson("I1");
+        Family family = first.getFamily("F1");
+
+        FrozenGedcom.Builder builder = first.toBuilder();
+        Person edited = builder.editPerson("I2");
+        assertNotSame(edited, first.getPerson("I2"));
+        assertSame(builder.editPerson("I2"), edited);
+        EventFact birth = new EventFact();
+        birth.setTag("BIRT");
+        birth.setDate("1900");
+        edited.addEventFact(birth);
+        assertTrue(builder.removePerson("I3"));
+        assertFalse(builder.removePerson("I99"));
+        assertNull(builder.editPerson("I99"));
+        Person added = new Person();
+        added.setId("I99");
+        builder.addPerson(added);
+        FrozenGedcom second = builder.build();
+
+        // the old snapshot is unchanged
+        assertEquals(new JsonParser().toJson(first), firstJson);
+        assertNotSame(first.getPerson("I2").getEventsFacts().get(0), birth);
+        assertEquals(first.getPeople().size(), second.getPeople().size());
+
+        // the new one shares unchanged records and freezes the edited ones
+        assertSame(second.getPerson("I1"), unchanged);
+        assertSame(second.getFamily("F1"), family);
+        assertNull(second.getPerson("I3"));
+        assertEquals(second.getPerson("I99").getId(), "I99");
+        Person secondI2 = second.getPerson("I2");
+        assertEquals(secondI2.getEventsFacts().get(secondI2.getEventsFacts().size() - 1).getDate(), "1900");
+        assertReadOnly(() -> secondI2.addEventFact(new EventFact()));
+        // changing the builder's copy after building doesn't change the snapshot
+        edited.addEventFact(new EventFact());
+        assertEquals(secondI2.getEventsFacts().size(), edited.getEventsFacts().size() - 1);
+    }
+
+    @Test
+    public void testFrozenRecordWithoutLists() throws Exception {
+        Gedcom gedcom = new Gedcom();
+        Person bare = new Person();
+        bare.setId("I1");
+        gedcom.addPerson(bare);
+        FrozenGedcom frozen = gedcom.freeze();
+        Person person = frozen.getPerson("I1");
+        String json = new JsonParser().toJson(frozen);
+        assertEquals(json, new JsonParser().toJson(gedcom));
+
+        // lists that were null can't be created and filled in the frozen record
+        assertReadOnly(() -> person.addName(new Name()));
+        assertReadOnly(() -> person.addEventFact(new EventFact()));
+        assertReadOnly(() -> person.getNotes().add(null));
+        assertTrue(person.getNames().isEmpty());
+        assertEquals(new JsonParser().toJson(frozen), json);
+
+        // an edited copy can be changed, and is frozen again when built
+        FrozenGedcom.Builder builder = frozen.toBuilder();
+        Person edited = builder.editPerson("I1");
+        edited.addName(new Name());
+        FrozenGedcom second = builder.build();
+        Person rebuilt = second.getPerson("I1");
+        assertEquals(rebuilt.getNames().size(), 1);
+        assertReadOnly(() -> rebuilt.addEventFact(new EventFact()));
+        assertTrue(new JsonParser().toJson(second).contains("\"names\""));
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final AtomicReference<FrozenGedcom> current =
+                new AtomicReference<FrozenGedcom>(parse("Case002-ReferenceIntegrity.ged").freeze());
+        final AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 4; i++) {
+                readers.add(executor.submit(() -> {
+                    int reads = 0;
+                    do {
+                        FrozenGedcom snapshot = current.get();
+                        for (Person person : snapshot.getPeople()) {
+                            // every snapshot is whole: each person it lists is in its index
+                            assertSame(snapshot.getPerson(person.getId()), person);
+                        }
+                        reads++;
+                    } while (!done.get());
+                    return reads;
+                }));
+            }
+            for (int i = 0; i < 200; i++) {
+                FrozenGedcom.Builder builder = current.get().toBuilder();
+                Person person = new Person();
+                person.setId("N" + i);
+                builder.addPerson(person);
+                builder.editPerson("I1").getNames().get(0).setValue("Version /" + i + "/");
+                current.set(builder.build());
+            }
+            done.set(true);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(current.get().getPerson("I1").getNames().get(0).getValue(), "Version /199/");
+        assertEquals(current.get().getPerson("N199").getId(), "N199");
+    }
+}
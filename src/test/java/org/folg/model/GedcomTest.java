@@ -1,14 +1,31 @@
 package org.folg.model;
 
+import org.folg.gedcom.model.ChildRef;
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Family;
 import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.ParentFamilyRef;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.SpouseFamilyRef;
+import org.folg.gedcom.model.SpouseRef;
+import org.folg.gedcom.parser.JsonParser;
 import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.visitors.GedcomWriter;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 public class GedcomTest {
     @Test
@@ -31,4 +48,213 @@ public class GedcomTest {
         assertEquals(gedcom.getFamily("F1").getWifeRefs().size(), 1);
         assertEquals(gedcom.getFamily("F2").getChildRefs().size(), 1);
     }
+
+    @Test
+    public void testIndexesAfterParse() throws Exception {
+        URL gedcomUrl = this.getClass().getClassLoader().getResource("Case002-ReferenceIntegrity.ged");
+        Gedcom gedcom = new ModelParser().parseGedcom(gedcomUrl.openStream());
+        // no createIndexes needed
+        assertEquals(gedcom.getPerson("I2").getId(), "I2");
+        assertEquals(gedcom.getFamily("F1").getId(), "F1");
+        assertNull(gedcom.getPerson("F1"));
+        assertNull(gedcom.getSource("S1"));
+    }
+
+    @Test
+    public void testIndexes() {
+        Gedcom gedcom = new Gedcom();
+        gedcom.ensureCapacity(10, 5);
+        List<Person> people = new ArrayList<Person>();
+        for (int i = 0; i < 5000; i++) {
+            Person person = new Person();
+            person.setId("I" + i);
+            people.add(person);
+            gedcom.addPerson(person);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertSame(gedcom.getPerson("I" + i), people.get(i));
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            gedcom.removePerson(people.get(i));
+        }
+        assertEquals(gedcom.getPeople().size(), 2500);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(gedcom.getPerson("I" + i), i % 2 == 0 ? null : people.get(i));
+        }
+
+        // a later record with the same id replaces an earlier one, and removing the earlier one leaves it
+        Person duplicate = new Person();
+        duplicate.setId("I1");
+        gedcom.addPerson(duplicate);
+        gedcom.removePerson(people.get(1));
+        assertSame(gedcom.getPerson("I1"), duplicate);
+
+        // setting the list replaces the index
+        Family family = new Family();
+        family.setId("F1");
+        List<Family> families = new ArrayList<Family>();
+        families.add(family);
+        gedcom.setFamilies(families);
+        assertSame(gedcom.getFamily("F1"), family);
+        assertNull(gedcom.getPerson(null));
+    }
+
+    private static Person person(Gedcom gedcom, String id, String sex) {
+        Person person = new Person();
+        person.setId(id);
+        if (sex != null) {
+            EventFact eventFact = new EventFact();
+            eventFact.setTag("SEX");
+            eventFact.setValue(sex);
+            person.addEventFact(eventFact);
+        }
+        gedcom.addPerson(person);
+        return person;
+    }
+
+    private static Family family(Gedcom gedcom, String id) {
+        Family family = new Family();
+        family.setId(id);
+        gedcom.addFamily(family);
+        return family;
+    }
+
+    private static SpouseFamilyRef fams(String id) {
+        SpouseFamilyRef ref = new SpouseFamilyRef();
+        ref.setRef(id);
+        return ref;
+    }
+
+    private static ParentFamilyRef famc(String id) {
+        ParentFamilyRef ref = new ParentFamilyRef();
+        ref.setRef(id);
+        return ref;
+    }
+
+    private static SpouseRef spouse(String id) {
+        SpouseRef ref = new SpouseRef();
+        ref.setRef(id);
+        return ref;
+    }
+
+    private static ChildRef child(String id) {
+        ChildRef ref = new ChildRef();
+        ref.setRef(id);
+        return ref;
+    }
+
+    @Test
+    public void testUpdateReferencesDangling() {
+        Gedcom gedcom = new Gedcom();
+        Person wife = person(gedcom, "I1", "F");
+        wife.addSpouseFamilyRef(fams("F1"));
+        wife.addSpouseFamilyRef(fams("F9"));
+        wife.addSpouseFamilyRef(fams("F1"));
+        Person husband = person(gedcom, "I2", null);
+        Person child = person(gedcom, "I3", "M");
+        child.addParentFamilyRef(famc("F1"));
+        Family family = family(gedcom, "F1");
+        family.addHusband(spouse("I2"));
+        family.addChild(child("I3"));
+        family.addChild(child("I8"));
+
+        List<String> dangling = new ArrayList<String>();
+        gedcom.updateReferences((record, ref) -> dangling.add(record instanceof Person ?
+                ((Person) record).getId() + " FAMS " + ((SpouseFamilyRef) ref).getRef() :
+                ((Family) record).getId() + " CHIL " + ((SpouseRef) ref).getRef()), 1);
+        assertEquals(dangling.toString(), "[I1 FAMS F9, F1 CHIL I8]");
+        assertEquals(family.getWifeRefs().size(), 1);
+        assertEquals(family.getWifeRefs().get(0).getRef(), "I1");
+        assertEquals(family.getHusbandRefs().size(), 1);
+        assertEquals(family.getChildRefs().size(), 2);
+        assertEquals(husband.getSpouseFamilyRefs().size(), 1);
+        assertEquals(husband.getSpouseFamilyRefs().get(0).getRef(), "F1");
+        assertEquals(child.getParentFamilyRefs().size(), 1);
+
+        // nothing more is missing, and without a handler dangling refs are skipped
+        String json = new JsonParser().toJson(gedcom);
+        gedcom.updateReferences();
+        assertEquals(new JsonParser().toJson(gedcom), json);
+    }
+
+    private static Gedcom families(int count) {
+        Gedcom gedcom = new Gedcom();
+        for (int i = 0; i < count; i++) {
+            Family family = family(gedcom, "F" + i);
+            Person husband = person(gedcom, "H" + i, "M");
+            Person wife = person(gedcom, "W" + i, i % 3 == 0 ? "F" : null);
+            // each link is given on one side or the other, or both
+            if (i % 2 == 0) {
+                husband.addSpouseFamilyRef(fams(family.getId()));
+            } else {
+                family.addHusband(spouse(husband.getId()));
+            }
+            if (i % 3 != 2) {
+                wife.addSpouseFamilyRef(fams(family.getId()));
+            }
+            if (i % 3 != 1) {
+                family.addWife(spouse(wife.getId()));
+            }
+            for (int c = 0; c < i % 5; c++) {
+                Person child = person(gedcom, "C" + i + "_" + c, null);
+                if (c % 2 == 0) {
+                    child.addParentFamilyRef(famc(family.getId()));
+                } else {
+                    family.addChild(child(child.getId()));
+                }
+                // a child of the previous family too
+                if (i > 0 && c == 3) {
+                    gedcom.getFamily("F" + (i - 1)).addChild(child(child.getId()));
+                }
+            }
+            if (i % 1000 == 0) {
+                family.addChild(child("missing" + i));
+            }
+        }
+        return gedcom;
+    }
+
+    @Test
+    public void testUpdateReferencesParallel() {
+        Gedcom sequential = families(25000);
+        Gedcom parallel = families(25000);
+        List<String> sequentialDangling = new ArrayList<String>();
+        List<String> parallelDangling = new ArrayList<String>();
+        sequential.updateReferences((record, ref) -> sequentialDangling.add(((SpouseRef) ref).getRef()), 1);
+        parallel.updateReferences((record, ref) -> parallelDangling.add(((SpouseRef) ref).getRef()), 4);
+        assertEquals(sequentialDangling.size(), 25);
+        assertEquals(parallelDangling, sequentialDangling);
+        JsonParser jsonParser = new JsonParser();
+        String json = jsonParser.toJson(sequential);
+        assertEquals(jsonParser.toJson(parallel), json);
+
+        Family family = sequential.getFamily("F3");
+        assertEquals(family.getHusbandRefs().size(), 1);
+        assertEquals(family.getWifeRefs().size(), 1);
+        assertEquals(family.getChildRefs().size(), 3 + 1);
+        assertEquals(sequential.getPerson("C4_3").getParentFamilyRefs().size(), 2);
+        assertEquals(sequential.getPerson("W1").getSpouseFamilyRefs().size(), 1);
+        sequential.updateReferences(null, 4);
+        assertEquals(jsonParser.toJson(sequential), json);
+    }
+
+    private static String write(Gedcom gedcom) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GedcomWriter().write(gedcom, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testHeaderSubmissionWrittenOnce() throws Exception {
+        Gedcom gedcom = new ModelParser().parseGedcom(new StringReader(
+                "0 HEAD\n1 SOUR X\n1 SUBN\n2 DESC hello\n0 TRLR\n"));
+        assertNotNull(gedcom.getSubmission());
+        for (String written : new String[] {write(gedcom), write(gedcom.freeze())}) {
+            assertEquals(written.split("DESC hello", -1).length - 1, 1, written);
+            assertFalse(written.contains("0 SUBN"), written);
+            Gedcom reparsed = new ModelParser().parseGedcom(new StringReader(written));
+            assertEquals(reparsed.getSubmission().getDescription(), "hello");
+            assertEquals(write(reparsed), written);
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package org.folg.model;
+
+import org.folg.gedcom.model.EventFact;
+import org.folg.gedcom.model.Gedcom;
+import org.folg.gedcom.model.Name;
+import org.folg.gedcom.model.Person;
+import org.folg.gedcom.model.PersonEventColumns;
+import org.folg.gedcom.parser.ModelParser;
+import org.folg.gedcom.parser.RecordListener;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class PersonEventColumnsTest {
+    private static Person person(String id, String name, String sex, String... tagDatePlaces) {
+        Person person = new Person();
+        person.setId(id);
+        if (name != null) {
+            Name n = new Name();
+            n.setValue(name);
+            person.addName(n);
+        }
+        if (sex != null) {
+            EventFact eventFact = new EventFact();
+            eventFact.setTag("SEX");
+            eventFact.setValue(sex);
+            person.addEventFact(eventFact);
+        }
+        for (int i = 0; i < tagDatePlaces.length; i += 3) {
+            EventFact eventFact = new EventFact();
+            eventFact.setTag(tagDatePlaces[i]);
+            eventFact.setDate(tagDatePlaces[i + 1]);
+            eventFact.setPlace(tagDatePlaces[i + 2]);
+            person.addEventFact(eventFact);
+        }
+        return person;
+    }
+
+    private static int[] years(String date) {
+        PersonEventColumns.Builder builder = new PersonEventColumns.Builder();
+        builder.add(person("I1", null, null, "EVEN", date, null));
+        PersonEventColumns columns = builder.build();
+        return new int[] {columns.getFromYear(0), columns.getToYear(0)};
+    }
+
+    @Test
+    public void testYears() {
+        int none = PersonEventColumns.NO_YEAR;
+        assertEquals(years("1 JAN 1900"), new int[] {1900, 1900});
+        assertEquals(years("ABT 1850"), new int[] {1850, 1850});
+        assertEquals(years("BET 1850 AND 1860"), new int[] {1850, 1860});
+        assertEquals(years("FROM 12 MAR 1850 TO 1860"), new int[] {1850, 1860});
+        assertEquals(years("bef 1850"), new int[] {none, 1850});
+        assertEquals(years("TO 1860"), new int[] {none, 1860});
+        assertEquals(years("AFT 31 DEC 1850"), new int[] {1850, none});
+        assertEquals(years("FROM 1850"), new int[] {1850, none});
+        assertEquals(years("11 FEB 1750/51"), new int[] {1750, 1750});
+        assertEquals(years("INT 950 (the tenth century)"), new int[] {950, 950});
+        assertEquals(years("Unknown"), new int[] {none, none});
+        assertEquals(years(null), new int[] {none, none});
+    }
+
+    @Test
+    public void testColumns() {
+        Gedcom gedcom = new Gedcom();
+        gedcom.addPerson(person("I1", "John /Smith/", "M", "BIRT", "1 JAN 1900", "Oslo", "DEAT", "1950", "Boston"));
+        gedcom.addPerson(person("I2", null, null));
+        gedcom.addPerson(person("I3", "Mary /Jones/", "f", "BIRT", null, "Oslo"));
+        PersonEventColumns columns = PersonEventColumns.of(gedcom);
+
+        assertEquals(columns.getPersonCount(), 3);
+        assertEquals(columns.getEventCount(), 5);
+        assertEquals(columns.getId(2), "I3");
+        assertEquals(columns.getName(0), "John /Smith/");
+        assertNull(columns.getName(1));
+        assertEquals(columns.getNameCode(1), PersonEventColumns.NONE);
+        assertEquals(columns.getSex(0), 'M');
+        assertEquals(columns.getSex(1), (char) 0);
+        assertEquals(columns.getSex(2), 'F');
+        assertEquals(columns.firstEvent(0), 0);
+        assertEquals(columns.firstEvent(1), 3);
+        assertEquals(columns.firstEvent(2), 3);
+        assertEquals(columns.firstEvent(3), 5);
+
+        assertEquals(columns.getPerson(4), 2);
+        assertEquals(columns.getTag(1), "BIRT");
+        assertEquals(columns.getTagCode(4), columns.tagCode("BIRT"));
+        assertEquals(columns.getDate(1), "1 JAN 1900");
+        assertNull(columns.getDate(4));
+        assertEquals(columns.getDateCode(4), PersonEventColumns.NONE);
+        assertEquals(columns.getPlaceCode(4), columns.getPlaceCode(1));
+        assertEquals(columns.getPlace(2), "Boston");
+        assertEquals(columns.tagCode("MARR"), PersonEventColumns.NONE);
+
+        int birt = columns.tagCode("BIRT");
+        assertEquals(columns.countEvents(e -> columns.getTagCode(e) == birt), 2);
+        int[] byPlace = columns.countByPlace(e -> columns.getTagCode(e) == birt);
+        assertEquals(byPlace.length, columns.getPlaceCount());
+        assertEquals(byPlace[columns.placeCode("Oslo")], 2);
+        assertEquals(byPlace[columns.placeCode("Boston")], 0);
+        int[] byTag = columns.countByTag(e -> true);
+        assertEquals(byTag[columns.tagCode("SEX")], 2);
+        assertEquals(byTag[columns.tagCode("DEAT")], 1);
+    }
+
+    @Test
+    public void testFromParse() throws Exception {
+        String gedcom = "0 HEAD\n0 @I1@ INDI\n1 NAME Anna /Larsen/\n1 SEX F\n1 BIRT\n2 DATE ABT 1820\n2 PLAC Oslo\n" +
+                "0 @F1@ FAM\n1 WIFE @I1@\n0 @I2@ INDI\n1 RESI\n2 PLAC Oslo\n0 TRLR\n";
+        final PersonEventColumns.Builder builder = new PersonEventColumns.Builder();
+        ModelParser parser = new ModelParser();
+        parser.setRecordListener(new RecordListener() {
+            @Override
+            public void person(Person person) {
+                builder.add(person);
+            }
+        });
+        Gedcom parsed = parser.parseGedcom(new StringReader(gedcom));
+        assertEquals(parsed.getPeople().size(), 0);
+        PersonEventColumns columns = builder.build();
+        assertEquals(columns.getPersonCount(), 2);
+        assertEquals(columns.getName(0), "Anna /Larsen/");
+        assertEquals(columns.getSex(0), 'F');
+        assertEquals(columns.getFromYear(1), 1820);
+        assertEquals(columns.getPlaceCode(2), columns.getPlaceCode(1));
+    }
+
+    @Test
+    public void testTaglessEvent() {
+        Person person = person("I1", null, null, "BIRT", "1900", "Oslo", null, "1910", "Oslo", "DEAT", "1950", null);
+        PersonEventColumns.Builder builder = new PersonEventColumns.Builder();
+        builder.add(person);
+        PersonEventColumns columns = builder.build();
+        assertEquals(columns.getEventCount(), 3);
+        assertEquals(columns.getTagCode(1), PersonEventColumns.NONE);
+        assertNull(columns.getTag(1));
+        int[] counts = columns.countByTag(e -> true);
+        assertEquals(counts.length, columns.getTagCount());
+        assertEquals(counts[columns.getTagCode(0)], 1);
+        assertEquals(counts[columns.getTagCode(2)], 1);
+        assertEquals(columns.countByPlace(e -> true)[columns.getPlaceCode(1)], 2);
+    }
+}